@@ -2,8 +2,15 @@ package com.paymentsApi;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
 
-@SpringBootApplication
+/*
+ * The R2DBC auto-configuration is excluded: a ConnectionFactory bean would switch off the JDBC DataSource that JPA and
+ * Flyway run on, and a second transaction manager would make @Transactional ambiguous. The /v2 API builds its own
+ * R2DBC pool (see ReactiveDatabase).
+ */
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class})
 public class PaymentsApiApplication {
 
     public static void main(String[] args) {
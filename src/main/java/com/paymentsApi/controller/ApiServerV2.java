@@ -0,0 +1,84 @@
+package com.paymentsApi.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymentsApi.exception.ReactiveExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+/* ApiServerV2
+ * Netty server of the reactive /v2 API, on its own port next to the Tomcat server of /v1.
+ *
+ * Requests are served by a fixed number of event loop threads, however many connections are open: a request that
+ * waits for the database holds no thread. JSON is written with the ObjectMapper of the application, so /v2 bodies
+ * look like /v1 ones.
+ *
+ * @param int payments.v2.port               Port of the server, 0 for a random one
+ * @param int payments.v2.event-loop-threads Event loop threads, 0 for one per CPU
+ */
+@Component
+@ConditionalOnProperty(name = "payments.v2.enabled", havingValue = "true")
+public class ApiServerV2 implements SmartLifecycle {
+
+    private final TransactionControllerV2 transactionController;
+    private final ObjectMapper objectMapper;
+    private final int port;
+    private final int eventLoopThreads;
+    private volatile LoopResources loopResources;
+    private volatile DisposableServer server;
+
+    public ApiServerV2(TransactionControllerV2 transactionController, ObjectMapper objectMapper, @Value("${payments.v2.port:8081}") int port,
+                       @Value("${payments.v2.event-loop-threads:0}") int eventLoopThreads) {
+        this.transactionController = transactionController;
+        this.objectMapper = objectMapper;
+        this.port = port;
+        this.eventLoopThreads = eventLoopThreads > 0 ? eventLoopThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public void start() {
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .exceptionHandler(new ReactiveExceptionHandler())
+                .build();
+        HttpHandler httpHandler = RouterFunctions.toHttpHandler(transactionController.routes(), strategies);
+        loopResources = LoopResources.create("payments-v2", eventLoopThreads, true);
+        server = HttpServer.create()
+                .port(port)
+                .runOn(loopResources)
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+    }
+
+    @Override
+    public void stop() {
+        server.disposeNow();
+        loopResources.disposeLater().block();
+        server = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /*
+     * @return Port the server listens on, the one picked for payments.v2.port=0
+     */
+    public int getPort() {
+        return server.port();
+    }
+}
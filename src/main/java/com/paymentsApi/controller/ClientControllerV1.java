@@ -1,9 +1,21 @@
 package com.paymentsApi.controller;
 
+import com.paymentsApi.dto.AccountBalance;
+import com.paymentsApi.dto.ClientImportResult;
 import com.paymentsApi.entity.Client;
+import com.paymentsApi.money.Cents;
+import com.paymentsApi.service.ClientImportService;
 import com.paymentsApi.service.ClientService;
+import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 
@@ -12,14 +24,22 @@ import java.util.List;
 public class ClientControllerV1 {
 
     private final ClientService clientService;
+    private final ClientImportService clientImportService;
 
-    public ClientControllerV1(ClientService clientService) {
+    public ClientControllerV1(ClientService clientService, ClientImportService clientImportService) {
         this.clientService = clientService;
+        this.clientImportService = clientImportService;
     }
 
+    // The body is the Clients of the page, the X-Total-Count header the number of matching Clients
     @GetMapping
-    public List<Client> getAllClients() {
-        return clientService.getAllClients();
+    public ResponseEntity<List<Client>> getClients(@RequestParam(required = false) String name, @RequestParam(required = false) BigDecimal minBalance,
+                                                   @RequestParam(required = false) BigDecimal maxBalance, @RequestParam(defaultValue = "0") int page,
+                                                   @RequestParam(defaultValue = "20") int size, @RequestParam(defaultValue = "accountNumber") String sort,
+                                                   @RequestParam(defaultValue = "asc") String direction) {
+        Page<Client> clients = clientService.getClients(name, minBalance == null ? null : Cents.fromDecimal(minBalance), maxBalance == null ? null : Cents.fromDecimal(maxBalance),
+                page, size, sort, direction);
+        return ResponseEntity.ok().header("X-Total-Count", String.valueOf(clients.getTotalElements())).body(clients.getContent());
     }
 
     @GetMapping("/{accountNumber}")
@@ -27,9 +47,20 @@ public class ClientControllerV1 {
         return clientService.getClientByAccountNumber(accountNumber);
     }
 
+    @GetMapping("/{accountNumber}/balance")
+    public AccountBalance getBalanceAt(@PathVariable Long accountNumber, @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return clientService.getBalanceAt(accountNumber, at);
+    }
+
     @PostMapping("/create")
     public Client createClient(@RequestBody Client client) {
         return clientService.saveClient(client);
     }
 
+    // The body is streamed, not bound to a List, so an import of millions of Clients is never held in memory
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ClientImportResult importClients(InputStream body) throws IOException {
+        return clientImportService.importClients(body);
+    }
+
 }
@@ -1,9 +1,20 @@
 package com.paymentsApi.controller;
 
+import com.paymentsApi.dto.BatchPaymentResult;
+import com.paymentsApi.dto.PaymentTicketStatus;
+import com.paymentsApi.dto.StatementPage;
 import com.paymentsApi.dto.TransactionRequest;
+import com.paymentsApi.dto.TransactionSummary;
 import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.enums.ExportFormat;
 import com.paymentsApi.service.TransactionService;
+import com.paymentsApi.settlement.SettlementEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.List;
 
@@ -13,17 +24,58 @@ public class TransactionControllerV1 {
 
     private final TransactionService transactionService;
 
+    // Only present when payments.settlement.enabled=true
+    @Autowired(required = false)
+    SettlementEngine settlementEngine;
+
     public TransactionControllerV1(TransactionService transactionService) {
         this.transactionService = transactionService;
     }
 
     @GetMapping("/{accountNumber}")
-    public List<Transaction> getTransactionsByAccountNumber(@PathVariable Long accountNumber) {
+    public List<TransactionSummary> getTransactionsByAccountNumber(@PathVariable Long accountNumber) {
         return transactionService.getTransactionsByAccountNumber(accountNumber);
     }
 
+    @GetMapping("/{accountNumber}/statement")
+    public StatementPage getStatement(@PathVariable Long accountNumber, @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "20") int size) {
+        return transactionService.getStatement(accountNumber, cursor, size);
+    }
+
+    @GetMapping("/{accountNumber}/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(@PathVariable Long accountNumber, @RequestParam(defaultValue = "ndjson") String format) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        StreamingResponseBody body = transactionService.exportTransactions(accountNumber, exportFormat);
+        String fileName = "transactions-" + accountNumber + "." + exportFormat.name().toLowerCase();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, exportFormat.getContentType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+
+    /*
+     * Answers with the Transaction, or with 202 Accepted and a ticket when asynchronous settlement is enabled.
+     */
     @PostMapping("/pay")
-    public Transaction processPayment(@RequestBody TransactionRequest request) {
-        return transactionService.processTransaction(request.getSenderAccountNumber(), request.getReceiverAccountNumber(), request.getAmount());
+    public ResponseEntity<?> processPayment(@RequestBody TransactionRequest request, @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (settlementEngine != null) {
+            PaymentTicketStatus ticket = settlementEngine.accept(request.getSenderAccountNumber(), request.getReceiverAccountNumber(), request.getAmount(), idempotencyKey);
+            return ResponseEntity.accepted().location(UriComponentsBuilder.fromPath("/v1/transactions/tickets/{ticketId}").buildAndExpand(ticket.getTicketId()).encode().toUri()).body(ticket);
+        }
+        Transaction transaction = transactionService.processTransaction(request.getSenderAccountNumber(), request.getReceiverAccountNumber(), request.getAmount(), idempotencyKey);
+        return ResponseEntity.ok(transaction);
+    }
+
+    @GetMapping("/tickets/{ticketId}")
+    public ResponseEntity<PaymentTicketStatus> getTicketStatus(@PathVariable String ticketId) {
+        if (settlementEngine == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.of(settlementEngine.getStatus(ticketId));
+    }
+
+    @PostMapping("/pay/batch")
+    public List<BatchPaymentResult> processBatchPayment(@RequestBody List<TransactionRequest> requests) {
+        return transactionService.processBatch(requests);
     }
 }
@@ -0,0 +1,78 @@
+package com.paymentsApi.controller;
+
+import com.paymentsApi.dto.TransactionRequest;
+import com.paymentsApi.dto.TransactionSummary;
+import com.paymentsApi.service.ReactiveTransactionService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/*
+ * Routes of the reactive /v2 API, served by ApiServerV2. They are functional routes rather than a @RestController, so
+ * the servlet stack of /v1 does not map them too.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.v2.enabled", havingValue = "true")
+public class TransactionControllerV2 {
+
+    private final ReactiveTransactionService transactionService;
+
+    public TransactionControllerV2(ReactiveTransactionService transactionService) {
+        this.transactionService = transactionService;
+    }
+
+    public RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                .path("/v2/transactions", builder -> builder
+                        .POST("/pay", this::processPayment)
+                        .GET("/{accountNumber}/statement", this::getStatement)
+                        .GET("/{accountNumber}", this::streamTransactions))
+                .build();
+    }
+
+    /*
+     * Answers with the Transaction of the payment, as a TransactionSummary.
+     */
+    private Mono<ServerResponse> processPayment(ServerRequest request) {
+        String idempotencyKey = request.headers().firstHeader("Idempotency-Key");
+        return request.bodyToMono(TransactionRequest.class)
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Required request body is missing")))
+                .flatMap(body -> transactionService.processTransaction(body.getSenderAccountNumber(), body.getReceiverAccountNumber(), body.getAmount(), idempotencyKey))
+                .flatMap(transaction -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(transaction));
+    }
+
+    private Mono<ServerResponse> getStatement(ServerRequest request) {
+        Long accountNumber = parameter("accountNumber", request.pathVariable("accountNumber"), Long::valueOf);
+        String cursor = request.queryParam("cursor").orElse(null);
+        int size = parameter("size", request.queryParam("size").orElse("20"), Integer::valueOf);
+        return transactionService.getStatement(accountNumber, cursor, size)
+                .flatMap(page -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(page));
+    }
+
+    /*
+     * Streams the history as newline delimited JSON, written as fast as the client reads it.
+     */
+    private Mono<ServerResponse> streamTransactions(ServerRequest request) {
+        Long accountNumber = parameter("accountNumber", request.pathVariable("accountNumber"), Long::valueOf);
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON)
+                .body(transactionService.streamTransactions(accountNumber), TransactionSummary.class);
+    }
+
+    private static <T> T parameter(String name, String value, Function<String, T> parse) {
+        try {
+            return parse.apply(value);
+        } catch (NumberFormatException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Request parameter " + name + " is not valid: " + value);
+        }
+    }
+}
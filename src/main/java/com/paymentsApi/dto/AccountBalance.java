@@ -0,0 +1,56 @@
+package com.paymentsApi.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.paymentsApi.money.CentsDeserializer;
+import com.paymentsApi.money.CentsSerializer;
+
+import java.time.LocalDateTime;
+
+/* A Data Transfer Object for the balance of an account at a point in time.
+ *
+ * Long          accountNumber Client account number
+ * LocalDateTime at            Time of the balance, postings at that exact time included
+ * long          balance       Balance in cents, a decimal amount in JSON
+ */
+public class AccountBalance {
+    private Long accountNumber;
+    private LocalDateTime at;
+    @JsonSerialize(using = CentsSerializer.class)
+    @JsonDeserialize(using = CentsDeserializer.class)
+    private long balance;
+
+    public AccountBalance() {
+    }
+
+    public AccountBalance(Long accountNumber, LocalDateTime at, long balance) {
+        this.accountNumber = accountNumber;
+        this.at = at;
+        this.balance = balance;
+    }
+
+    // Getters and setters
+    public Long getAccountNumber() {
+        return accountNumber;
+    }
+
+    public void setAccountNumber(Long accountNumber) {
+        this.accountNumber = accountNumber;
+    }
+
+    public LocalDateTime getAt() {
+        return at;
+    }
+
+    public void setAt(LocalDateTime at) {
+        this.at = at;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    public void setBalance(long balance) {
+        this.balance = balance;
+    }
+}
@@ -0,0 +1,62 @@
+package com.paymentsApi.dto;
+
+/* A Data Transfer Object for the result of one request of a batch payment.
+ *
+ * int     index         Position of the request in the batch
+ * Long    transactionId Id of the saved Transaction, null when the request was rejected
+ * String  status        Status message of the Transaction, or the reason the request was rejected
+ * boolean error         True when the chunk of the request failed and was rolled back, so it can be sent again
+ */
+public class BatchPaymentResult {
+    private int index;
+    private Long transactionId;
+    private String status;
+    private boolean error;
+
+    public BatchPaymentResult() {
+    }
+
+    public BatchPaymentResult(int index, Long transactionId, String status) {
+        this(index, transactionId, status, false);
+    }
+
+    public BatchPaymentResult(int index, Long transactionId, String status, boolean error) {
+        this.index = index;
+        this.transactionId = transactionId;
+        this.status = status;
+        this.error = error;
+    }
+
+    // Getters and setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Long getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(Long transactionId) {
+        this.transactionId = transactionId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public boolean isError() {
+        return error;
+    }
+
+    public void setError(boolean error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,47 @@
+package com.paymentsApi.dto;
+
+/* A Data Transfer Object for a row of a bulk client import that was not created.
+ *
+ * int    index         Position of the row in the request body
+ * Long   accountNumber Account number of the row, null when it could not be read
+ * String reason        Why the row was rejected
+ */
+public class ClientImportRejection {
+    private int index;
+    private Long accountNumber;
+    private String reason;
+
+    public ClientImportRejection() {
+    }
+
+    public ClientImportRejection(int index, Long accountNumber, String reason) {
+        this.index = index;
+        this.accountNumber = accountNumber;
+        this.reason = reason;
+    }
+
+    // Getters and setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Long getAccountNumber() {
+        return accountNumber;
+    }
+
+    public void setAccountNumber(Long accountNumber) {
+        this.accountNumber = accountNumber;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,31 @@
+package com.paymentsApi.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* A Data Transfer Object for the result of a bulk client import.
+ *
+ * int                         created  Number of Clients created
+ * List<ClientImportRejection> rejected Rows that were not created, in request order
+ */
+public class ClientImportResult {
+    private int created;
+    private List<ClientImportRejection> rejected = new ArrayList<>();
+
+    // Getters and setters
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public List<ClientImportRejection> getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(List<ClientImportRejection> rejected) {
+        this.rejected = rejected;
+    }
+}
@@ -0,0 +1,60 @@
+package com.paymentsApi.dto;
+
+import com.paymentsApi.enums.TicketState;
+
+/* A Data Transfer Object for the status of a payment accepted by the asynchronous settlement.
+ *
+ * String      ticketId      Ticket returned when the payment was accepted
+ * TicketState state         PENDING, SETTLED, REJECTED or FAILED
+ * Long        transactionId Id of the saved Transaction, null while pending or when the payment was rejected or failed
+ * String      status        Status message of the Transaction, or the reason the payment was rejected or failed
+ */
+public class PaymentTicketStatus {
+    private String ticketId;
+    private TicketState state;
+    private Long transactionId;
+    private String status;
+
+    public PaymentTicketStatus() {
+    }
+
+    public PaymentTicketStatus(String ticketId, TicketState state, Long transactionId, String status) {
+        this.ticketId = ticketId;
+        this.state = state;
+        this.transactionId = transactionId;
+        this.status = status;
+    }
+
+    // Getters and setters
+    public String getTicketId() {
+        return ticketId;
+    }
+
+    public void setTicketId(String ticketId) {
+        this.ticketId = ticketId;
+    }
+
+    public TicketState getState() {
+        return state;
+    }
+
+    public void setState(TicketState state) {
+        this.state = state;
+    }
+
+    public Long getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(Long transactionId) {
+        this.transactionId = transactionId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,41 @@
+package com.paymentsApi.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/* StatementCursor
+ * Position in an account statement: the transactionTime and id of the last Transaction of a page.
+ * It is sent to clients as an opaque URL-safe token.
+ *
+ * LocalDateTime transactionTime Time of the last Transaction returned
+ * Long          id              Id of the last Transaction returned
+ */
+public record StatementCursor(LocalDateTime transactionTime, Long id) {
+
+    // Position before the newest Transaction, used for the first page
+    public static final StatementCursor START = new StatementCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
+    public String encode() {
+        String position = transactionTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /*
+     * Reads a token created by encode().
+     *
+     * @param String token Cursor token
+     *
+     * @return             StatementCursor
+     */
+    public static StatementCursor decode(String token) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = position.indexOf('|');
+            return new StatementCursor(LocalDateTime.parse(position.substring(0, separator)), Long.valueOf(position.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException ex) {
+            throw new IllegalArgumentException("Invalid statement cursor");
+        }
+    }
+}
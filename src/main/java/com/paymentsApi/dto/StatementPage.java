@@ -0,0 +1,38 @@
+package com.paymentsApi.dto;
+
+import java.util.List;
+
+/* A Data Transfer Object for one page of an account statement.
+ *
+ * List<TransactionSummary> transactions Transactions of the page, newest first
+ * String                   nextCursor   Cursor of the next page, null on the last page
+ */
+public class StatementPage {
+    private List<TransactionSummary> transactions;
+    private String nextCursor;
+
+    public StatementPage() {
+    }
+
+    public StatementPage(List<TransactionSummary> transactions, String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and setters
+    public List<TransactionSummary> getTransactions() {
+        return transactions;
+    }
+
+    public void setTransactions(List<TransactionSummary> transactions) {
+        this.transactions = transactions;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -1,15 +1,22 @@
 package com.paymentsApi.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.paymentsApi.money.CentsDeserializer;
+import com.paymentsApi.money.CentsSerializer;
+
 /* A Data Transfer Object for Transaction Request.
  *
- * Long   senderAccountNumber   Client sender account number
- * Long   receiverAccountNumber Client receiver account number
- * Double amount                Payment amount
+ * Long senderAccountNumber   Client sender account number
+ * Long receiverAccountNumber Client receiver account number
+ * long amount                Payment amount in cents, a decimal amount in JSON
  */
 public class TransactionRequest {
     private Long senderAccountNumber;
     private Long receiverAccountNumber;
-    private Double amount;
+    @JsonSerialize(using = CentsSerializer.class)
+    @JsonDeserialize(using = CentsDeserializer.class)
+    private long amount;
 
     // Getters and setters
     public Long getSenderAccountNumber() {
@@ -28,11 +35,11 @@ public class TransactionRequest {
         this.receiverAccountNumber = receiverAccountNumber;
     }
 
-    public Double getAmount() {
+    public long getAmount() {
         return amount;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 }
\ No newline at end of file
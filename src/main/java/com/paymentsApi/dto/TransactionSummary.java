@@ -0,0 +1,110 @@
+package com.paymentsApi.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.paymentsApi.enums.TransactionReason;
+import com.paymentsApi.enums.TransactionStatus;
+import com.paymentsApi.money.CentsDeserializer;
+import com.paymentsApi.money.CentsSerializer;
+
+import java.time.LocalDateTime;
+
+/* A Data Transfer Object for a Transaction without its Client objects, read straight from the database.
+ *
+ * Long              id                    Transaction id
+ * Long              senderAccountNumber   Client sender account number
+ * Long              receiverAccountNumber Client receiver account number
+ * LocalDateTime     transactionTime       Time of the Transaction
+ * long              amount                Amount in cents, a decimal amount in JSON
+ * TransactionStatus status                Transaction status
+ * TransactionReason reason                Why the Transaction failed, null when it succeeded
+ */
+public class TransactionSummary {
+    private Long id;
+    private Long senderAccountNumber;
+    private Long receiverAccountNumber;
+    private LocalDateTime transactionTime;
+    @JsonSerialize(using = CentsSerializer.class)
+    @JsonDeserialize(using = CentsDeserializer.class)
+    private long amount;
+    private TransactionStatus status;
+    private TransactionReason reason;
+
+    public TransactionSummary() {
+    }
+
+    public TransactionSummary(Long id, Long senderAccountNumber, Long receiverAccountNumber, LocalDateTime transactionTime, long amount,
+                              TransactionStatus status, TransactionReason reason) {
+        this.id = id;
+        this.senderAccountNumber = senderAccountNumber;
+        this.receiverAccountNumber = receiverAccountNumber;
+        this.transactionTime = transactionTime;
+        this.amount = amount;
+        this.status = status;
+        this.reason = reason;
+    }
+
+    // Used by the "TransactionSummary" result set mapping of native queries, which read the stored codes
+    public TransactionSummary(Long id, Long senderAccountNumber, Long receiverAccountNumber, LocalDateTime transactionTime, Long amount,
+                              Short statusCode, Short reasonCode) {
+        this(id, senderAccountNumber, receiverAccountNumber, transactionTime, amount, TransactionStatus.fromCode(statusCode),
+                reasonCode == null ? null : TransactionReason.fromCode(reasonCode));
+    }
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getSenderAccountNumber() {
+        return senderAccountNumber;
+    }
+
+    public void setSenderAccountNumber(Long senderAccountNumber) {
+        this.senderAccountNumber = senderAccountNumber;
+    }
+
+    public Long getReceiverAccountNumber() {
+        return receiverAccountNumber;
+    }
+
+    public void setReceiverAccountNumber(Long receiverAccountNumber) {
+        this.receiverAccountNumber = receiverAccountNumber;
+    }
+
+    public LocalDateTime getTransactionTime() {
+        return transactionTime;
+    }
+
+    public void setTransactionTime(LocalDateTime transactionTime) {
+        this.transactionTime = transactionTime;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(long amount) {
+        this.amount = amount;
+    }
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(TransactionStatus status) {
+        this.status = status;
+    }
+
+    public TransactionReason getReason() {
+        return reason;
+    }
+
+    public void setReason(TransactionReason reason) {
+        this.reason = reason;
+    }
+}
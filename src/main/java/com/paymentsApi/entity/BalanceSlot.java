@@ -0,0 +1,54 @@
+package com.paymentsApi.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/*
+ * Read-only view of a balance slot of an account with a split balance (see BalanceSlots), so Client queries can add the
+ * slots to the balance. Slots are only written with the native statements of ClientRepository.
+ */
+@Entity
+@Immutable
+@IdClass(BalanceSlot.Key.class)
+public class BalanceSlot {
+
+    @Id
+    private Long clientId;
+    @Id
+    private short slot;
+    @Column(nullable = false)
+    private long amount;
+
+    protected BalanceSlot() {
+    }
+
+    public Long getClientId() {
+        return clientId;
+    }
+
+    public short getSlot() {
+        return slot;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public static class Key implements Serializable {
+        private Long clientId;
+        private short slot;
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && Objects.equals(clientId, key.clientId) && slot == key.slot;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(clientId, slot);
+        }
+    }
+}
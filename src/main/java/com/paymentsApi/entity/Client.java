@@ -1,5 +1,9 @@
 package com.paymentsApi.entity;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.paymentsApi.money.CentsDeserializer;
+import com.paymentsApi.money.CentsSerializer;
 import jakarta.persistence.*;
 
 
@@ -7,14 +11,20 @@ import jakarta.persistence.*;
 public class Client {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "client_seq")
+    @SequenceGenerator(name = "client_seq", sequenceName = "client_seq", allocationSize = 50)
     private Long id;
     @Column(nullable = false)
     private String name;
+    // Balance in cents, written as a decimal amount in JSON
     @Column(nullable = false)
-    private Double accountBalance;
+    @JsonSerialize(using = CentsSerializer.class)
+    @JsonDeserialize(using = CentsDeserializer.class)
+    private long accountBalance;
     @Column(unique = true, nullable = false)
     private Long accountNumber;
+    @Version
+    private Long version;
 
 
     // Getters and Setters
@@ -39,11 +49,15 @@ public class Client {
         this.accountNumber = accountNumber;
     }
 
-    public Double getAccountBalance() {
+    public long getAccountBalance() {
         return accountBalance;
     }
 
-    public void setAccountBalance(Double accountBalance) {
+    public void setAccountBalance(long accountBalance) {
         this.accountBalance = accountBalance;
     }
+
+    public Long getVersion() {
+        return version;
+    }
 }
\ No newline at end of file
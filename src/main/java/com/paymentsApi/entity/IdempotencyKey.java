@@ -0,0 +1,89 @@
+package com.paymentsApi.entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/*
+ * Idempotency-Key of a processed payment and the request it was used with, so a replay with another request is refused.
+ * Keys are always inserted, never updated: isNew() makes Spring Data persist instead of merging, and a concurrent
+ * duplicate fails on the primary key.
+ */
+@Entity
+public class IdempotencyKey implements Persistable<String> {
+
+    @Id
+    @Column(length = 64)
+    private String idempotencyKey;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transaction_id", nullable = false)
+    private Transaction transaction;
+    @Column(nullable = false)
+    private Long senderAccountNumber;
+    @Column(nullable = false)
+    private Long receiverAccountNumber;
+    @Column(nullable = false)
+    private long amount;
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    @Transient
+    private boolean inserted;
+
+    protected IdempotencyKey() {
+    }
+
+    public IdempotencyKey(String idempotencyKey, Transaction transaction, Long senderAccountNumber, Long receiverAccountNumber, long amount) {
+        this.idempotencyKey = idempotencyKey;
+        this.transaction = transaction;
+        this.senderAccountNumber = senderAccountNumber;
+        this.receiverAccountNumber = receiverAccountNumber;
+        this.amount = amount;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    /*
+     * @return true when the key was used with the same payment request
+     */
+    public boolean matches(Long senderAccountNumber, Long receiverAccountNumber, long amount) {
+        return this.senderAccountNumber.equals(senderAccountNumber) && this.receiverAccountNumber.equals(receiverAccountNumber) && this.amount == amount;
+    }
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !inserted;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markInserted() {
+        inserted = true;
+    }
+
+    // Getters
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    public Long getSenderAccountNumber() {
+        return senderAccountNumber;
+    }
+
+    public Long getReceiverAccountNumber() {
+        return receiverAccountNumber;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
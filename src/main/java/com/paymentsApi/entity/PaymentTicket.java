@@ -0,0 +1,110 @@
+package com.paymentsApi.entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/*
+ * Outcome of a payment settled by the asynchronous settlement workers.
+ * Tickets are always inserted, never updated: isNew() makes Spring Data persist instead of merging.
+ */
+@Entity
+public class PaymentTicket implements Persistable<String> {
+
+    @Id
+    @Column(length = 64)
+    private String ticketId;
+    @Column(nullable = false)
+    private Long senderAccountNumber;
+    @Column(nullable = false)
+    private Long receiverAccountNumber;
+    @Column(nullable = false)
+    private long amount;
+    // Null when the payment was rejected
+    private Long transactionId;
+    @Column(nullable = false)
+    private String outcome;
+    @Column(nullable = false)
+    private LocalDateTime acceptedAt;
+    @Column(nullable = false)
+    private LocalDateTime settledAt;
+    // True when settling the payment kept failing and it was given up
+    @Column(nullable = false)
+    private boolean failed;
+    @Transient
+    private boolean inserted;
+
+    protected PaymentTicket() {
+    }
+
+    public PaymentTicket(String ticketId, Long senderAccountNumber, Long receiverAccountNumber, long amount, Long transactionId, String outcome, LocalDateTime acceptedAt) {
+        this.ticketId = ticketId;
+        this.senderAccountNumber = senderAccountNumber;
+        this.receiverAccountNumber = receiverAccountNumber;
+        this.amount = amount;
+        this.transactionId = transactionId;
+        this.outcome = outcome;
+        this.acceptedAt = acceptedAt;
+        this.settledAt = LocalDateTime.now();
+    }
+
+    /*
+     * Ticket of a payment that was given up after every attempt to settle it failed.
+     */
+    public static PaymentTicket failed(String ticketId, Long senderAccountNumber, Long receiverAccountNumber, long amount, String outcome, LocalDateTime acceptedAt) {
+        PaymentTicket ticket = new PaymentTicket(ticketId, senderAccountNumber, receiverAccountNumber, amount, null, outcome, acceptedAt);
+        ticket.failed = true;
+        return ticket;
+    }
+
+    @Override
+    public String getId() {
+        return ticketId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !inserted;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markInserted() {
+        inserted = true;
+    }
+
+    // Getters
+
+    public Long getSenderAccountNumber() {
+        return senderAccountNumber;
+    }
+
+    public Long getReceiverAccountNumber() {
+        return receiverAccountNumber;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public Long getTransactionId() {
+        return transactionId;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public LocalDateTime getAcceptedAt() {
+        return acceptedAt;
+    }
+
+    public LocalDateTime getSettledAt() {
+        return settledAt;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+}
@@ -0,0 +1,95 @@
+package com.paymentsApi.entity;
+
+import com.paymentsApi.enums.TransactionStatus;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/*
+ * One side of a balance change. A successful Transaction has a debit posting of its sender and a credit posting of its
+ * receiver; a posting without a Transaction adjusts a balance on its own, like the opening balance of a new Client.
+ * Postings are only ever inserted.
+ */
+@Entity
+public class Posting {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "posting_seq")
+    @SequenceGenerator(name = "posting_seq", sequenceName = "posting_seq", allocationSize = 50)
+    private Long id;
+    // Null for adjustments
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transaction_id")
+    private Transaction transaction;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "client_id", nullable = false)
+    private Client client;
+    // Signed amount in cents, negative for a debit
+    @Column(nullable = false)
+    private long amount;
+    @Column(nullable = false)
+    private LocalDateTime postedAt;
+
+    protected Posting() {
+    }
+
+    private Posting(Transaction transaction, Client client, long amount, LocalDateTime postedAt) {
+        this.transaction = transaction;
+        this.client = client;
+        this.amount = amount;
+        this.postedAt = postedAt;
+    }
+
+    /*
+     * @return Debit and credit postings of a successful Transaction, none for a failed one
+     */
+    public static List<Posting> of(Transaction transaction) {
+        if (transaction.getStatus() != TransactionStatus.SUCCESS) {
+            return List.of();
+        }
+        return List.of(new Posting(transaction, transaction.getSender(), -transaction.getAmount(), transaction.getTransactionTime()),
+                new Posting(transaction, transaction.getReceiver(), transaction.getAmount(), transaction.getTransactionTime()));
+    }
+
+    /*
+     * @return Debit posting of a successful Transaction whose receiver is credited by a later database transaction
+     */
+    public static Posting debit(Transaction transaction) {
+        return new Posting(transaction, transaction.getSender(), -transaction.getAmount(), transaction.getTransactionTime());
+    }
+
+    /*
+     * @return Credit posting of the receiver of a Transaction debited earlier, posted when the credit is applied
+     */
+    public static Posting credit(Transaction transaction, Client receiver, long amount, LocalDateTime postedAt) {
+        return new Posting(transaction, receiver, amount, postedAt);
+    }
+
+    /*
+     * @return Posting that changes the balance of a Client by the amount at postedAt, without a Transaction
+     */
+    public static Posting adjustment(Client client, long amount, LocalDateTime postedAt) {
+        return new Posting(null, client, amount, postedAt);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    public Client getClient() {
+        return client;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public LocalDateTime getPostedAt() {
+        return postedAt;
+    }
+}
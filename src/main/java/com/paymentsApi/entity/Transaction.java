@@ -1,25 +1,53 @@
 package com.paymentsApi.entity;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.paymentsApi.dto.TransactionSummary;
+import com.paymentsApi.enums.TransactionReason;
+import com.paymentsApi.enums.TransactionStatus;
+import com.paymentsApi.money.CentsDeserializer;
+import com.paymentsApi.money.CentsSerializer;
 import jakarta.persistence.*;
 
 import java.time.LocalDateTime;
 
+// Maps the rows of the native history queries of TransactionHistoryRepositoryImpl to TransactionSummary
 @Entity
+@SqlResultSetMapping(name = "TransactionSummary", classes = @ConstructorResult(targetClass = TransactionSummary.class, columns = {
+        @ColumnResult(name = "id", type = Long.class),
+        @ColumnResult(name = "sender_account_number", type = Long.class),
+        @ColumnResult(name = "receiver_account_number", type = Long.class),
+        @ColumnResult(name = "transaction_time", type = LocalDateTime.class),
+        @ColumnResult(name = "amount", type = Long.class),
+        @ColumnResult(name = "status", type = Short.class),
+        @ColumnResult(name = "reason", type = Short.class)}))
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = 50)
     private Long id;
-    @ManyToOne
+    // Lazy, so reading Transactions does not load both Clients; list endpoints use TransactionSummary instead
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "sender_id", nullable = false)
     private Client sender;
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "receiver_id", nullable = false)
     private Client receiver;
     @Column(nullable = false)
     private LocalDateTime transactionTime;
+    // Amount in cents, written as a decimal amount in JSON
+    @Column(nullable = false)
+    @JsonSerialize(using = CentsSerializer.class)
+    @JsonDeserialize(using = CentsDeserializer.class)
+    private long amount;
+    // Status and reason are stored as SMALLINT codes
+    @Column(nullable = false)
+    @Convert(converter = TransactionStatusConverter.class)
+    private TransactionStatus status;
     @Column
-    private String status;
+    @Convert(converter = TransactionReasonConverter.class)
+    private TransactionReason reason;
 
     // Getters and Setters
 
@@ -51,12 +79,28 @@ public class Transaction {
         this.transactionTime = transactionTime;
     }
 
-    public String getStatus() {
+    public long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(long amount) {
+        this.amount = amount;
+    }
+
+    public TransactionStatus getStatus() {
         return status;
     }
 
-    public void setStatus(String status) {
+    public void setStatus(TransactionStatus status) {
         this.status = status;
     }
 
+    public TransactionReason getReason() {
+        return reason;
+    }
+
+    public void setReason(TransactionReason reason) {
+        this.reason = reason;
+    }
+
 }
\ No newline at end of file
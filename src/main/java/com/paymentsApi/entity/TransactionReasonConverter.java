@@ -0,0 +1,22 @@
+package com.paymentsApi.entity;
+
+import com.paymentsApi.enums.TransactionReason;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/* TransactionReasonConverter
+ * Stores a TransactionReason as its stable SMALLINT code instead of its name or ordinal.
+ */
+@Converter
+public class TransactionReasonConverter implements AttributeConverter<TransactionReason, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(TransactionReason reason) {
+        return reason == null ? null : reason.getCode();
+    }
+
+    @Override
+    public TransactionReason convertToEntityAttribute(Short code) {
+        return code == null ? null : TransactionReason.fromCode(code);
+    }
+}
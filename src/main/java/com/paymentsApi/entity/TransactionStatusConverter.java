@@ -0,0 +1,22 @@
+package com.paymentsApi.entity;
+
+import com.paymentsApi.enums.TransactionStatus;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/* TransactionStatusConverter
+ * Stores a TransactionStatus as its stable SMALLINT code instead of its name or ordinal.
+ */
+@Converter
+public class TransactionStatusConverter implements AttributeConverter<TransactionStatus, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(TransactionStatus status) {
+        return status == null ? null : status.getCode();
+    }
+
+    @Override
+    public TransactionStatus convertToEntityAttribute(Short code) {
+        return code == null ? null : TransactionStatus.fromCode(code);
+    }
+}
@@ -0,0 +1,37 @@
+package com.paymentsApi.enums;
+
+/* ExportFormat
+ * Output format of the transaction history export.
+ *
+ * NDJSON One JSON object per line
+ * CSV    Comma separated values with a header line
+ */
+public enum ExportFormat {
+    NDJSON("application/x-ndjson"), CSV("text/csv");
+
+    private final String contentType;
+
+    ExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /*
+     * Reads a format request parameter, ignoring case.
+     *
+     * @param String format Format name
+     *
+     * @return              ExportFormat
+     */
+    public static ExportFormat from(String format) {
+        for (ExportFormat exportFormat : values()) {
+            if (exportFormat.name().equalsIgnoreCase(format)) {
+                return exportFormat;
+            }
+        }
+        throw new IllegalArgumentException("Invalid export format, it must be ndjson or csv");
+    }
+}
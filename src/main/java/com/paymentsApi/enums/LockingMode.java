@@ -0,0 +1,14 @@
+package com.paymentsApi.enums;
+
+/* LockingMode
+ * How processTransaction locks the sender and receiver Clients, set by payments.locking.mode.
+ *
+ * PESSIMISTIC Locks the sender and then the receiver, one query each
+ * ORDERED     Locks both Clients one query each, always in accountNumber order, so opposite transfers cannot deadlock
+ * OPTIMISTIC  Reads without locks and relies on the Client version, retrying the transfer when a concurrent update wins
+ * LANES       Runs the changes of each account on its lane of the AccountLaneDispatcher, with single-statement updates
+ *             instead of row locks. The credit of a transfer between two lanes is handed to the lane of the receiver.
+ */
+public enum LockingMode {
+    PESSIMISTIC, ORDERED, OPTIMISTIC, LANES
+}
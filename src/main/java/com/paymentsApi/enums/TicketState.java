@@ -0,0 +1,13 @@
+package com.paymentsApi.enums;
+
+/* TicketState
+ * Where a payment accepted by the asynchronous settlement is.
+ *
+ * PENDING  Written to the settlement queue, not settled yet
+ * SETTLED  Processed into a Transaction, which may still have failed for insufficient funds
+ * REJECTED Not processed, for example because an account no longer exists
+ * FAILED   Not processed, as every attempt to settle it failed; the payment can be sent again with a new ticket
+ */
+public enum TicketState {
+    PENDING, SETTLED, REJECTED, FAILED
+}
@@ -0,0 +1,32 @@
+package com.paymentsApi.enums;
+
+/* TransactionReason
+ * Why a Transaction has status FAIL. Successful Transactions have no reason.
+ *
+ * The code is what the database stores (see TransactionReasonConverter); codes must never be changed or reused.
+ *
+ * INSUFFICIENT_FUNDS The sender balance was lower than the amount
+ * PROCESSING_ERROR   The transfer was interrupted or failed unexpectedly
+ */
+public enum TransactionReason {
+    INSUFFICIENT_FUNDS(1), PROCESSING_ERROR(2);
+
+    private final short code;
+
+    TransactionReason(int code) {
+        this.code = (short) code;
+    }
+
+    public short getCode() {
+        return code;
+    }
+
+    public static TransactionReason fromCode(short code) {
+        for (TransactionReason reason : values()) {
+            if (reason.code == code) {
+                return reason;
+            }
+        }
+        throw new IllegalArgumentException("Unknown transaction reason code " + code);
+    }
+}
@@ -1,18 +1,50 @@
 package com.paymentsApi.enums;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
 /* TransactionStatus
  * Class to define a Transaction status message.
+ *
+ * The code is what the database stores (see TransactionStatusConverter); codes must never be changed or reused.
+ * In JSON a status is its message, as responses returned it before statuses were stored as codes.
  */
 public enum TransactionStatus {
-    SUCCESS("SUCCESS: Transaction executed."), FAIL("FAILED: Sender does not have sufficient funds to proceed payment");
+    SUCCESS(1, "SUCCESS: Transaction executed."), FAIL(2, "FAILED: Sender does not have sufficient funds to proceed payment");
 
+    private final short code;
     private final String message;
 
-    TransactionStatus(String message) {
+    TransactionStatus(int code, String message) {
+        this.code = (short) code;
         this.message = message;
     }
 
+    public short getCode() {
+        return code;
+    }
+
+    @JsonValue
     public String getMessage() {
         return message;
     }
-}
\ No newline at end of file
+
+    public static TransactionStatus fromCode(short code) {
+        for (TransactionStatus status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown transaction status code " + code);
+    }
+
+    @JsonCreator
+    public static TransactionStatus fromMessage(String message) {
+        for (TransactionStatus status : values()) {
+            if (status.message.equals(message)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown transaction status " + message);
+    }
+}
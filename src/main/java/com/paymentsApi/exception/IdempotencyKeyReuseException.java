@@ -0,0 +1,12 @@
+package com.paymentsApi.exception;
+
+public class IdempotencyKeyReuseException extends RuntimeException {
+
+    /*
+     * Custom exception when an Idempotency-Key is sent again with a different payment request.
+     *
+     */
+    public IdempotencyKeyReuseException(String message) {
+        super(message);
+    }
+}
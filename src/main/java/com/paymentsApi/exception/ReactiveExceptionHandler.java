@@ -0,0 +1,55 @@
+package com.paymentsApi.exception;
+
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebInputException;
+import org.springframework.web.server.WebExceptionHandler;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+ * The GlobalExceptionHandler of the reactive /v2 API, with the same statuses and messages. It also handles errors of a
+ * streamed body raised before its first element, such as an unknown account; once a stream has started the response
+ * is committed, and an error can only end it.
+ */
+public class ReactiveExceptionHandler implements WebExceptionHandler {
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
+        ServerHttpResponse response = exchange.getResponse();
+        if (response.isCommitted()) {
+            return Mono.error(ex);
+        }
+        if (ex instanceof IllegalArgumentException) {
+            return write(response, HttpStatus.BAD_REQUEST, "Resource is not correctly referenced: " + ex.getMessage());
+        }
+        if (ex instanceof ServerWebInputException) {
+            return write(response, HttpStatus.BAD_REQUEST, "Request body is not valid: " + NestedExceptionUtils.getMostSpecificCause(ex).getMessage());
+        }
+        if (ex instanceof ResponseStatusException statusException) {
+            return write(response, statusException.getStatusCode(), statusException.getReason());
+        }
+        if (ex instanceof IdempotencyKeyReuseException) {
+            return write(response, HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key is not valid for this request: " + ex.getMessage());
+        }
+        if (ex instanceof DataIntegrityViolationException) {
+            return write(response, HttpStatus.CONFLICT, "Violation in resource: " + ex.getMessage());
+        }
+        return write(response, HttpStatus.INTERNAL_SERVER_ERROR, "Server error: " + ex.getMessage() + " Exception class: " + ex.getClass());
+    }
+
+    private static Mono<Void> write(ServerHttpResponse response, HttpStatusCode status, String message) {
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8));
+        DataBuffer body = response.bufferFactory().wrap(String.valueOf(message).getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(body));
+    }
+}
@@ -0,0 +1,57 @@
+package com.paymentsApi.ledger;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/* BalanceChanges
+ * What a run of JournalRecords changes in the balances of a snapshot, kept per account rather than per record.
+ *
+ * An opened account takes the balance it was opened with plus every transfer after it; any other account only takes
+ * the sum of its transfers, added to its balance in the snapshot. The size grows with the accounts touched, not with
+ * the transfers, so the writer of the DurableLedgerJournal can hand a whole journal generation to the snapshot thread.
+ */
+class BalanceChanges {
+    private final Map<Long, LedgerBalance> opened = new HashMap<>();
+    private final Map<Long, Long> moved = new HashMap<>();
+
+    void add(JournalRecord record) {
+        if (record instanceof JournalRecord.Opened open) {
+            // The balance replaces whatever the account had before, including the transfers journaled before it
+            opened.put(open.balance().accountNumber(), open.balance());
+            moved.remove(open.balance().accountNumber());
+        } else if (record instanceof JournalRecord.Transferred transferred) {
+            move(transferred.senderAccountNumber(), -transferred.amount());
+            move(transferred.receiverAccountNumber(), transferred.amount());
+        }
+    }
+
+    /*
+     * Applies the changes to the balances of a snapshot. Every account of a transfer was opened before it, in the
+     * snapshot or in these changes.
+     *
+     * @param Map<Long, LedgerBalance> balances Balances by account number, changed in place
+     */
+    void applyTo(Map<Long, LedgerBalance> balances) {
+        balances.putAll(opened);
+        moved.forEach((accountNumber, delta) -> {
+            LedgerBalance balance = balances.get(accountNumber);
+            if (balance == null) {
+                throw new IllegalStateException("Ledger journal moves money of account " + accountNumber + " that was never opened");
+            }
+            balances.put(accountNumber, plus(balance, delta));
+        });
+    }
+
+    private void move(Long accountNumber, long delta) {
+        LedgerBalance balance = opened.get(accountNumber);
+        if (balance != null) {
+            opened.put(accountNumber, plus(balance, delta));
+        } else {
+            moved.merge(accountNumber, delta, Long::sum);
+        }
+    }
+
+    private static LedgerBalance plus(LedgerBalance balance, long delta) {
+        return new LedgerBalance(balance.clientId(), balance.accountNumber(), balance.name(), balance.balance() + delta, 0);
+    }
+}
@@ -0,0 +1,377 @@
+package com.paymentsApi.ledger;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.entity.Posting;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.PostingRepository;
+import com.paymentsApi.service.PostingWatermark;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/* DurableLedgerJournal
+ * Optional write-ahead journal that makes the balances of the LedgerEngine survive a restart.
+ *
+ * The LedgerEngine journals every transfer as one record holding both legs, after reserving the debit on the sender and
+ * before crediting the receiver, and the balance of every account it loads from the database. Records are appended to a
+ * memory-mapped, checksummed JournalFile. One writer thread appends whatever records are waiting and forces them to
+ * disk together, so a group of transfers costs a single fsync.
+ *
+ * The journal is two JournalFiles used in turn, each holding one generation of records. Every snapshot interval, and
+ * whenever the current file is full, the writer starts the next generation in the other file and hands the
+ * BalanceChanges of the finished one to a snapshot thread. That thread adds them to the balances of the previous
+ * snapshot, kept in memory, and writes a SnapshotFile covering the generation, which frees its file. The writer only
+ * waits for a snapshot when it fills a file before the previous snapshot is written.
+ *
+ * On startup the last snapshot is loaded, the generations it does not cover are replayed over it in order and the
+ * resulting balances are written to the database before the LedgerEngine loads any account, each change of balance with
+ * an adjustment posting. Transactions are not journaled, only balances.
+ */
+@Component
+@ConditionalOnProperty(name = {"payments.ledger.enabled", "payments.ledger.journal.enabled"}, havingValue = "true")
+public class DurableLedgerJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(DurableLedgerJournal.class);
+
+    private final ClientRepository clientRepository;
+    private final PostingRepository postingRepository;
+    private final PostingWatermark postingWatermark;
+    private final TransactionTemplate transactionTemplate;
+    private final JournalFile[] journalFiles;
+    private final SnapshotFile snapshotFile;
+    private final int maxGroupSize;
+    private final long snapshotIntervalNanos;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService snapshotter;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile RuntimeException failure;
+
+    // Only touched by the writer thread once recovered
+    private int current;
+    private BalanceChanges changes = new BalanceChanges();
+    private CompletableFuture<Void> previousSnapshot = CompletableFuture.completedFuture(null);
+    private long lastSnapshot = System.nanoTime();
+    private boolean appendedSinceSnapshot;
+
+    // Only touched by the snapshot thread once recovered, balances of the last snapshot by account number
+    private Map<Long, LedgerBalance> snapshotBalances;
+
+    public DurableLedgerJournal(ClientRepository clientRepository, PostingRepository postingRepository, PostingWatermark postingWatermark,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${payments.ledger.journal.directory:data/ledger}") Path directory,
+                                @Value("${payments.ledger.journal.size-mb:64}") int sizeMb,
+                                @Value("${payments.ledger.journal.max-group-size:1000}") int maxGroupSize,
+                                @Value("${payments.ledger.snapshot-interval-ms:60000}") long snapshotIntervalMs) {
+        if (sizeMb < 1 || maxGroupSize < 1) {
+            throw new IllegalArgumentException("payments.ledger.journal.size-mb and max-group-size must be at least 1");
+        }
+        // A journal file is mapped as one MappedByteBuffer, which cannot hold more than Integer.MAX_VALUE bytes
+        long capacity = sizeMb * 1024L * 1024L;
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("payments.ledger.journal.size-mb must be at most " + Integer.MAX_VALUE / (1024 * 1024) + ", was " + sizeMb);
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot create ledger journal directory " + directory, ex);
+        }
+        this.clientRepository = clientRepository;
+        this.postingRepository = postingRepository;
+        this.postingWatermark = postingWatermark;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journalFiles = new JournalFile[] {
+                new JournalFile(directory.resolve("journal-0.bin"), (int) capacity),
+                new JournalFile(directory.resolve("journal-1.bin"), (int) capacity)
+        };
+        this.snapshotFile = new SnapshotFile(directory.resolve("snapshot.bin"));
+        this.maxGroupSize = maxGroupSize;
+        this.snapshotIntervalNanos = TimeUnit.MILLISECONDS.toNanos(snapshotIntervalMs);
+
+        recover();
+
+        this.snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer = new Thread(this::write, "ledger-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /*
+     * Journals the balance of an account loaded from the database, or given by an edit of its Client, and waits until it
+     * is on disk. Replay takes this balance in place of the transfers of the account journaled before it.
+     *
+     * @param LedgerBalance balance Balance the LedgerEngine starts the account with, or the edited balance
+     */
+    public void open(LedgerBalance balance) {
+        append(new JournalRecord.Opened(balance));
+    }
+
+    /*
+     * Journals both legs of a transfer and waits until they are on disk. The LedgerEngine must not credit the receiver
+     * before this returns, and must give the sender its debit back when it throws.
+     *
+     * @param Long senderAccountNumber   Client sender account number
+     * @param Long receiverAccountNumber Client receiver account number
+     * @param long amount                Amount debited from the sender, in cents
+     */
+    public void transfer(Long senderAccountNumber, Long receiverAccountNumber, long amount) {
+        append(new JournalRecord.Transferred(senderAccountNumber, receiverAccountNumber, amount));
+    }
+
+    private void append(JournalRecord record) {
+        if (!running) {
+            throw new IllegalStateException("Ledger journal is shut down");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Ledger journal failed", failure);
+        }
+        Pending pending = new Pending(record, JournalFile.encode(record), new CompletableFuture<>());
+        queue.add(pending);
+        try {
+            pending.done().join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        running = false;
+        writer.join();
+        snapshotter.shutdown();
+        snapshotter.awaitTermination(5, TimeUnit.SECONDS);
+        for (JournalFile journalFile : journalFiles) {
+            journalFile.close();
+        }
+    }
+
+    /*
+     * Loads the last snapshot, replays the generations it does not cover and writes the result to the database.
+     */
+    private void recover() {
+        SnapshotFile.Snapshot snapshot = snapshotFile.read();
+        Map<Long, LedgerBalance> balances = new LinkedHashMap<>();
+        for (LedgerBalance balance : snapshot.balances()) {
+            balances.put(balance.accountNumber(), balance);
+        }
+        BalanceChanges replayed = new BalanceChanges();
+        long generation = snapshot.generation();
+        int records = 0;
+        JournalFile[] byGeneration = journalFiles.clone();
+        Arrays.sort(byGeneration, Comparator.comparingLong(JournalFile::generation));
+        for (JournalFile journalFile : byGeneration) {
+            if (journalFile.generation() > snapshot.generation()) {
+                List<JournalRecord> generationRecords = journalFile.readAll();
+                generationRecords.forEach(replayed::add);
+                records += generationRecords.size();
+            }
+            generation = Math.max(generation, journalFile.generation());
+        }
+        replayed.applyTo(balances);
+
+        if (!balances.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> restore(balances.values()));
+            log.info("Restored {} ledger balances from snapshot and {} journal records", balances.size(), records);
+        }
+        // Accounts are opened again when the LedgerEngine loads them, so the old generations must not be replayed again
+        snapshotFile.write(generation, balances.values());
+        snapshotBalances = balances;
+        current = 0;
+        journalFiles[current].start(generation + 1);
+    }
+
+    private void restore(Collection<LedgerBalance> balances) {
+        Map<Long, Client> clients = new HashMap<>();
+        for (Client client : clientRepository.findAll()) {
+            clients.put(client.getAccountNumber(), client);
+        }
+        List<Client> changed = new ArrayList<>();
+        List<Posting> adjustments = new ArrayList<>();
+        LocalDateTime postedAt = postingWatermark.stamp();
+        for (LedgerBalance balance : balances) {
+            Client client = clients.get(balance.accountNumber());
+            long previousBalance = 0;
+            if (client == null) {
+                client = new Client();
+                client.setName(balance.name());
+                client.setAccountNumber(balance.accountNumber());
+            } else if (client.getAccountBalance() == balance.balance()) {
+                continue;
+            } else {
+                previousBalance = client.getAccountBalance();
+            }
+            client.setAccountBalance(balance.balance());
+            changed.add(client);
+            if (balance.balance() != previousBalance) {
+                adjustments.add(Posting.adjustment(client, balance.balance() - previousBalance, postedAt));
+            }
+        }
+        clientRepository.saveAll(changed);
+        postingRepository.saveAll(adjustments);
+    }
+
+    /*
+     * Body of the writer thread: appends groups of waiting records and forces each group to disk once.
+     */
+    private void write() {
+        List<Pending> group = new ArrayList<>(maxGroupSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    group.add(first);
+                    queue.drainTo(group, maxGroupSize - 1);
+                    appendGroup(group);
+                    group.clear();
+                }
+                if (appendedSinceSnapshot && System.nanoTime() - lastSnapshot >= snapshotIntervalNanos && previousSnapshot.isDone()) {
+                    nextGeneration();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException ex) {
+                log.error("Cannot start the next ledger journal generation, retrying later", ex);
+                lastSnapshot = System.nanoTime();
+            }
+        }
+        if (appendedSinceSnapshot) {
+            nextGeneration();
+        }
+        previousSnapshot.join();
+    }
+
+    /*
+     * Appends a group of records and forces it to disk. Records only count towards the changes of the generation once
+     * they are forced; when forcing fails they are dropped from the file again and every transfer of the group fails.
+     */
+    private void appendGroup(List<Pending> group) {
+        if (failure != null) {
+            group.forEach(pending -> pending.done().completeExceptionally(new IllegalStateException("Ledger journal failed", failure)));
+            return;
+        }
+        JournalFile journalFile = journalFiles[current];
+        int from = journalFile.position();
+        int forced = 0;
+        try {
+            for (int i = 0; i < group.size(); i++) {
+                Pending pending = group.get(i);
+                if (!journalFile.fits(pending.payload())) {
+                    journalFile.force(from);
+                    group.subList(forced, i).forEach(forcedPending -> changes.add(forcedPending.record()));
+                    forced = i;
+                    // Nothing forced is dropped if the next generation cannot be started
+                    from = journalFile.position();
+                    nextGeneration();
+                    journalFile = journalFiles[current];
+                    from = journalFile.position();
+                    if (!journalFile.fits(pending.payload())) {
+                        throw new IllegalStateException("Ledger journal record does not fit in payments.ledger.journal.size-mb");
+                    }
+                }
+                journalFile.append(pending.payload());
+            }
+            journalFile.force(from);
+            group.subList(forced, group.size()).forEach(pending -> changes.add(pending.record()));
+            appendedSinceSnapshot = true;
+        } catch (RuntimeException ex) {
+            log.error("Failed to journal {} ledger records", group.size() - forced, ex);
+            discard(journalFile, from);
+            group.subList(forced, group.size()).forEach(pending -> pending.done().completeExceptionally(ex));
+            group.subList(0, forced).forEach(pending -> pending.done().complete(null));
+            return;
+        }
+        group.forEach(pending -> pending.done().complete(null));
+    }
+
+    /*
+     * Drops records that failed to be forced. If even that fails they may still reach the disk, so no further record is
+     * accepted: the LedgerEngine would otherwise give back debits that a restart replays.
+     */
+    private void discard(JournalFile journalFile, int from) {
+        try {
+            journalFile.truncate(from);
+        } catch (RuntimeException ex) {
+            log.error("Cannot drop failed ledger journal records, refusing further transfers", ex);
+            failure = ex;
+        }
+    }
+
+    /*
+     * Starts the next generation in the other JournalFile and snapshots the finished one on the snapshot thread. Waits
+     * for the previous snapshot first, since the other file holds the generation it covers until it is written.
+     */
+    private void nextGeneration() {
+        previousSnapshot.join();
+        JournalFile finished = journalFiles[current];
+        JournalFile next = journalFiles[1 - current];
+        next.start(finished.generation() + 1);
+        long generation = finished.generation();
+        BalanceChanges finishedChanges = changes;
+        current = 1 - current;
+        changes = new BalanceChanges();
+        lastSnapshot = System.nanoTime();
+        appendedSinceSnapshot = false;
+        previousSnapshot = CompletableFuture.runAsync(() -> snapshot(generation, finishedChanges), snapshotter);
+    }
+
+    /*
+     * Body of the snapshot thread: writes the previous snapshot with the changes of a generation. A failed write is
+     * retried, as the JournalFile of the generation cannot be reused before it is covered.
+     */
+    private void snapshot(long generation, BalanceChanges generationChanges) {
+        Map<Long, LedgerBalance> balances = new LinkedHashMap<>(snapshotBalances);
+        generationChanges.applyTo(balances);
+        while (true) {
+            try {
+                snapshotFile.write(generation, balances.values());
+                snapshotBalances = balances;
+                return;
+            } catch (RuntimeException ex) {
+                log.error("Ledger journal snapshot of generation {} failed, retrying", generation, ex);
+            }
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted before the ledger journal snapshot of generation " + generation + " was written", ex);
+            }
+        }
+    }
+
+    private record Pending(JournalRecord record, byte[] payload, CompletableFuture<Void> done) {
+    }
+}
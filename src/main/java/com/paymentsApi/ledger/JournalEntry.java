@@ -0,0 +1,20 @@
+package com.paymentsApi.ledger;
+
+import com.paymentsApi.enums.TransactionReason;
+import com.paymentsApi.enums.TransactionStatus;
+
+import java.time.LocalDateTime;
+
+/* JournalEntry
+ * A transfer applied by the LedgerEngine and waiting to be written to the database.
+ *
+ * LedgerBalance     sender          Sender balance after the transfer
+ * LedgerBalance     receiver        Receiver balance after the transfer
+ * long              amount          Amount of the transfer in cents
+ * TransactionStatus status          Status of the transfer
+ * TransactionReason reason          Why the transfer failed, null when it succeeded
+ * LocalDateTime     transactionTime Time the transfer started, held in the PostingWatermark until it is written
+ */
+public record JournalEntry(LedgerBalance sender, LedgerBalance receiver, long amount, TransactionStatus status, TransactionReason reason,
+                           LocalDateTime transactionTime) {
+}
@@ -0,0 +1,179 @@
+package com.paymentsApi.ledger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/* JournalFile
+ * Memory-mapped, append-only file of JournalRecords written by the DurableLedgerJournal.
+ *
+ * The file starts with its generation, which a snapshot compares to tell whether it already covers the records. Every
+ * record is its payload length, a CRC32C of the generation and the payload, and the payload. A zero length after the
+ * last record marks the end of the journal. A record torn by a crash, or left over from an earlier generation, fails
+ * its checksum and ends the journal there. Only the writer thread of the DurableLedgerJournal uses this class.
+ */
+class JournalFile implements AutoCloseable {
+
+    private static final int FIRST_RECORD = Long.BYTES;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final byte OPENED = 1;
+    private static final byte TRANSFERRED = 2;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private long generation;
+
+    JournalFile(Path path, int capacity) {
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot open ledger journal " + path, ex);
+        }
+        this.generation = buffer.getLong(0);
+        buffer.position(FIRST_RECORD);
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    /*
+     * Empties the file for a new generation of records. The end marker is on disk before the generation, so a crash in
+     * between leaves the old generation, which the snapshot already covers.
+     *
+     * @param long generation Generation of the records appended from now on
+     */
+    void start(long generation) {
+        buffer.putInt(FIRST_RECORD, 0);
+        buffer.force(0, FIRST_RECORD + Integer.BYTES);
+        buffer.putLong(0, generation);
+        buffer.force(0, FIRST_RECORD + Integer.BYTES);
+        buffer.position(FIRST_RECORD);
+        this.generation = generation;
+    }
+
+    /*
+     * Reads the records from the start of the file and leaves the write position after the last valid one.
+     *
+     * @return JournalRecords in the order they were appended
+     */
+    List<JournalRecord> readAll() {
+        List<JournalRecord> records = new ArrayList<>();
+        buffer.position(FIRST_RECORD);
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            if (checksum(payload) != checksum) {
+                buffer.position(start);
+                break;
+            }
+            records.add(decode(payload));
+            buffer.position(buffer.position() + length);
+        }
+        return records;
+    }
+
+    /*
+     * Whether a record with this payload still fits, with the end marker.
+     */
+    boolean fits(byte[] payload) {
+        return buffer.remaining() >= payload.length + HEADER_BYTES + Integer.BYTES;
+    }
+
+    /*
+     * Writes a record after the last one. It is not durable before force is called.
+     *
+     * @param byte[] payload JournalRecord encoded by encode
+     */
+    void append(byte[] payload) {
+        buffer.putInt(payload.length);
+        buffer.putInt(checksum(ByteBuffer.wrap(payload)));
+        buffer.put(payload);
+        buffer.putInt(buffer.position(), 0);
+    }
+
+    /*
+     * Forces the records written since position from to disk, with the end marker.
+     */
+    void force(int from) {
+        buffer.force(from, buffer.position() + Integer.BYTES - from);
+    }
+
+    int position() {
+        return buffer.position();
+    }
+
+    /*
+     * Drops the records written from position on, so records that failed to be forced are never replayed.
+     */
+    void truncate(int position) {
+        buffer.position(position);
+        buffer.putInt(position, 0);
+        force(position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    static byte[] encode(JournalRecord record) {
+        if (record instanceof JournalRecord.Opened opened) {
+            LedgerBalance balance = opened.balance();
+            byte[] name = balance.name().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer payload = ByteBuffer.allocate(1 + 3 * Long.BYTES + Short.BYTES + name.length);
+            payload.put(OPENED);
+            payload.putLong(balance.clientId());
+            payload.putLong(balance.accountNumber());
+            payload.putLong(balance.balance());
+            payload.putShort((short) name.length);
+            payload.put(name);
+            return payload.array();
+        }
+        JournalRecord.Transferred transferred = (JournalRecord.Transferred) record;
+        ByteBuffer payload = ByteBuffer.allocate(1 + 3 * Long.BYTES);
+        payload.put(TRANSFERRED);
+        payload.putLong(transferred.senderAccountNumber());
+        payload.putLong(transferred.receiverAccountNumber());
+        payload.putLong(transferred.amount());
+        return payload.array();
+    }
+
+    private static JournalRecord decode(ByteBuffer payload) {
+        byte type = payload.get();
+        if (type == OPENED) {
+            long clientId = payload.getLong();
+            long accountNumber = payload.getLong();
+            long balance = payload.getLong();
+            byte[] name = new byte[payload.getShort()];
+            payload.get(name);
+            return new JournalRecord.Opened(new LedgerBalance(clientId, accountNumber, new String(name, StandardCharsets.UTF_8), balance, 0));
+        }
+        if (type == TRANSFERRED) {
+            return new JournalRecord.Transferred(payload.getLong(), payload.getLong(), payload.getLong());
+        }
+        throw new IllegalStateException("Unknown ledger journal record type " + type);
+    }
+
+    private int checksum(ByteBuffer payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, generation));
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,24 @@
+package com.paymentsApi.ledger;
+
+/* JournalRecord
+ * A record of the DurableLedgerJournal, replayed in order over the last snapshot on startup.
+ *
+ * Opened      The balance an account had when the LedgerEngine loaded it from the database, or was given by an edit
+ * Transferred Both legs of an applied transfer, journaled as one record before the receiver is credited
+ */
+sealed interface JournalRecord {
+
+    /*
+     * LedgerBalance balance Balance of the account when it was loaded or edited
+     */
+    record Opened(LedgerBalance balance) implements JournalRecord {
+    }
+
+    /*
+     * Long senderAccountNumber   Account debited by the transfer
+     * Long receiverAccountNumber Account credited by the transfer
+     * long amount                Amount of the transfer in cents
+     */
+    record Transferred(Long senderAccountNumber, Long receiverAccountNumber, long amount) implements JournalRecord {
+    }
+}
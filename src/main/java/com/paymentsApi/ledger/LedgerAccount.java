@@ -0,0 +1,44 @@
+package com.paymentsApi.ledger;
+
+/* LedgerAccount
+ * In-memory balance of a Client owned by a single LedgerShard.
+ *
+ * Instances are only read and written by the worker thread of the owning shard, so no synchronization is needed.
+ * The sequence is incremented on every balance change and lets the write-behind journal keep the latest balance.
+ */
+class LedgerAccount {
+    private final Long clientId;
+    private final Long accountNumber;
+    private String name;
+    private long balance;
+    private long sequence;
+
+    LedgerAccount(Long clientId, Long accountNumber, String name, long balance) {
+        this.clientId = clientId;
+        this.accountNumber = accountNumber;
+        this.name = name;
+        this.balance = balance;
+    }
+
+    void apply(long delta) {
+        balance += delta;
+        sequence++;
+    }
+
+    /*
+     * Takes the name and balance of an edit of the Client, saved at the sequence of the edited balance.
+     */
+    void edit(LedgerBalance edited) {
+        name = edited.name();
+        balance = edited.balance();
+        sequence = edited.sequence();
+    }
+
+    LedgerBalance snapshot() {
+        return new LedgerBalance(clientId, accountNumber, name, balance, sequence);
+    }
+
+    long getBalance() {
+        return balance;
+    }
+}
@@ -0,0 +1,13 @@
+package com.paymentsApi.ledger;
+
+/* LedgerBalance
+ * Immutable snapshot of a LedgerAccount, safe to hand over between shard workers and request threads.
+ *
+ * Long   clientId      Client id in the database
+ * Long   accountNumber Client account number
+ * String name          Client name
+ * long   balance       Account balance in cents after the last applied posting
+ * long   sequence      Number of postings applied to the account since it was loaded
+ */
+public record LedgerBalance(Long clientId, Long accountNumber, String name, long balance, long sequence) {
+}
@@ -0,0 +1,247 @@
+package com.paymentsApi.ledger;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.enums.TransactionReason;
+import com.paymentsApi.enums.TransactionStatus;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.service.PostingWatermark;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/* LedgerEngine
+ * Optional in-memory ledger that applies transfers without touching database row locks.
+ *
+ * Account balances are split into shards by account number and each shard is owned by one worker thread.
+ * A transfer between accounts of the same shard runs as a single task; a transfer across shards loads both accounts,
+ * debits the sender on its shard and then credits the receiver on the other one. Credits never fail, so no shard waits
+ * on another and the engine cannot deadlock.
+ *
+ * Applied transfers are appended to the WriteBehindJournal, which persists balances and Transactions asynchronously.
+ * While the engine is enabled it owns the balances of every account it has loaded. With the DurableLedgerJournal enabled,
+ * every transfer takes the steps of a transfer across shards: the debit reserves the amount, both legs are journaled as
+ * one record, and only then is the receiver credited. A journal write that fails gives the sender the amount back, so
+ * money that is not on disk is never spent.
+ *
+ * Edits and deletes of Clients run on the shard that owns the account too, so they never interleave with its transfers.
+ * An edit of a loaded account starts from the balance held in memory and the account takes the edited balance.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.ledger.enabled", havingValue = "true")
+public class LedgerEngine {
+
+    private final WriteBehindJournal journal;
+    private final PostingWatermark postingWatermark;
+    private final LedgerShard[] shards;
+
+    // Only present when payments.ledger.journal.enabled=true
+    @Autowired(required = false)
+    DurableLedgerJournal durableJournal;
+
+    public LedgerEngine(ClientRepository clientRepository, WriteBehindJournal journal, PostingWatermark postingWatermark, @Value("${payments.ledger.shards:4}") int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("payments.ledger.shards must be at least 1");
+        }
+        this.journal = journal;
+        this.postingWatermark = postingWatermark;
+        this.shards = new LedgerShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new LedgerShard(i, clientRepository, this::loaded);
+        }
+    }
+
+    /*
+     * Applies a transfer in memory and journals it for the database.
+     *
+     * @param Long   senderAccountNumber   Client sender account number
+     * @param Long   receiverAccountNumber Client receiver account number
+     * @param long   amount                Value amount of the transaction in cents
+     *
+     * @return                             Transaction object, not yet persisted.
+     */
+    public Transaction transfer(Long senderAccountNumber, Long receiverAccountNumber, long amount) {
+        LedgerShard senderShard = shardFor(senderAccountNumber);
+        LedgerShard receiverShard = shardFor(receiverAccountNumber);
+
+        PostingWatermark.Hold hold = postingWatermark.hold();
+        JournalEntry entry;
+        try {
+            if (senderShard == receiverShard && durableJournal == null) {
+                entry = await(senderShard.submit(() -> {
+                    LedgerAccount sender = senderShard.account(senderAccountNumber, "sender");
+                    LedgerAccount receiver = senderShard.account(receiverAccountNumber, "receiver");
+                    if (sender.getBalance() < amount) {
+                        return entry(sender.snapshot(), receiver.snapshot(), amount, TransactionStatus.FAIL, hold);
+                    }
+                    sender.apply(-amount);
+                    receiver.apply(amount);
+                    return entry(sender.snapshot(), receiver.snapshot(), amount, TransactionStatus.SUCCESS, hold);
+                }));
+            } else {
+                entry = transferInSteps(senderShard, senderAccountNumber, receiverShard, receiverAccountNumber, amount, hold);
+            }
+        } catch (RuntimeException ex) {
+            hold.release();
+            throw ex;
+        }
+
+        journal.append(entry, hold);
+        return toTransaction(entry);
+    }
+
+    /*
+     * Debits the sender, journals the transfer when the DurableLedgerJournal is enabled and then credits the receiver.
+     */
+    private JournalEntry transferInSteps(LedgerShard senderShard, Long senderAccountNumber, LedgerShard receiverShard, Long receiverAccountNumber, long amount,
+                                         PostingWatermark.Hold hold) {
+        // Load both accounts in parallel, so an invalid receiver is rejected before the sender is debited
+        CompletableFuture<LedgerBalance> senderLoad = senderShard.submit(() -> senderShard.account(senderAccountNumber, "sender").snapshot());
+        CompletableFuture<LedgerBalance> receiverLoad = receiverShard.submit(() -> receiverShard.account(receiverAccountNumber, "receiver").snapshot());
+        await(senderLoad);
+        LedgerBalance receiver = await(receiverLoad);
+
+        Debit debit = await(senderShard.submit(() -> {
+            LedgerAccount sender = senderShard.account(senderAccountNumber, "sender");
+            if (sender.getBalance() < amount) {
+                return new Debit(false, sender.snapshot());
+            }
+            sender.apply(-amount);
+            return new Debit(true, sender.snapshot());
+        }));
+        if (!debit.applied()) {
+            return entry(debit.sender(), receiver, amount, TransactionStatus.FAIL, hold);
+        }
+
+        if (durableJournal != null) {
+            try {
+                durableJournal.transfer(senderAccountNumber, receiverAccountNumber, amount);
+            } catch (RuntimeException ex) {
+                await(senderShard.submit(() -> {
+                    senderShard.account(senderAccountNumber, "sender").apply(amount);
+                    return null;
+                }));
+                throw ex;
+            }
+        }
+        receiver = await(receiverShard.submit(() -> {
+            LedgerAccount account = receiverShard.account(receiverAccountNumber, "receiver");
+            account.apply(amount);
+            return account.snapshot();
+        }));
+        return entry(debit.sender(), receiver, amount, TransactionStatus.SUCCESS, hold);
+    }
+
+    /*
+     * Saves an edit of an existing Client on the worker of the shard that owns its account. When the account is loaded,
+     * the edit is written under the monitor of the WriteBehindJournal, so no flush of an older balance overwrites it,
+     * and the account then takes the new name and balance.
+     *
+     * @param Client                 client Edited Client, with the id of an existing one
+     * @param Function<Long, Client> save   Saves the Client, inside a database transaction, given the balance held by the
+     *                                      ledger, null when the account is not loaded
+     *
+     * @return                              Saved Client
+     */
+    public Client saveClient(Client client, Function<Long, Client> save) {
+        LedgerShard shard = shardFor(client.getAccountNumber());
+        return await(shard.submit(() -> {
+            LedgerAccount account = shard.find(client.getAccountNumber());
+            if (account == null || !account.snapshot().clientId().equals(client.getId())) {
+                return journal.writeClient(null, () -> save.apply(null));
+            }
+            LedgerBalance held = account.snapshot();
+            LedgerBalance edited = new LedgerBalance(held.clientId(), held.accountNumber(), client.getName(), client.getAccountBalance(), held.sequence() + 1);
+            Client saved = journal.writeClient(edited, () -> save.apply(held.balance()));
+            account.edit(edited);
+            if (durableJournal != null) {
+                durableJournal.open(edited);
+            }
+            return saved;
+        }));
+    }
+
+    /*
+     * Deletes a Client on the worker of the shard that owns its account, so no transfer loads the account meanwhile. An
+     * account the ledger has loaded may have transfers that are not written yet, so its Client is not deleted.
+     *
+     * @param Long     accountNumber Client account number
+     * @param Runnable delete        Deletes the Client
+     */
+    public void deleteClient(Long accountNumber, Runnable delete) {
+        LedgerShard shard = shardFor(accountNumber);
+        await(shard.submit(() -> {
+            if (shard.find(accountNumber) != null) {
+                throw new IllegalArgumentException("Client with accountNumber " + accountNumber + " has transfers in the ledger engine and cannot be deleted");
+            }
+            delete.run();
+            return null;
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (LedgerShard shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    // Runs on a shard worker, before the account is used
+    private void loaded(LedgerBalance balance) {
+        if (durableJournal != null) {
+            durableJournal.open(balance);
+        }
+    }
+
+    private LedgerShard shardFor(Long accountNumber) {
+        return shards[Math.floorMod(Long.hashCode(accountNumber), shards.length)];
+    }
+
+    // The ledger only fails a transfer for insufficient funds
+    private static JournalEntry entry(LedgerBalance sender, LedgerBalance receiver, long amount, TransactionStatus status, PostingWatermark.Hold hold) {
+        TransactionReason reason = status == TransactionStatus.FAIL ? TransactionReason.INSUFFICIENT_FUNDS : null;
+        return new JournalEntry(sender, receiver, amount, status, reason, hold.time());
+    }
+
+    private static Transaction toTransaction(JournalEntry entry) {
+        Transaction transaction = new Transaction();
+        transaction.setSender(toClient(entry.sender()));
+        transaction.setReceiver(toClient(entry.receiver()));
+        transaction.setAmount(entry.amount());
+        transaction.setStatus(entry.status());
+        transaction.setReason(entry.reason());
+        transaction.setTransactionTime(entry.transactionTime());
+        return transaction;
+    }
+
+    private static Client toClient(LedgerBalance balance) {
+        Client client = new Client();
+        client.setName(balance.name());
+        client.setAccountNumber(balance.accountNumber());
+        client.setAccountBalance(balance.balance());
+        return client;
+    }
+
+    /*
+     * Waits for a shard task and rethrows its exception unwrapped, so IllegalArgumentException still maps to 400.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private record Debit(boolean applied, LedgerBalance sender) {
+    }
+}
@@ -0,0 +1,86 @@
+package com.paymentsApi.ledger;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.repository.ClientRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/* LedgerShard
+ * A partition of the in-memory ledger owned by one worker thread.
+ *
+ * Every read and write of the accounts in this shard is submitted to the worker, so balance changes are serialised
+ * without any lock. Accounts are loaded from the database the first time they are touched and stay in memory; the
+ * listener sees the balance of every account before it is used.
+ */
+class LedgerShard {
+    private final ClientRepository clientRepository;
+    private final Consumer<LedgerBalance> loaded;
+    private final ExecutorService worker;
+    // Confined to the worker thread
+    private final Map<Long, LedgerAccount> accounts = new HashMap<>();
+
+    LedgerShard(int index, ClientRepository clientRepository, Consumer<LedgerBalance> loaded) {
+        this.clientRepository = clientRepository;
+        this.loaded = loaded;
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-shard-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /*
+     * Runs a task on the worker thread of this shard.
+     *
+     * @param Supplier<T> task Task that reads or writes accounts of this shard
+     *
+     * @return                 Future completed with the task result
+     */
+    <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, worker);
+    }
+
+    /*
+     * Returns the account for an accountNumber, loading it from the database on first access.
+     * Must only be called from the worker thread.
+     *
+     * @param Long   accountNumber Client account number
+     * @param String role          "sender" or "receiver", used in the error message
+     *
+     * @return                     LedgerAccount of the Client
+     */
+    LedgerAccount account(Long accountNumber, String role) {
+        LedgerAccount account = accounts.get(accountNumber);
+        if (account == null) {
+            Client client = clientRepository.readByAccountNumber(accountNumber).orElseThrow(() -> new IllegalArgumentException("Invalid " + role + " Account Number"));
+            account = new LedgerAccount(client.getId(), client.getAccountNumber(), client.getName(), client.getAccountBalance());
+            loaded.accept(account.snapshot());
+            accounts.put(accountNumber, account);
+        }
+        return account;
+    }
+
+    /*
+     * Returns the account for an accountNumber when it is loaded, without loading it.
+     * Must only be called from the worker thread.
+     *
+     * @param Long accountNumber Client account number
+     *
+     * @return                   LedgerAccount of the Client, null when it is not loaded
+     */
+    LedgerAccount find(Long accountNumber) {
+        return accounts.get(accountNumber);
+    }
+
+    void shutdown() throws InterruptedException {
+        worker.shutdown();
+        worker.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
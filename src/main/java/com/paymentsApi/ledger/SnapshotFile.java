@@ -0,0 +1,108 @@
+package com.paymentsApi.ledger;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/* SnapshotFile
+ * Compact binary snapshot of every Client balance, written by the DurableLedgerJournal.
+ *
+ * The file is the last journal generation it covers, the number of balances, the balances and a CRC32C of everything
+ * before it. A new snapshot is written aside, forced to disk and moved over the previous one, and the move is forced
+ * with the directory, so there is always one complete snapshot.
+ */
+class SnapshotFile {
+
+    private final Path path;
+
+    SnapshotFile(Path path) {
+        this.path = path;
+    }
+
+    /*
+     * @return Snapshot, of generation 0 and without balances when there is none yet
+     */
+    Snapshot read() {
+        if (!Files.exists(path)) {
+            return new Snapshot(0, List.of());
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            ByteBuffer content = ByteBuffer.wrap(bytes, 0, bytes.length - Integer.BYTES);
+            CRC32C crc = new CRC32C();
+            crc.update(content.duplicate());
+            if ((int) crc.getValue() != ByteBuffer.wrap(bytes).getInt(bytes.length - Integer.BYTES)) {
+                throw new IllegalStateException("Ledger snapshot " + path + " is corrupted");
+            }
+            DataInputStream input = new DataInputStream(new java.io.ByteArrayInputStream(bytes, 0, bytes.length - Integer.BYTES));
+            long generation = input.readLong();
+            int count = input.readInt();
+            List<LedgerBalance> balances = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                balances.add(new LedgerBalance(input.readLong(), input.readLong(), input.readUTF(), input.readLong(), 0));
+            }
+            return new Snapshot(generation, balances);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read ledger snapshot " + path, ex);
+        }
+    }
+
+    /*
+     * @param long                      generation Last journal generation whose records the balances include
+     * @param Collection<LedgerBalance> balances   Balance of every account
+     */
+    void write(long generation, Collection<LedgerBalance> balances) {
+        Path next = path.resolveSibling(path.getFileName() + ".next");
+        try (FileChannel channel = FileChannel.open(next, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeLong(generation);
+            output.writeInt(balances.size());
+            for (LedgerBalance balance : balances) {
+                output.writeLong(balance.clientId());
+                output.writeLong(balance.accountNumber());
+                output.writeUTF(balance.name());
+                output.writeLong(balance.balance());
+            }
+            output.flush();
+            CRC32C crc = new CRC32C();
+            crc.update(bytes.toByteArray());
+            output.writeInt((int) crc.getValue());
+            output.flush();
+
+            ByteBuffer content = ByteBuffer.wrap(bytes.toByteArray());
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot write ledger snapshot " + next, ex);
+        }
+        try {
+            Files.move(next, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            try (FileChannel directory = FileChannel.open(path.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+                directory.force(true);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot replace ledger snapshot " + path, ex);
+        }
+    }
+
+    /*
+     * long                generation Last journal generation whose records the balances include
+     * List<LedgerBalance> balances   Balance of every account
+     */
+    record Snapshot(long generation, List<LedgerBalance> balances) {
+    }
+}
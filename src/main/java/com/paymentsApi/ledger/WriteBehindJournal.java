@@ -0,0 +1,173 @@
+package com.paymentsApi.ledger;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.entity.Posting;
+import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.PostingRepository;
+import com.paymentsApi.repository.TransactionRepository;
+import com.paymentsApi.service.ClientCache;
+import com.paymentsApi.service.PostingWatermark;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/* WriteBehindJournal
+ * Queue of transfers applied by the LedgerEngine, flushed to the database in batches by a background thread.
+ *
+ * Each flush writes every journaled Transaction with its postings and only the latest balance of each touched Client,
+ * in one database transaction. Balances are compared by their ledger sequence, so an older snapshot never overwrites a newer one even
+ * when transfers across shards reach the queue out of order. A failed flush is retried with the same batch. The time
+ * of each entry stays held in the PostingWatermark until its postings are committed.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.ledger.enabled", havingValue = "true")
+public class WriteBehindJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindJournal.class);
+
+    private final ClientRepository clientRepository;
+    private final TransactionRepository transactionRepository;
+    private final PostingRepository postingRepository;
+    private final ClientCache clientCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final BlockingQueue<Queued> queue = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService flusher;
+
+    // Only touched while holding the monitor of this journal
+    private final List<Queued> pending = new ArrayList<>();
+    private final Map<Long, Long> flushedSequences = new HashMap<>();
+
+    public WriteBehindJournal(ClientRepository clientRepository, TransactionRepository transactionRepository, PostingRepository postingRepository, ClientCache clientCache,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${payments.ledger.flush-batch-size:1000}") int batchSize, @Value("${payments.ledger.flush-interval-ms:50}") long flushIntervalMs) {
+        this.clientRepository = clientRepository;
+        this.transactionRepository = transactionRepository;
+        this.postingRepository = postingRepository;
+        this.clientCache = clientCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * @param JournalEntry          entry Applied transfer
+     * @param PostingWatermark.Hold hold  Hold of the transfer time, released once the entry is written
+     */
+    public void append(JournalEntry entry, PostingWatermark.Hold hold) {
+        queue.add(new Queued(entry, hold));
+    }
+
+    /*
+     * Writes queued entries to the database until the queue is empty or a batch fails.
+     */
+    public synchronized void flush() {
+        while (true) {
+            if (pending.isEmpty()) {
+                queue.drainTo(pending, batchSize);
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                List<JournalEntry> entries = pending.stream().map(Queued::entry).toList();
+                Map<Long, LedgerBalance> balances = latestBalances(entries);
+                transactionTemplate.executeWithoutResult(status -> write(entries, balances));
+                balances.forEach((clientId, balance) -> flushedSequences.put(clientId, balance.sequence()));
+                clientCache.evictAll(balances.values().stream().map(LedgerBalance::accountNumber).toList());
+                pending.forEach(queued -> queued.hold().release());
+                pending.clear();
+            } catch (RuntimeException ex) {
+                log.error("Failed to flush {} ledger journal entries, retrying on next run", pending.size(), ex);
+                return;
+            }
+        }
+    }
+
+    /*
+     * Saves an edit of a Client in a database transaction of its own. It runs under the monitor of this journal, and
+     * the edited balance counts as flushed, so a flush never writes an older balance of the Client over the edit.
+     *
+     * @param LedgerBalance edited Balance of the edit, null when the ledger has not loaded the account
+     * @param Supplier<T>   write  Writes the edit
+     *
+     * @return                     Result of the write
+     */
+    public synchronized <T> T writeClient(LedgerBalance edited, Supplier<T> write) {
+        T result = transactionTemplate.execute(status -> write.get());
+        if (edited != null) {
+            flushedSequences.put(edited.clientId(), edited.sequence());
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+
+    private Map<Long, LedgerBalance> latestBalances(List<JournalEntry> entries) {
+        Map<Long, LedgerBalance> balances = new HashMap<>();
+        for (JournalEntry entry : entries) {
+            keepLatest(balances, entry.sender());
+            keepLatest(balances, entry.receiver());
+        }
+        return balances;
+    }
+
+    private void keepLatest(Map<Long, LedgerBalance> balances, LedgerBalance balance) {
+        if (balance.sequence() <= flushedSequences.getOrDefault(balance.clientId(), 0L)) {
+            return;
+        }
+        balances.merge(balance.clientId(), balance, (current, candidate) -> candidate.sequence() > current.sequence() ? candidate : current);
+    }
+
+    private void write(List<JournalEntry> entries, Map<Long, LedgerBalance> balances) {
+        List<Client> clients = clientRepository.findAllById(balances.keySet());
+        for (Client client : clients) {
+            client.setAccountBalance(balances.get(client.getId()).balance());
+        }
+        clientRepository.saveAll(clients);
+
+        List<Transaction> transactions = new ArrayList<>(entries.size());
+        for (JournalEntry entry : entries) {
+            Transaction transaction = new Transaction();
+            transaction.setSender(clientRepository.getReferenceById(entry.sender().clientId()));
+            transaction.setReceiver(clientRepository.getReferenceById(entry.receiver().clientId()));
+            transaction.setAmount(entry.amount());
+            transaction.setStatus(entry.status());
+            transaction.setReason(entry.reason());
+            transaction.setTransactionTime(entry.transactionTime());
+            transactions.add(transaction);
+        }
+        transactionRepository.saveAll(transactions);
+        postingRepository.saveAll(transactions.stream().flatMap(transaction -> Posting.of(transaction).stream()).toList());
+    }
+
+    private record Queued(JournalEntry entry, PostingWatermark.Hold hold) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.paymentsApi.money;
+
+import java.math.BigDecimal;
+
+/* Cents
+ * Helpers for money amounts stored as a primitive long number of cents.
+ *
+ * Balances and amounts are kept in cents everywhere in the application, so sums and comparisons are exact and never
+ * allocate. The decimal representation (for example 1000.50) only exists at the JSON boundary.
+ */
+public final class Cents {
+
+    private static final int SCALE = 2;
+
+    // Reason a payment amount is refused, the message of the IllegalArgumentException of requirePayable
+    public static final String NOT_PAYABLE = "Invalid amount, it must be greater than zero";
+
+    private Cents() {
+    }
+
+    /*
+     * Converts a decimal amount to cents.
+     *
+     * @param BigDecimal amount Decimal amount with at most two fraction digits
+     *
+     * @return                  Amount in cents
+     */
+    public static long fromDecimal(BigDecimal amount) {
+        try {
+            return amount.movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " must have at most " + SCALE + " decimal places");
+        }
+    }
+
+    /*
+     * @param long cents Amount in cents
+     *
+     * @return           true when the amount can be paid, that is when it is greater than zero
+     */
+    public static boolean isPayable(long cents) {
+        return cents > 0;
+    }
+
+    /*
+     * Checks the amount of a payment before anything is read or locked for it.
+     *
+     * @param long cents Amount in cents
+     *
+     * @throws IllegalArgumentException with NOT_PAYABLE when the amount cannot be paid
+     */
+    public static void requirePayable(long cents) {
+        if (!isPayable(cents)) {
+            throw new IllegalArgumentException(NOT_PAYABLE);
+        }
+    }
+
+    /*
+     * Formats cents as a plain decimal string, for example 100050 as "1000.50".
+     *
+     * @param long cents Amount in cents
+     *
+     * @return           Decimal representation with two fraction digits
+     */
+    public static String toDecimalString(long cents) {
+        StringBuilder builder = new StringBuilder(24);
+        if (cents < 0) {
+            builder.append('-');
+        }
+        long units = Math.abs(cents / 100);
+        int fraction = (int) Math.abs(cents % 100);
+        builder.append(units).append('.');
+        if (fraction < 10) {
+            builder.append('0');
+        }
+        return builder.append(fraction).toString();
+    }
+}
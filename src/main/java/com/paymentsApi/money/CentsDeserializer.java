@@ -0,0 +1,39 @@
+package com.paymentsApi.money;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/* CentsDeserializer
+ * Reads a JSON decimal amount (number or string, for example 1000.50 or "1000.50") as a number of cents.
+ * Amounts with more than two decimal places are rejected instead of being rounded.
+ */
+public class CentsDeserializer extends StdDeserializer<Long> {
+
+    public CentsDeserializer() {
+        super(Long.class);
+    }
+
+    @Override
+    public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.currentToken();
+        try {
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                return Math.multiplyExact(parser.getLongValue(), 100L);
+            }
+            if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+                return Cents.fromDecimal(parser.getDecimalValue());
+            }
+            if (token == JsonToken.VALUE_STRING) {
+                return Cents.fromDecimal(new BigDecimal(parser.getText().trim()));
+            }
+        } catch (ArithmeticException | IllegalArgumentException ex) {
+            return (Long) context.handleWeirdStringValue(Long.class, parser.getText(), ex.getMessage());
+        }
+        return (Long) context.handleUnexpectedToken(Long.class, parser);
+    }
+}
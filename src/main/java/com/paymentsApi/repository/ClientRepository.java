@@ -3,15 +3,19 @@ package com.paymentsApi.repository;
 import com.paymentsApi.entity.Client;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
 @Repository
-public interface ClientRepository extends JpaRepository<Client, Long> {
+public interface ClientRepository extends JpaRepository<Client, Long>, JpaSpecificationExecutor<Client> {
     /*
      * When searching a Client from its accountNumber, the application should lock these entities to avoid wrong impact
      * on account balance.
@@ -21,4 +25,69 @@ public interface ClientRepository extends JpaRepository<Client, Long> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT c FROM Client c WHERE c.accountNumber = :accountNumber")
     Optional<Client> findByAccountNumber(Long accountNumber);
-}
\ No newline at end of file
+
+    /*
+     * Non-locking lookup of a Client by its accountNumber, for paths that only read the row.
+     */
+    Optional<Client> readByAccountNumber(Long accountNumber);
+
+    /*
+     * Which of the given accountNumbers already belong to a Client, read without loading the Clients.
+     */
+    @Query("SELECT c.accountNumber FROM Client c WHERE c.accountNumber IN :accountNumbers")
+    List<Long> findExistingAccountNumbers(Collection<Long> accountNumbers);
+
+    /*
+     * Balance changes of the lanes locking mode (see AccountLaneDispatcher). Each one is a single statement, so the row
+     * is only locked while it runs and concurrent batches still see a consistent balance. The debit only applies when
+     * the balance covers the amount.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE client SET account_balance = account_balance - :amount, version = version + 1 WHERE account_number = :accountNumber "
+            + "AND account_balance >= :amount", nativeQuery = true)
+    int debit(Long accountNumber, long amount);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE client SET account_balance = account_balance + :amount, version = version + 1 WHERE account_number = :accountNumber", nativeQuery = true)
+    int credit(Long accountNumber, long amount);
+
+    /*
+     * Credits that a lane transfer between two lanes still owes its receiver, by Transaction id. A credit is added with
+     * the debit and removed with the credit, so it is applied exactly once.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO pending_credit (transaction_id) VALUES (:transactionId)", nativeQuery = true)
+    int addPendingCredit(Long transactionId);
+
+    @Modifying
+    @Query(value = "DELETE FROM pending_credit WHERE transaction_id = :transactionId", nativeQuery = true)
+    int removePendingCredit(Long transactionId);
+
+    @Query(value = "SELECT transaction_id FROM pending_credit ORDER BY transaction_id", nativeQuery = true)
+    List<Long> findPendingCredits();
+
+    /*
+     * Balance slots of accounts with a split balance (see BalanceSlots). Slots are only ever added to, locked and
+     * folded into the Client balance with these statements; the read-only BalanceSlot entity is only for queries.
+     */
+    @Modifying
+    @Query(value = "UPDATE balance_slot SET amount = amount + :amount WHERE client_id = :clientId AND slot = :slot", nativeQuery = true)
+    int addToBalanceSlot(Long clientId, int slot, long amount);
+
+    @Modifying
+    @Query(value = "INSERT INTO balance_slot (client_id, slot, amount) SELECT c.id, :slot, 0 FROM client c WHERE c.account_number = :accountNumber "
+            + "AND NOT EXISTS (SELECT 1 FROM balance_slot s WHERE s.client_id = c.id AND s.slot = :slot)", nativeQuery = true)
+    int createBalanceSlot(Long accountNumber, int slot);
+
+    @Query(value = "SELECT amount FROM balance_slot WHERE client_id = :clientId ORDER BY slot FOR UPDATE", nativeQuery = true)
+    List<Long> lockBalanceSlots(Long clientId);
+
+    @Modifying
+    @Query(value = "UPDATE balance_slot SET amount = 0 WHERE client_id = :clientId AND amount <> 0", nativeQuery = true)
+    int clearBalanceSlots(Long clientId);
+
+    // One statement, so a concurrent fold of the slots into the balance is either fully seen or not at all
+    @Query(value = "SELECT c.account_balance + COALESCE((SELECT SUM(s.amount) FROM balance_slot s WHERE s.client_id = c.id), 0) FROM client c WHERE c.id = :clientId",
+            nativeQuery = true)
+    long readFullBalance(Long clientId);
+}
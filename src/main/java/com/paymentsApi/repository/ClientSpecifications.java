@@ -0,0 +1,69 @@
+package com.paymentsApi.repository;
+
+import com.paymentsApi.entity.BalanceSlot;
+import com.paymentsApi.entity.Client;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+/* ClientSpecifications
+ * Optional filters of the Client list. A null argument returns no restriction, so filters combine with and().
+ */
+public final class ClientSpecifications {
+
+    private ClientSpecifications() {
+    }
+
+    /*
+     * Clients whose name starts with the prefix. LIKE wildcards in the prefix are matched literally.
+     */
+    public static Specification<Client> nameStartsWith(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+        String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return (root, query, builder) -> builder.like(root.get("name"), pattern, '\\');
+    }
+
+    public static Specification<Client> balanceAtLeast(Long minBalance) {
+        return minBalance == null ? null : (root, query, builder) -> builder.greaterThanOrEqualTo(root.get("accountBalance"), minBalance);
+    }
+
+    public static Specification<Client> balanceAtMost(Long maxBalance) {
+        return maxBalance == null ? null : (root, query, builder) -> builder.lessThanOrEqualTo(root.get("accountBalance"), maxBalance);
+    }
+
+    /*
+     * Balance filters and order on the full balance, the stored balance plus the balance slots not folded into it yet.
+     * Only needed when split balances are enabled (see BalanceSlots); the slots are summed by a correlated subquery.
+     */
+    public static Specification<Client> fullBalanceAtLeast(Long minBalance) {
+        return minBalance == null ? null : (root, query, builder) -> builder.greaterThanOrEqualTo(fullBalance(root, query, builder), minBalance);
+    }
+
+    public static Specification<Client> fullBalanceAtMost(Long maxBalance) {
+        return maxBalance == null ? null : (root, query, builder) -> builder.lessThanOrEqualTo(fullBalance(root, query, builder), maxBalance);
+    }
+
+    /*
+     * Orders by the full balance, ties by id. The page request must be unsorted, or its order replaces this one.
+     */
+    public static Specification<Client> orderByFullBalance(Sort.Direction direction) {
+        return (root, query, builder) -> {
+            Expression<Long> fullBalance = fullBalance(root, query, builder);
+            query.orderBy(direction.isAscending() ? builder.asc(fullBalance) : builder.desc(fullBalance), builder.asc(root.get("id")));
+            return null;
+        };
+    }
+
+    private static Expression<Long> fullBalance(Root<Client> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
+        Subquery<Long> slots = query.subquery(Long.class);
+        Root<BalanceSlot> slot = slots.from(BalanceSlot.class);
+        slots.select(builder.coalesce(builder.sum(slot.<Long>get("amount")), 0L)).where(builder.equal(slot.get("clientId"), root.get("id")));
+        return builder.sum(root.get("accountBalance"), slots);
+    }
+}
@@ -0,0 +1,19 @@
+package com.paymentsApi.repository;
+
+import com.paymentsApi.entity.PaymentTicket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PaymentTicketRepository extends JpaRepository<PaymentTicket, String> {
+
+    /*
+     * Returns which of the given tickets are already settled, without loading them.
+     */
+    @Query("SELECT t.ticketId FROM PaymentTicket t WHERE t.ticketId IN :ticketIds")
+    List<String> findSettledIds(Collection<String> ticketIds);
+}
@@ -0,0 +1,44 @@
+package com.paymentsApi.repository;
+
+import com.paymentsApi.entity.Posting;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface PostingRepository extends JpaRepository<Posting, Long> {
+
+    /*
+     * Balance checkpoints (see BalanceCheckpointJob). Checkpoints have no entity, they are only written and read with
+     * these statements. Every run writes its checkpoints with the same asOf, so the latest one is where the next run
+     * starts reading postings.
+     */
+    @Query(value = "SELECT MAX(as_of) FROM balance_checkpoint", nativeQuery = true)
+    LocalDateTime findLastCheckpointTime();
+
+    /*
+     * Writes a checkpoint at asOf for every Client with postings in (from, asOf]: its previous checkpoint plus those
+     * postings. Reads only the postings since the last run, through the posting time index.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO balance_checkpoint (client_id, as_of, balance) "
+            + "SELECT p.client_id, :asOf, SUM(p.amount) + COALESCE((SELECT cp.balance FROM balance_checkpoint cp WHERE cp.client_id = p.client_id "
+            + "AND cp.as_of = (SELECT MAX(last.as_of) FROM balance_checkpoint last WHERE last.client_id = p.client_id)), 0) "
+            + "FROM posting p WHERE p.posted_at > :from AND p.posted_at <= :asOf GROUP BY p.client_id", nativeQuery = true)
+    int insertCheckpoints(LocalDateTime from, LocalDateTime asOf);
+
+    /*
+     * Balance of a Client at a time: its latest checkpoint at or before it plus the postings in (checkpoint, at].
+     * The checkpoint is found through the primary key and the postings with a range scan of the client time index, so
+     * only the postings since one checkpoint interval are read, however long the history. Without a checkpoint every
+     * posting up to the time is summed.
+     */
+    @Query(value = "SELECT COALESCE(cp.balance, 0) + COALESCE((SELECT SUM(p.amount) FROM posting p WHERE p.client_id = :clientId "
+            + "AND p.posted_at > COALESCE(cp.as_of, TIMESTAMP '1970-01-01 00:00:00') AND p.posted_at <= :at), 0) "
+            + "FROM (VALUES (1)) one LEFT JOIN (SELECT last.balance, last.as_of FROM balance_checkpoint last WHERE last.client_id = :clientId "
+            + "AND last.as_of <= :at ORDER BY last.as_of DESC LIMIT 1) cp ON 1 = 1", nativeQuery = true)
+    long findBalanceAt(Long clientId, LocalDateTime at);
+}
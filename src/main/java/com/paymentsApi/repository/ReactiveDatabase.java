@@ -0,0 +1,62 @@
+package com.paymentsApi.repository;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+/* ReactiveDatabase
+ * R2DBC connection pool of the reactive /v2 API, next to the Hikari pool of JPA. Both reach the same database: the
+ * default URL names the in-memory database of spring.datasource.url, which the JDBC pool keeps open.
+ *
+ * The pool and its transaction manager are not beans, so the JPA transaction manager stays the only one @Transactional
+ * can pick. The r2dbc-h2 driver runs each statement on the thread that subscribes to it, which for an in-memory
+ * database is a short, CPU bound call; a network database only needs its own driver and URL, e.g. r2dbc:postgresql://.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.v2.enabled", havingValue = "true")
+public class ReactiveDatabase {
+
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+
+    public ReactiveDatabase(@Value("${payments.v2.r2dbc.url:r2dbc:h2:mem:///payments-db}") String url, @Value("${payments.v2.r2dbc.username:admin}") String username,
+                            @Value("${payments.v2.r2dbc.password:admin}") String password, @Value("${payments.v2.r2dbc.pool-size:10}") int poolSize) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(Math.min(2, poolSize))
+                .maxSize(poolSize)
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionPool);
+        this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionPool));
+    }
+
+    public DatabaseClient client() {
+        return databaseClient;
+    }
+
+    /*
+     * Runs the statements of a Mono in one database transaction, committed when it completes and rolled back when it
+     * fails or is cancelled.
+     */
+    public <T> Mono<T> inTransaction(Mono<T> statements) {
+        return transactionalOperator.transactional(statements);
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionPool.dispose();
+    }
+}
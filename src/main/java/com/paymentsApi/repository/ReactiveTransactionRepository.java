@@ -0,0 +1,176 @@
+package com.paymentsApi.repository;
+
+import com.paymentsApi.dto.TransactionSummary;
+import io.r2dbc.spi.Readable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/* ReactiveTransactionRepository
+ * R2DBC statements of the reactive /v2 API, on the tables JPA maps for /v1.
+ *
+ * History and statements run the native queries of TransactionHistoryRepositoryImpl. Transfers lock their Clients with
+ * SELECT ... FOR UPDATE, one account at a time in accountNumber order as the ordered locking mode does, and change
+ * balances with relative updates.
+ *
+ * Ids are taken from the same sequences as the entities. The entities allocate 50 ids per sequence value V, namely
+ * (V - 49, V], so ids derived from a value read here are never handed out by Hibernate.
+ */
+@Repository
+@ConditionalOnProperty(name = "payments.v2.enabled", havingValue = "true")
+public class ReactiveTransactionRepository {
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveTransactionRepository(ReactiveDatabase reactiveDatabase) {
+        this.databaseClient = reactiveDatabase.client();
+    }
+
+    /*
+     * @return Id of the Client with the accountNumber, empty when there is none
+     */
+    public Mono<Long> findClientId(Long accountNumber) {
+        return databaseClient.sql("SELECT id FROM client WHERE account_number = :accountNumber")
+                .bind("accountNumber", accountNumber)
+                .map(row -> row.get("id", Long.class))
+                .one();
+    }
+
+    /*
+     * Newest first, see TransactionHistoryRepository.findStatement.
+     */
+    public Flux<TransactionSummary> findStatement(Long clientId, LocalDateTime transactionTime, Long id, int limit) {
+        return databaseClient.sql(TransactionHistoryRepositoryImpl.STATEMENT)
+                .bind("clientId", clientId)
+                .bind("transactionTime", transactionTime)
+                .bind("id", id)
+                .bind("limit", limit)
+                .map(ReactiveTransactionRepository::summary)
+                .all();
+    }
+
+    /*
+     * Full history of a Client, oldest first. Rows are read as the subscriber requests them and the statement is
+     * closed when it cancels, so a slow consumer holds one connection instead of the whole history in memory.
+     */
+    public Flux<TransactionSummary> streamHistory(Long clientId) {
+        return databaseClient.sql(TransactionHistoryRepositoryImpl.HISTORY_OLDEST_FIRST)
+                .bind("clientId", clientId)
+                .map(ReactiveTransactionRepository::summary)
+                .all();
+    }
+
+    /*
+     * Locks the Client row of an account until the database transaction completes.
+     *
+     * @return Locked Client, empty when the account does not exist
+     */
+    public Mono<LockedClient> lockClient(Long accountNumber) {
+        return databaseClient.sql("SELECT id, account_number, account_balance FROM client WHERE account_number = :accountNumber FOR UPDATE")
+                .bind("accountNumber", accountNumber)
+                .map(row -> new LockedClient(row.get("id", Long.class), row.get("account_number", Long.class), row.get("account_balance", Long.class)))
+                .one();
+    }
+
+    /*
+     * Adds the amount to the balance of a locked Client, negative for a debit.
+     */
+    public Mono<Void> changeBalance(Long clientId, long amount) {
+        return databaseClient.sql("UPDATE client SET account_balance = account_balance + :amount, version = version + 1 WHERE id = :id")
+                .bind("amount", amount)
+                .bind("id", clientId)
+                .then();
+    }
+
+    /*
+     * @return Next value of an id sequence, the top of a block of 50 ids
+     */
+    public Mono<Long> nextSequenceValue(String sequence) {
+        return databaseClient.sql("SELECT NEXT VALUE FOR " + sequence)
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    public Mono<Void> insertTransaction(Long id, Long senderId, Long receiverId, LocalDateTime transactionTime, long amount, short statusCode, Short reasonCode) {
+        DatabaseClient.GenericExecuteSpec insert = databaseClient.sql("INSERT INTO transaction (id, sender_id, receiver_id, transaction_time, amount, status, reason) "
+                        + "VALUES (:id, :senderId, :receiverId, :transactionTime, :amount, :status, :reason)")
+                .bind("id", id)
+                .bind("senderId", senderId)
+                .bind("receiverId", receiverId)
+                .bind("transactionTime", transactionTime)
+                .bind("amount", amount)
+                .bind("status", statusCode);
+        return (reasonCode == null ? insert.bindNull("reason", Short.class) : insert.bind("reason", reasonCode)).then();
+    }
+
+    public Mono<Void> insertPosting(Long id, Long transactionId, Long clientId, long amount, LocalDateTime postedAt) {
+        return databaseClient.sql("INSERT INTO posting (id, transaction_id, client_id, amount, posted_at) VALUES (:id, :transactionId, :clientId, :amount, :postedAt)")
+                .bind("id", id)
+                .bind("transactionId", transactionId)
+                .bind("clientId", clientId)
+                .bind("amount", amount)
+                .bind("postedAt", postedAt)
+                .then();
+    }
+
+    /*
+     * Stores an Idempotency-Key with its Transaction. A key that is already stored fails on the primary key.
+     */
+    public Mono<Void> insertIdempotencyKey(String idempotencyKey, Long transactionId, Long senderAccountNumber, Long receiverAccountNumber, long amount) {
+        return databaseClient.sql("INSERT INTO idempotency_key (idempotency_key, transaction_id, sender_account_number, receiver_account_number, amount, created_at) "
+                        + "VALUES (:idempotencyKey, :transactionId, :senderAccountNumber, :receiverAccountNumber, :amount, :createdAt)")
+                .bind("idempotencyKey", idempotencyKey)
+                .bind("transactionId", transactionId)
+                .bind("senderAccountNumber", senderAccountNumber)
+                .bind("receiverAccountNumber", receiverAccountNumber)
+                .bind("amount", amount)
+                .bind("createdAt", LocalDateTime.now())
+                .then();
+    }
+
+    /*
+     * @return Payment stored for an Idempotency-Key, empty when the key is new
+     */
+    public Mono<StoredKey> findIdempotencyKey(String idempotencyKey) {
+        return databaseClient.sql("SELECT transaction_id, sender_account_number, receiver_account_number, amount FROM idempotency_key WHERE idempotency_key = :idempotencyKey")
+                .bind("idempotencyKey", idempotencyKey)
+                .map(row -> new StoredKey(row.get("transaction_id", Long.class), row.get("sender_account_number", Long.class),
+                        row.get("receiver_account_number", Long.class), row.get("amount", Long.class)))
+                .one();
+    }
+
+    /*
+     * @return Transaction with the account numbers of its Clients
+     */
+    public Mono<TransactionSummary> findSummary(Long transactionId) {
+        return databaseClient.sql("""
+                        SELECT t.id, s.account_number AS sender_account_number, r.account_number AS receiver_account_number, t.transaction_time, t.amount, t.status, t.reason
+                        FROM transaction t
+                        JOIN client s ON s.id = t.sender_id
+                        JOIN client r ON r.id = t.receiver_id
+                        WHERE t.id = :id""")
+                .bind("id", transactionId)
+                .map(ReactiveTransactionRepository::summary)
+                .one();
+    }
+
+    // Same columns and codes as the "TransactionSummary" result set mapping
+    private static TransactionSummary summary(Readable row) {
+        return new TransactionSummary(row.get("id", Long.class), row.get("sender_account_number", Long.class), row.get("receiver_account_number", Long.class),
+                row.get("transaction_time", LocalDateTime.class), row.get("amount", Long.class), row.get("status", Short.class), row.get("reason", Short.class));
+    }
+
+    public record LockedClient(Long id, Long accountNumber, long balance) {
+    }
+
+    public record StoredKey(Long transactionId, Long senderAccountNumber, Long receiverAccountNumber, long amount) {
+
+        public boolean matches(Long senderAccountNumber, Long receiverAccountNumber, long amount) {
+            return this.senderAccountNumber.equals(senderAccountNumber) && this.receiverAccountNumber.equals(receiverAccountNumber) && this.amount == amount;
+        }
+    }
+}
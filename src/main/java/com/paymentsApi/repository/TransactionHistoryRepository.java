@@ -0,0 +1,47 @@
+package com.paymentsApi.repository;
+
+import com.paymentsApi.dto.TransactionSummary;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/* TransactionHistoryRepository
+ * History lookups of TransactionRepository that return TransactionSummary rows from native queries.
+ */
+public interface TransactionHistoryRepository {
+
+    /*
+     * Full history of a Client, newest first.
+     *
+     * @param Long clientId Client id
+     *
+     * @return              List of TransactionSummary objects.
+     */
+    List<TransactionSummary> findHistory(Long clientId);
+
+    /*
+     * One page of a Client statement (keyset pagination): Transactions sent or received by the Client, newest first,
+     * ordered after the given position. The id breaks ties between Transactions with the same transactionTime,
+     * so the order is stable across pages.
+     *
+     * @param Long          clientId        Client id
+     * @param LocalDateTime transactionTime transactionTime of the last Transaction of the previous page
+     * @param Long          id              id of the last Transaction of the previous page
+     * @param int           limit           Maximum number of rows
+     *
+     * @return                              List of TransactionSummary objects.
+     */
+    List<TransactionSummary> findStatement(Long clientId, LocalDateTime transactionTime, Long id, int limit);
+
+    /*
+     * Full history of a Client, oldest first, read through a database cursor.
+     * Rows are mapped to TransactionSummary, so nothing is added to the persistence context while streaming.
+     * The Stream must be consumed inside a transaction and closed.
+     *
+     * @param Long clientId Client id
+     *
+     * @return              Stream of TransactionSummary objects.
+     */
+    Stream<TransactionSummary> streamHistory(Long clientId);
+}
@@ -0,0 +1,88 @@
+package com.paymentsApi.repository;
+
+import com.paymentsApi.dto.TransactionSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/* TransactionHistoryRepositoryImpl
+ * The queries are native so that each side of "sent or received by" can seek into its own history index (V2 migration);
+ * an OR over sender_id and receiver_id is planned as a table scan. Rows are mapped by the "TransactionSummary" result
+ * set mapping declared on Transaction, joining only the account numbers of the two Clients.
+ * Self-transfers are kept on the sender side.
+ */
+class TransactionHistoryRepositoryImpl implements TransactionHistoryRepository {
+
+    static final String HISTORY = """
+            SELECT h.id, s.account_number AS sender_account_number, r.account_number AS receiver_account_number, h.transaction_time, h.amount, h.status, h.reason
+            FROM (
+                SELECT * FROM transaction WHERE sender_id = :clientId
+                UNION ALL
+                SELECT * FROM transaction WHERE receiver_id = :clientId AND sender_id <> :clientId
+            ) h
+            JOIN client s ON s.id = h.sender_id
+            JOIN client r ON r.id = h.receiver_id
+            ORDER BY h.transaction_time DESC, h.id DESC""";
+
+    static final String HISTORY_OLDEST_FIRST = """
+            SELECT h.id, s.account_number AS sender_account_number, r.account_number AS receiver_account_number, h.transaction_time, h.amount, h.status, h.reason
+            FROM (
+                SELECT * FROM transaction WHERE sender_id = :clientId
+                UNION ALL
+                SELECT * FROM transaction WHERE receiver_id = :clientId AND sender_id <> :clientId
+            ) h
+            JOIN client s ON s.id = h.sender_id
+            JOIN client r ON r.id = h.receiver_id
+            ORDER BY h.transaction_time, h.id""";
+
+    // The redundant "transaction_time <= ?" bound is what makes H2 pick the history index over the foreign key index
+    static final String STATEMENT = """
+            SELECT h.id, s.account_number AS sender_account_number, r.account_number AS receiver_account_number, h.transaction_time, h.amount, h.status, h.reason
+            FROM (
+                (SELECT * FROM transaction WHERE sender_id = :clientId AND transaction_time <= :transactionTime
+                 AND (transaction_time < :transactionTime OR id < :id)
+                 ORDER BY transaction_time DESC, id DESC FETCH FIRST :limit ROWS ONLY)
+                UNION ALL
+                (SELECT * FROM transaction WHERE receiver_id = :clientId AND sender_id <> :clientId AND transaction_time <= :transactionTime
+                 AND (transaction_time < :transactionTime OR id < :id)
+                 ORDER BY transaction_time DESC, id DESC FETCH FIRST :limit ROWS ONLY)
+            ) h
+            JOIN client s ON s.id = h.sender_id
+            JOIN client r ON r.id = h.receiver_id
+            ORDER BY h.transaction_time DESC, h.id DESC FETCH FIRST :limit ROWS ONLY""";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<TransactionSummary> findHistory(Long clientId) {
+        return entityManager.createNativeQuery(HISTORY, "TransactionSummary")
+                .setParameter("clientId", clientId)
+                .getResultList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<TransactionSummary> findStatement(Long clientId, LocalDateTime transactionTime, Long id, int limit) {
+        return entityManager.createNativeQuery(STATEMENT, "TransactionSummary")
+                .setParameter("clientId", clientId)
+                .setParameter("transactionTime", transactionTime)
+                .setParameter("id", id)
+                .setParameter("limit", limit)
+                .getResultList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Stream<TransactionSummary> streamHistory(Long clientId) {
+        return entityManager.createNativeQuery(HISTORY_OLDEST_FIRST, "TransactionSummary")
+                .setParameter("clientId", clientId)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, 500)
+                .getResultStream();
+    }
+}
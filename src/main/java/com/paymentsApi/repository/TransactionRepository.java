@@ -1,16 +1,23 @@
 package com.paymentsApi.repository;
 
+import com.paymentsApi.dto.TransactionSummary;
 import com.paymentsApi.entity.Client;
 import com.paymentsApi.entity.Transaction;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 
 @Repository
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, TransactionHistoryRepository {
     List<Transaction> findBySender(Client sender);
 
     List<Transaction> findByReceiver(Client receiver);
-}
\ No newline at end of file
+
+    // Loads both Clients with the Transaction, for responses serialised outside the persistence context
+    @EntityGraph(attributePaths = {"sender", "receiver"})
+    Optional<Transaction> findWithClientsById(Long id);
+}
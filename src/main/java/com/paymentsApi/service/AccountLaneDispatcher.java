@@ -0,0 +1,106 @@
+package com.paymentsApi.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/* AccountLaneDispatcher
+ * Fixed set of single-threaded lanes for the lanes locking mode, chosen by hashing the account numbers.
+ *
+ * Every balance change a single transfer makes to an account runs on the lane of that account, so changes of one
+ * account are serialised in memory instead of on its row lock. A lane task only ever touches the accounts of its own
+ * lane and never waits for another lane: work for another account is handed to that account's lane as a new task. No
+ * lane can wait for another, so lanes cannot deadlock.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.locking.mode", havingValue = "lanes")
+public class AccountLaneDispatcher {
+
+    private final ScheduledExecutorService[] lanes;
+
+    public AccountLaneDispatcher(@Value("${payments.lanes.count:16}") int laneCount, @Value("${payments.split-balance.enabled:false}") boolean splitBalanceEnabled) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("payments.lanes.count must be at least 1");
+        }
+        // Split receivers are credited through their balance slots, which the lanes do not own
+        if (splitBalanceEnabled) {
+            throw new IllegalStateException("payments.locking.mode=lanes cannot be combined with payments.split-balance.enabled=true");
+        }
+        this.lanes = new ScheduledExecutorService[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String name = "account-lane-" + i;
+            lanes[i] = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /*
+     * @return true when both accounts belong to the same lane
+     */
+    public boolean sameLane(Long firstAccountNumber, Long secondAccountNumber) {
+        return laneOf(firstAccountNumber) == laneOf(secondAccountNumber);
+    }
+
+    /*
+     * @return Index of the lane of an account
+     */
+    public int laneOf(Long accountNumber) {
+        return Math.floorMod(Objects.hashCode(accountNumber), lanes.length);
+    }
+
+    /*
+     * Queues a task on the lane of an account.
+     *
+     * @param Long        accountNumber Account number the task changes
+     * @param Supplier<T> task          Task to run, it must only change accounts of the same lane
+     *
+     * @return                          Future completed with the result of the task on the lane thread
+     */
+    public <T> CompletableFuture<T> submit(Long accountNumber, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, lanes[laneOf(accountNumber)]);
+    }
+
+    /*
+     * Queues a task on the lane of an account after a delay, so the lane keeps working in the meantime.
+     */
+    public void schedule(Long accountNumber, Runnable task, long delayMs) {
+        lanes[laneOf(accountNumber)].schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ScheduledExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ScheduledExecutorService lane : lanes) {
+            lane.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /*
+     * Waits for lane tasks on the calling thread and rethrows their exception unwrapped, so IllegalArgumentException
+     * still maps to 400. Lane threads never call this.
+     */
+    static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.paymentsApi.service;
+
+import com.paymentsApi.repository.PostingRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/* BalanceCheckpointJob
+ * Periodically materialises the balance of every account with new postings into a balance_checkpoint row.
+ *
+ * A run only reads the postings since the previous run and adds them to each account's previous checkpoint, so its
+ * cost follows the number of new postings, not the length of the history. Checkpoints are written as of the
+ * PostingWatermark: a posting is timestamped before it is committed, and a checkpoint past a posting that is not
+ * visible yet would miss it for good, as later runs only read postings after it.
+ */
+@Component
+public class BalanceCheckpointJob {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceCheckpointJob.class);
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final PostingRepository postingRepository;
+    private final PostingWatermark postingWatermark;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService scheduler;
+
+    public BalanceCheckpointJob(PostingRepository postingRepository, PostingWatermark postingWatermark, PlatformTransactionManager transactionManager,
+                                @Value("${payments.postings.checkpoint-interval-ms:60000}") long intervalMs) {
+        this.postingRepository = postingRepository;
+        this.postingWatermark = postingWatermark;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (intervalMs > 0) {
+            this.scheduler.scheduleWithFixedDelay(this::run, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /*
+     * Writes the checkpoints of every account with postings since the previous run.
+     *
+     * @return Number of checkpoints written
+     */
+    public synchronized int checkpoint() {
+        // A posting at the watermark itself can still appear, and the database rounds timestamps to microseconds
+        LocalDateTime asOf = postingWatermark.committedBefore().minus(1, ChronoUnit.MILLIS);
+        return transactionTemplate.execute(status -> {
+            LocalDateTime last = postingRepository.findLastCheckpointTime();
+            if (last != null && !asOf.isAfter(last)) {
+                return 0;
+            }
+            return postingRepository.insertCheckpoints(last != null ? last : BEGINNING, asOf);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void run() {
+        try {
+            int written = checkpoint();
+            log.debug("Wrote {} balance checkpoints", written);
+        } catch (RuntimeException ex) {
+            log.error("Failed to write balance checkpoints, retrying on next run", ex);
+        }
+    }
+}
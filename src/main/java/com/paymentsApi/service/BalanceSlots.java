@@ -0,0 +1,122 @@
+package com.paymentsApi.service;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.repository.ClientRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/* BalanceSlots
+ * Optional split balances for heavily credited accounts, enabled by payments.split-balance.enabled.
+ *
+ * Each account of payments.split-balance.accounts keeps payments.split-balance.slots rows in balance_slot. A credit adds
+ * its amount to one slot picked at random and only locks that slot, so credits to the account run in parallel up to the
+ * number of slots instead of queueing on its Client row. The slots are folded into Client.accountBalance, under the
+ * Client row lock, when a debit needs them; reads add them up without folding them in. Slots are never negative, so
+ * the stored balance alone is always safe to debit.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.split-balance.enabled", havingValue = "true")
+public class BalanceSlots {
+
+    private final ClientRepository clientRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Set<Long> accountNumbers;
+    private final int slots;
+
+    public BalanceSlots(ClientRepository clientRepository, PlatformTransactionManager transactionManager, @Value("${payments.split-balance.accounts:}") Set<Long> accountNumbers,
+                        @Value("${payments.split-balance.slots:16}") int slots, @Value("${payments.ledger.enabled:false}") boolean ledgerEnabled) {
+        if (ledgerEnabled) {
+            throw new IllegalStateException("payments.split-balance.enabled cannot be combined with payments.ledger.enabled");
+        }
+        if (slots < 1 || slots > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("payments.split-balance.slots must be between 1 and " + Short.MAX_VALUE);
+        }
+        this.clientRepository = clientRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.accountNumbers = Set.copyOf(accountNumbers);
+        this.slots = slots;
+        // Slots of accounts created later are created with the Client
+        transactionTemplate.executeWithoutResult(status -> this.accountNumbers.forEach(this::createSlots));
+    }
+
+    /*
+     * @return true when credits to the account go to its balance slots
+     */
+    public boolean isSplit(Long accountNumber) {
+        return accountNumbers.contains(accountNumber);
+    }
+
+    /*
+     * Adds a credit to one balance slot of a Client, without touching its Client row. Runs inside a database transaction.
+     *
+     * @param Client client Client with a split balance, it does not need to be locked
+     * @param long   amount Credit in cents
+     */
+    public void credit(Client client, long amount) {
+        int slot = ThreadLocalRandom.current().nextInt(slots);
+        if (clientRepository.addToBalanceSlot(client.getId(), slot, amount) == 0) {
+            // Slots of a Client inserted some other way are created in a transaction of their own, so a concurrent
+            // credit creating them too cannot leave this transaction rollback-only
+            try {
+                transactionTemplate.executeWithoutResult(status -> createSlots(client.getAccountNumber()));
+            } catch (DataIntegrityViolationException ex) {
+                // Created by the concurrent credit
+            }
+            clientRepository.addToBalanceSlot(client.getId(), slot, amount);
+        }
+    }
+
+    /*
+     * Creates the balance slots of a new Client whose account has a split balance, in the transaction that inserts it.
+     *
+     * @param Client client Client already flushed to the database
+     */
+    public void created(Client client) {
+        if (isSplit(client.getAccountNumber())) {
+            createSlots(client.getAccountNumber());
+        }
+    }
+
+    /*
+     * Folds the balance slots of a Client into its accountBalance. Runs inside a database transaction.
+     *
+     * @param Client client Client locked by the current transaction, or read with its version in the optimistic mode
+     */
+    public void merge(Client client) {
+        long credits = clientRepository.lockBalanceSlots(client.getId()).stream().mapToLong(Long::longValue).sum();
+        if (credits != 0) {
+            client.setAccountBalance(client.getAccountBalance() + credits);
+            clientRepository.clearBalanceSlots(client.getId());
+        }
+    }
+
+    /*
+     * Reads a Client with its balance slots added to its balance, without locking or writing anything. The Client is
+     * read in a transaction and persistence context of its own, so the balance with the slots is never flushed.
+     *
+     * @param Long accountNumber Client account number
+     *
+     * @return     Client with its full balance, empty when the account number is unknown
+     */
+    public Optional<Client> readWithSlots(Long accountNumber) {
+        Optional<Client> client = transactionTemplate.execute(status -> clientRepository.readByAccountNumber(accountNumber));
+        client.ifPresent(detached -> detached.setAccountBalance(clientRepository.readFullBalance(detached.getId())));
+        return client;
+    }
+
+    private void createSlots(Long accountNumber) {
+        for (int slot = 0; slot < slots; slot++) {
+            clientRepository.createBalanceSlot(accountNumber, slot);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.paymentsApi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.paymentsApi.entity.Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/* ClientCache
+ * Read-through cache of Clients by account number, bounded by payments.clients.cache-size entries. Caffeine evicts the
+ * least frequently used entries first (W-TinyLFU).
+ *
+ * Cached Clients are detached snapshots for read-only use. Every path that changes a Client evicts its account number
+ * once the change is committed. Clients are loaded outside the cache lock, as evictions run while the committing
+ * transaction still holds its connection; a load is only cached when no eviction ran since it started, so a read of
+ * the old row never outlives the eviction of its change.
+ *
+ * Meters: cache.gets, cache.puts, cache.evictions and cache.size, tagged cache=payments.clients
+ */
+@Component
+public class ClientCache {
+
+    private final Cache<Long, Client> cache;
+    // Incremented before every eviction
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ClientCache(MeterRegistry meterRegistry, @Value("${payments.clients.cache-size:10000}") long cacheSize) {
+        this.cache = Caffeine.newBuilder().maximumSize(cacheSize).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "payments.clients");
+    }
+
+    /*
+     * Returns the cached Client of an account number, loading it on a miss. Unknown account numbers are not cached.
+     *
+     * @param Long                             accountNumber Client account number
+     * @param Function<Long, Optional<Client>> loader        Non-locking read of the Client
+     *
+     * @return                                               Client, empty when the account number is unknown.
+     */
+    public Optional<Client> get(Long accountNumber, Function<Long, Optional<Client>> loader) {
+        Client cached = cache.getIfPresent(accountNumber);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long loadedAt = evictions.get();
+        Optional<Client> client = loader.apply(accountNumber);
+        client.ifPresent(loaded -> cache.asMap().compute(accountNumber, (key, current) -> current != null ? current : evictions.get() == loadedAt ? loaded : null));
+        return client;
+    }
+
+    /*
+     * Loads Clients into the cache ahead of their first read, keeping any entry already cached. Like a read-through
+     * load, nothing is cached when an eviction ran while the Clients were read.
+     *
+     * @param Supplier<List<Client>> loader Non-locking read of the Clients
+     *
+     * @return                              Number of Clients read.
+     */
+    public int preload(Supplier<List<Client>> loader) {
+        long loadedAt = evictions.get();
+        List<Client> clients = loader.get();
+        for (Client client : clients) {
+            cache.asMap().compute(client.getAccountNumber(), (key, current) -> current != null ? current : evictions.get() == loadedAt ? client : null);
+        }
+        return clients.size();
+    }
+
+    public void evict(Long accountNumber) {
+        if (accountNumber != null) {
+            evictions.incrementAndGet();
+            cache.invalidate(accountNumber);
+        }
+    }
+
+    public void evictAll(Iterable<Long> accountNumbers) {
+        evictions.incrementAndGet();
+        cache.invalidateAll(accountNumbers);
+    }
+
+    /*
+     * Evicts the account numbers once the current database transaction commits, or right away outside a transaction.
+     * Nothing is evicted on rollback, as the cached Clients are still current.
+     *
+     * @param Collection<Long> accountNumbers Account numbers of the Clients changed by the transaction
+     */
+    public void evictAfterCommit(Collection<Long> accountNumbers) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictAll(accountNumbers);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictAll(accountNumbers);
+            }
+        });
+    }
+
+    public void invalidateAll() {
+        evictions.incrementAndGet();
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,205 @@
+package com.paymentsApi.service;
+
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.paymentsApi.dto.ClientImportRejection;
+import com.paymentsApi.dto.ClientImportResult;
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.entity.Posting;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.PostingRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/* ClientImportService
+ * Creates Clients in bulk from a JSON array or NDJSON stream.
+ *
+ * The body is read one Client at a time and imported in chunks of payments.clients.import-chunk-size rows, so memory
+ * use does not depend on the size of the import. Each chunk is checked in memory for repeated account numbers, checked
+ * against the database with one query and inserted in JDBC batches in one database transaction. Rejected rows are
+ * reported with their position instead of failing the request; chunks imported before a malformed body stay created.
+ */
+@Service
+public class ClientImportService {
+
+    private final ClientRepository clientRepository;
+    private final PostingRepository postingRepository;
+    private final PostingWatermark postingWatermark;
+    private final ObjectReader clientReader;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${payments.clients.import-chunk-size:1000}")
+    int chunkSize;
+
+    // Only present when payments.split-balance.enabled=true
+    @Autowired(required = false)
+    BalanceSlots balanceSlots;
+
+    public ClientImportService(ClientRepository clientRepository, PostingRepository postingRepository, PostingWatermark postingWatermark, ObjectMapper objectMapper,
+                               PlatformTransactionManager transactionManager) {
+        this.clientRepository = clientRepository;
+        this.postingRepository = postingRepository;
+        this.postingWatermark = postingWatermark;
+        this.clientReader = objectMapper.readerFor(Client.class);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /*
+     * Import Clients.
+     *
+     * @param InputStream body JSON array of Clients, or one Client per line (NDJSON)
+     *
+     * @return                 Number of Clients created and the rejected rows, in request order.
+     */
+    public ClientImportResult importClients(InputStream body) throws IOException {
+        ClientImportResult result = new ClientImportResult();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        Set<Long> chunkAccountNumbers = new HashSet<>();
+        int index = 0;
+
+        try (MappingIterator<Client> clients = clientReader.readValues(body)) {
+            while (clients.hasNextValue()) {
+                try {
+                    Client client = clients.nextValue();
+                    String rejection = validate(client, chunkAccountNumbers);
+                    if (rejection != null) {
+                        reject(result, index, client.getAccountNumber(), rejection);
+                    } else {
+                        chunkAccountNumbers.add(client.getAccountNumber());
+                        chunk.add(new Row(index, client.getName(), client.getAccountNumber(), client.getAccountBalance()));
+                    }
+                } catch (DatabindException ex) {
+                    // The reader skips the rest of the invalid Client, so the next one can still be read
+                    reject(result, index, null, "Invalid client: " + ex.getOriginalMessage());
+                }
+                index++;
+                if (chunk.size() == chunkSize) {
+                    importChunk(chunk, result);
+                    chunk.clear();
+                    chunkAccountNumbers.clear();
+                }
+            }
+        } catch (StreamReadException ex) {
+            reject(result, index, null, "Malformed JSON, the rest of the body was not read: " + ex.getOriginalMessage());
+        }
+        importChunk(chunk, result);
+
+        result.getRejected().sort(Comparator.comparingInt(ClientImportRejection::getIndex));
+        return result;
+    }
+
+    private static String validate(Client client, Set<Long> chunkAccountNumbers) {
+        if (client.getId() != null) {
+            return "Invalid client, id must not be set";
+        }
+        if (client.getName() == null || client.getName().isBlank()) {
+            return "Invalid name";
+        }
+        if (client.getAccountNumber() == null) {
+            return "Invalid Account Number";
+        }
+        if (client.getAccountBalance() < 0) {
+            return "Invalid balance, it must not be negative";
+        }
+        if (chunkAccountNumbers.contains(client.getAccountNumber())) {
+            return "Account Number is repeated in the request";
+        }
+        return null;
+    }
+
+    /*
+     * Inserts the rows of a chunk whose account number does not exist yet. When a concurrent request creates one of
+     * them first, the chunk is rolled back and its rows are inserted one by one, so only the conflicting rows fail.
+     */
+    private void importChunk(List<Row> chunk, ClientImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<Long> existing = new HashSet<>(clientRepository.findExistingAccountNumbers(chunk.stream().map(Row::accountNumber).toList()));
+        List<Row> rows = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            if (existing.contains(row.accountNumber())) {
+                reject(result, row.index(), row.accountNumber(), "Account Number already exists");
+            } else {
+                rows.add(row);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Client> clients = rows.stream().map(Row::toClient).toList();
+                clientRepository.saveAllAndFlush(clients);
+                postOpeningBalances(clients);
+                createBalanceSlots(clients);
+            });
+            result.setCreated(result.getCreated() + rows.size());
+        } catch (DataIntegrityViolationException ex) {
+            for (Row row : rows) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        Client client = row.toClient();
+                        clientRepository.saveAndFlush(client);
+                        postOpeningBalances(List.of(client));
+                        createBalanceSlots(List.of(client));
+                    });
+                    result.setCreated(result.getCreated() + 1);
+                } catch (DataIntegrityViolationException rowEx) {
+                    reject(result, row.index(), row.accountNumber(), "Account Number already exists");
+                }
+            }
+        }
+    }
+
+    /*
+     * Records the opening balances of inserted Clients as postings, in the transaction of the insert.
+     */
+    private void postOpeningBalances(List<Client> clients) {
+        LocalDateTime postedAt = postingWatermark.stamp();
+        postingRepository.saveAll(clients.stream().filter(client -> client.getAccountBalance() != 0)
+                .map(client -> Posting.adjustment(client, client.getAccountBalance(), postedAt)).toList());
+    }
+
+    private void createBalanceSlots(List<Client> clients) {
+        if (balanceSlots != null) {
+            clients.forEach(balanceSlots::created);
+        }
+    }
+
+    private static void reject(ClientImportResult result, int index, Long accountNumber, String reason) {
+        result.getRejected().add(new ClientImportRejection(index, accountNumber, reason));
+    }
+
+    /*
+     * A validated row. New Client entities are built from it for every insert attempt, as a failed insert leaves ids
+     * assigned on the entities it tried to persist.
+     */
+    private record Row(int index, String name, Long accountNumber, long accountBalance) {
+
+        Client toClient() {
+            Client client = new Client();
+            client.setName(name);
+            client.setAccountNumber(accountNumber);
+            client.setAccountBalance(accountBalance);
+            return client;
+        }
+    }
+}
@@ -1,27 +1,95 @@
 package com.paymentsApi.service;
 
+import com.paymentsApi.dto.AccountBalance;
 import com.paymentsApi.entity.Client;
+import com.paymentsApi.entity.Posting;
+import com.paymentsApi.ledger.LedgerEngine;
 import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.PostingRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+import static com.paymentsApi.repository.ClientSpecifications.balanceAtLeast;
+import static com.paymentsApi.repository.ClientSpecifications.balanceAtMost;
+import static com.paymentsApi.repository.ClientSpecifications.fullBalanceAtLeast;
+import static com.paymentsApi.repository.ClientSpecifications.fullBalanceAtMost;
+import static com.paymentsApi.repository.ClientSpecifications.nameStartsWith;
+import static com.paymentsApi.repository.ClientSpecifications.orderByFullBalance;
+
 @Service
 public class ClientService {
 
+    private static final List<String> SORT_PROPERTIES = List.of("accountNumber", "name", "accountBalance");
+
     private final ClientRepository clientRepository;
+    private final ClientCache clientCache;
+    private final PostingRepository postingRepository;
+    private final PostingWatermark postingWatermark;
+
+    @Value("${payments.clients.max-page-size:100}")
+    int maxPageSize;
+
+    // Only present when payments.split-balance.enabled=true
+    @Autowired(required = false)
+    BalanceSlots balanceSlots;
+
+    // Only present when payments.ledger.enabled=true
+    @Autowired(required = false)
+    LedgerEngine ledgerEngine;
 
-    public ClientService(ClientRepository clientRepository) {
+    public ClientService(ClientRepository clientRepository, ClientCache clientCache, PostingRepository postingRepository, PostingWatermark postingWatermark) {
         this.clientRepository = clientRepository;
+        this.clientCache = clientCache;
+        this.postingRepository = postingRepository;
+        this.postingWatermark = postingWatermark;
     }
 
     /*
-     * List all Clients.
+     * List one page of Clients, optionally filtered. Ties of the sort property are ordered by id, so pages are stable.
+     * With split balances enabled, balance filters and order include the balance slots.
      *
-     * @return List of Clients
+     * @param String namePrefix Only Clients whose name starts with it, null for any name
+     * @param Long   minBalance Smallest account balance in cents, inclusive, null for no minimum
+     * @param Long   maxBalance Largest account balance in cents, inclusive, null for no maximum
+     * @param int    page       Page number, starting at 0
+     * @param int    size       Page size, capped to payments.clients.max-page-size
+     * @param String sort       accountNumber, name or accountBalance
+     * @param String direction  asc or desc
+     *
+     * @return Page of Clients with the total number of matching Clients
      */
-    public List<Client> getAllClients() {
-        return clientRepository.findAll();
+    public Page<Client> getClients(String namePrefix, Long minBalance, Long maxBalance, int page, int size, String sort, String direction) {
+        if (page < 0) {
+            throw new IllegalArgumentException("Invalid page, it must not be negative");
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Invalid page size, it must be greater than zero");
+        }
+        if (!SORT_PROPERTIES.contains(sort)) {
+            throw new IllegalArgumentException("Invalid sort, it must be one of " + SORT_PROPERTIES);
+        }
+        Sort.Direction sortDirection = Sort.Direction.fromString(direction);
+        Specification<Client> filter = Specification.where(nameStartsWith(namePrefix));
+        if (balanceSlots == null) {
+            filter = filter.and(balanceAtLeast(minBalance)).and(balanceAtMost(maxBalance));
+        } else {
+            // Credits still in the balance slots count towards the balance, without folding them in
+            filter = filter.and(fullBalanceAtLeast(minBalance)).and(fullBalanceAtMost(maxBalance));
+            if (sort.equals("accountBalance")) {
+                return clientRepository.findAll(filter.and(orderByFullBalance(sortDirection)), PageRequest.of(page, Math.min(size, maxPageSize)));
+            }
+        }
+        Sort order = Sort.by(sortDirection, sort).and(Sort.by("id"));
+        return clientRepository.findAll(filter, PageRequest.of(page, Math.min(size, maxPageSize), order));
     }
 
     /*
@@ -36,25 +104,82 @@ public class ClientService {
     }
 
     /*
-     * Get Client by Account Number.
+     * Get Client by Account Number. The Client is read without a lock and served from the ClientCache. A Client with a
+     * split balance has its balance slots added to its balance, without locking them, when it is loaded into the cache.
      *
      * @param Long accountNumber
      *
      * @return Client
      */
     public Client getClientByAccountNumber(Long accountNumber) {
-        return clientRepository.findByAccountNumber(accountNumber).orElseThrow(() -> new IllegalArgumentException("Client with accountNumber " + accountNumber + " not found"));
+        boolean split = balanceSlots != null && balanceSlots.isSplit(accountNumber);
+        return clientCache.get(accountNumber, split ? balanceSlots::readWithSlots : clientRepository::readByAccountNumber)
+                .orElseThrow(() -> new IllegalArgumentException("Client with accountNumber " + accountNumber + " not found"));
+    }
+
+    /*
+     * Get the balance of a Client at a point in time, from its latest balance checkpoint and the postings after it.
+     * Transfers still in flight at that time are only included once they commit.
+     *
+     * @param Long          accountNumber Client Account Number
+     * @param LocalDateTime at            Time of the balance
+     *
+     * @return                            AccountBalance
+     */
+    public AccountBalance getBalanceAt(Long accountNumber, LocalDateTime at) {
+        Client client = getClientByAccountNumber(accountNumber);
+        return new AccountBalance(accountNumber, at, postingRepository.findBalanceAt(client.getId(), at));
+    }
+
+    /*
+     * Loads one page of Clients, by id, into the ClientCache. Clients with a split balance are left to the first read,
+     * which adds their balance slots to the balance without folding them in; only debits fold the slots.
+     *
+     * @param int page Page number, starting at 0
+     * @param int size Page size
+     *
+     * @return         Number of Clients handed to the cache.
+     */
+    public int preloadClients(int page, int size) {
+        return clientCache.preload(() -> clientRepository.findAll(PageRequest.of(page, size, Sort.by("id"))).stream()
+                .filter(client -> balanceSlots == null || !balanceSlots.isSplit(client.getAccountNumber()))
+                .toList());
     }
 
     /*
-     * List all Clients.
+     * Save a Client.
+     * The insert is flushed right away, so a duplicated accountNumber fails here even inside a larger transaction.
+     * The opening balance of a new Client, or the change of balance of an existing one, is recorded as a posting.
+     * With the ledger engine, an existing Client is saved by the shard that owns its account, whose balance in memory is
+     * the previous balance; its account number cannot change, since the ledger holds the account under it.
      *
      * @param Client client
      *
-     * @return List of Clients
+     * @return Saved Client
      */
+    @Transactional
     public Client saveClient(Client client) {
-        return clientRepository.save(client);
+        Client stored = client.getId() == null ? null : clientRepository.findById(client.getId()).orElse(null);
+        long storedBalance = stored == null ? 0 : stored.getAccountBalance();
+        if (ledgerEngine != null && stored != null) {
+            if (!stored.getAccountNumber().equals(client.getAccountNumber())) {
+                throw new IllegalArgumentException("Invalid Account Number, it cannot change while the ledger engine is enabled");
+            }
+            return ledgerEngine.saveClient(client, heldBalance -> write(client, heldBalance != null ? heldBalance : storedBalance));
+        }
+        return write(client, storedBalance);
+    }
+
+    private Client write(Client client, long previousBalance) {
+        Client saved = clientRepository.saveAndFlush(client);
+        if (balanceSlots != null) {
+            balanceSlots.created(saved);
+        }
+        if (saved.getAccountBalance() != previousBalance) {
+            postingRepository.save(Posting.adjustment(saved, saved.getAccountBalance() - previousBalance, postingWatermark.stamp()));
+        }
+        clientCache.evictAfterCommit(List.of(saved.getAccountNumber()));
+        return saved;
     }
 
     /*
@@ -63,6 +188,12 @@ public class ClientService {
      * @param Long id
      */
     public void deleteClient(Long id) {
-        clientRepository.deleteById(id);
+        Long accountNumber = clientRepository.findById(id).map(Client::getAccountNumber).orElse(null);
+        if (ledgerEngine != null && accountNumber != null) {
+            ledgerEngine.deleteClient(accountNumber, () -> clientRepository.deleteById(id));
+        } else {
+            clientRepository.deleteById(id);
+        }
+        clientCache.evict(accountNumber);
     }
 }
\ No newline at end of file
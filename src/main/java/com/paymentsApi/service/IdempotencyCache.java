@@ -0,0 +1,92 @@
+package com.paymentsApi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.paymentsApi.entity.Transaction;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/* IdempotencyCache
+ * In-memory first layer of Idempotency-Key handling, bounded by payments.idempotency.cache-size keys that expire
+ * payments.idempotency.cache-ttl after they were first used.
+ *
+ * The first request with a key registers a pending result before running the payment. A replay of the key waits for
+ * that result, or returns it at once when the payment has finished, so a client retry never reaches the database.
+ * A failed payment removes its key, so it can be retried.
+ *
+ * Meters: cache.gets, cache.puts, cache.evictions and cache.size, tagged cache=payments.idempotency
+ */
+@Component
+public class IdempotencyCache {
+
+    private final Cache<String, Entry> cache;
+
+    public IdempotencyCache(MeterRegistry meterRegistry, @Value("${payments.idempotency.cache-size:100000}") long cacheSize,
+                            @Value("${payments.idempotency.cache-ttl:24h}") Duration cacheTtl) {
+        this.cache = Caffeine.newBuilder().maximumSize(cacheSize).expireAfterWrite(cacheTtl).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "payments.idempotency");
+    }
+
+    /*
+     * Runs the payment once per key and returns its Transaction to every request with the same key.
+     *
+     * @param String                key                   Idempotency-Key
+     * @param Long                  senderAccountNumber   Client sender account number
+     * @param Long                  receiverAccountNumber Client receiver account number
+     * @param long                  amount                Value amount of the transaction in cents
+     * @param Supplier<Transaction> payment               Runs the payment on a cache miss
+     *
+     * @return                                            Transaction of the first request with the key.
+     */
+    public Transaction execute(String key, Long senderAccountNumber, Long receiverAccountNumber, long amount, Supplier<Transaction> payment) {
+        Entry entry = new Entry(senderAccountNumber, receiverAccountNumber, amount, new CompletableFuture<>());
+        Entry cached = cache.get(key, k -> entry);
+        if (cached != entry) {
+            PaymentRules.requireSamePayment(key, cached.matches(senderAccountNumber, receiverAccountNumber, amount));
+            return await(cached.result());
+        }
+
+        try {
+            Transaction transaction = payment.get();
+            entry.result().complete(transaction);
+            return transaction;
+        } catch (RuntimeException ex) {
+            cache.asMap().remove(key, entry);
+            entry.result().completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /*
+     * Waits for the payment of another request and rethrows its exception unwrapped.
+     */
+    private static Transaction await(CompletableFuture<Transaction> result) {
+        try {
+            return result.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private record Entry(Long senderAccountNumber, Long receiverAccountNumber, long amount, CompletableFuture<Transaction> result) {
+
+        boolean matches(Long senderAccountNumber, Long receiverAccountNumber, long amount) {
+            return Objects.equals(this.senderAccountNumber, senderAccountNumber) && Objects.equals(this.receiverAccountNumber, receiverAccountNumber) && this.amount == amount;
+        }
+    }
+}
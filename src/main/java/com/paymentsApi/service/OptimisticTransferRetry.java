@@ -0,0 +1,77 @@
+package com.paymentsApi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/* OptimisticTransferRetry
+ * Retries a transfer that lost an optimistic version check, waiting a random ("full jitter") exponential backoff
+ * between attempts so that conflicting transfers do not collide again at the same moment.
+ *
+ * Meters:
+ * payments.transfer.optimistic.retries   Number of attempts retried after a version conflict
+ * payments.transfer.optimistic.exhausted Number of transfers that still conflicted after the last attempt
+ * payments.transfer.optimistic.attempts  Attempts needed per transfer
+ */
+@Component
+public class OptimisticTransferRetry {
+
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+    private final Counter retries;
+    private final Counter exhausted;
+    private final DistributionSummary attempts;
+
+    public OptimisticTransferRetry(MeterRegistry meterRegistry, @Value("${payments.optimistic.max-attempts:5}") int maxAttempts,
+                                   @Value("${payments.optimistic.backoff-ms:5}") long backoffMs, @Value("${payments.optimistic.max-backoff-ms:200}") long maxBackoffMs) {
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.retries = Counter.builder("payments.transfer.optimistic.retries").description("Transfer attempts retried after a version conflict").register(meterRegistry);
+        this.exhausted = Counter.builder("payments.transfer.optimistic.exhausted").description("Transfers that conflicted on every attempt").register(meterRegistry);
+        this.attempts = DistributionSummary.builder("payments.transfer.optimistic.attempts").description("Attempts needed per transfer").register(meterRegistry);
+    }
+
+    /*
+     * Runs the transfer, retrying it on OptimisticLockingFailureException.
+     * The transfer must open its own database transaction, so every attempt reads fresh versions.
+     *
+     * @param Supplier<T> transfer Transfer attempt
+     *
+     * @return                     Result of the first successful attempt
+     */
+    public <T> T execute(Supplier<T> transfer) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = transfer.get();
+                attempts.record(attempt);
+                return result;
+            } catch (OptimisticLockingFailureException ex) {
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    attempts.record(attempt);
+                    throw ex;
+                }
+                retries.increment();
+                backoff(attempt, ex);
+            }
+        }
+    }
+
+    private void backoff(int attempt, OptimisticLockingFailureException cause) {
+        long ceiling = Math.min(maxBackoffMs, backoffMs << Math.min(attempt, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.paymentsApi.service;
+
+import com.paymentsApi.dto.StatementCursor;
+import com.paymentsApi.dto.StatementPage;
+import com.paymentsApi.dto.TransactionSummary;
+import com.paymentsApi.enums.TransactionReason;
+import com.paymentsApi.enums.TransactionStatus;
+import com.paymentsApi.exception.IdempotencyKeyReuseException;
+
+import java.util.List;
+
+/* PaymentRules
+ * Validation and posting rules of payments and statements, shared by the blocking TransactionService and the reactive
+ * ReactiveTransactionService. They only work on plain values, so each caller reads and writes its rows its own way:
+ * JPA entities on /v1, R2DBC rows on /v2.
+ */
+public final class PaymentRules {
+
+    public static final String INVALID_SENDER = "Invalid sender Account Number";
+    public static final String INVALID_RECEIVER = "Invalid receiver Account Number";
+    public static final String INVALID_ACCOUNT = "Invalid Account Number";
+
+    private PaymentRules() {
+    }
+
+    /*
+     * Validates the Idempotency-Key of a payment request.
+     *
+     * @param String idempotencyKey Idempotency-Key of the request, not null
+     */
+    public static void requireIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > 64) {
+            throw new IllegalArgumentException("Invalid Idempotency-Key, it must have 1 to 64 characters");
+        }
+    }
+
+    /*
+     * Refuses a replay of an Idempotency-Key whose stored payment has other accounts or another amount.
+     *
+     * @param String  idempotencyKey Idempotency-Key of the request
+     * @param boolean samePayment    Whether the stored payment matches the request
+     */
+    public static void requireSamePayment(String idempotencyKey, boolean samePayment) {
+        if (!samePayment) {
+            throw new IdempotencyKeyReuseException("key " + idempotencyKey + " was used with another payment");
+        }
+    }
+
+    /*
+     * Decides a transfer from a sender with the given balance. The debit is posted in full or not at all.
+     *
+     * @param long senderBalance Balance of the sender in cents, as locked by the caller
+     * @param long amount        Value amount of the transaction in cents
+     *
+     * @return                   Reason the transfer fails, null when it is posted
+     */
+    public static TransactionReason decide(long senderBalance, long amount) {
+        return senderBalance < amount ? TransactionReason.INSUFFICIENT_FUNDS : null;
+    }
+
+    /*
+     * @return Status of a Transaction that failed for the reason, SUCCESS when there is none
+     */
+    public static TransactionStatus status(TransactionReason reason) {
+        return reason == null ? TransactionStatus.SUCCESS : TransactionStatus.FAIL;
+    }
+
+    /*
+     * Validates the page size of a statement request.
+     *
+     * @param int size        Requested page size
+     * @param int maxPageSize payments.statement.max-page-size
+     *
+     * @return                Page size, capped to the maximum
+     */
+    public static int statementPageSize(int size, int maxPageSize) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Invalid page size, it must be greater than zero");
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    /*
+     * @return Position a statement page starts after, read from the nextCursor of the previous page
+     */
+    public static StatementCursor statementPosition(String cursor) {
+        return cursor == null || cursor.isEmpty() ? StatementCursor.START : StatementCursor.decode(cursor);
+    }
+
+    /*
+     * Builds a statement page from rows read with one extra row, which tells whether there is a next page.
+     *
+     * @param List<TransactionSummary> rows     Up to pageSize + 1 rows, newest first
+     * @param int                      pageSize Page size
+     *
+     * @return                                  StatementPage
+     */
+    public static StatementPage statementPage(List<TransactionSummary> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return new StatementPage(rows, null);
+        }
+        List<TransactionSummary> page = rows.subList(0, pageSize);
+        TransactionSummary last = page.get(pageSize - 1);
+        return new StatementPage(page, new StatementCursor(last.getTransactionTime(), last.getId()).encode());
+    }
+}
@@ -0,0 +1,86 @@
+package com.paymentsApi.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* PostingWatermark
+ * Time before which every posting written by this process is committed, used by the BalanceCheckpointJob as the time
+ * of its checkpoints.
+ *
+ * A posting is timestamped before it is committed: by its database transaction, or by the LedgerEngine long before the
+ * WriteBehindJournal flushes it. Whoever takes the timestamp holds it here until the posting is committed or dropped,
+ * so a checkpoint never covers the time of a posting that can still appear. A hold is taken before its time is read,
+ * which keeps a concurrent watermark from passing a time that is not held yet.
+ */
+@Component
+public class PostingWatermark {
+
+    private final Set<Hold> holds = ConcurrentHashMap.newKeySet();
+
+    /*
+     * Takes the time of a posting written by the current transaction and holds it until the transaction completes.
+     * Outside a transaction the posting is committed when it is saved, so the time is not held.
+     *
+     * @return Time of the posting
+     */
+    public LocalDateTime stamp() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return LocalDateTime.now();
+        }
+        Hold hold = hold();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                hold.release();
+            }
+        });
+        return hold.time();
+    }
+
+    /*
+     * Takes the time of a posting that is committed later, outside the current transaction.
+     *
+     * @return Hold of the time, to be released once the posting is committed or dropped
+     */
+    public Hold hold() {
+        Hold hold = new Hold();
+        holds.add(hold);
+        hold.time = LocalDateTime.now();
+        return hold;
+    }
+
+    /*
+     * @return Time before which every posting is committed: the oldest held time, or now when none is held
+     */
+    public LocalDateTime committedBefore() {
+        LocalDateTime watermark = LocalDateTime.now();
+        for (Hold hold : holds) {
+            // A hold without a time yet gets a time after the watermark
+            LocalDateTime time = hold.time;
+            if (time != null && time.isBefore(watermark)) {
+                watermark = time;
+            }
+        }
+        return watermark;
+    }
+
+    public final class Hold {
+        private volatile LocalDateTime time;
+
+        private Hold() {
+        }
+
+        public LocalDateTime time() {
+            return time;
+        }
+
+        public void release() {
+            holds.remove(this);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.paymentsApi.service;
+
+import com.paymentsApi.dto.StatementCursor;
+import com.paymentsApi.dto.StatementPage;
+import com.paymentsApi.dto.TransactionSummary;
+import com.paymentsApi.enums.TransactionReason;
+import com.paymentsApi.enums.TransactionStatus;
+import com.paymentsApi.money.Cents;
+import com.paymentsApi.repository.ReactiveDatabase;
+import com.paymentsApi.repository.ReactiveTransactionRepository;
+import com.paymentsApi.repository.ReactiveTransactionRepository.LockedClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/* ReactiveTransactionService
+ * Payments and statements of the reactive /v2 API, over R2DBC instead of JPA. No method waits for the database: each
+ * one returns a Mono or Flux that runs its statements when subscribed, and continues when the driver answers.
+ *
+ * Validation and the posting decision are the PaymentRules of TransactionService. A transfer runs in one database
+ * transaction like the ordered locking mode: both Clients are locked in accountNumber order, the Transaction is stored
+ * with its postings and, when a key is given, its Idempotency-Key. Balances change with relative updates, so /v1
+ * transfers of every locking mode see them as their own.
+ *
+ * The ledger engine keeps balances in memory and split balances credit their slots, neither of which this path knows
+ * about, so /v2 refuses to start with either of them.
+ */
+@Service
+@ConditionalOnProperty(name = "payments.v2.enabled", havingValue = "true")
+public class ReactiveTransactionService {
+
+    private final ReactiveDatabase reactiveDatabase;
+    private final ReactiveTransactionRepository transactionRepository;
+    private final ClientCache clientCache;
+    private final TransferMetrics transferMetrics;
+    private final PostingWatermark postingWatermark;
+    private final int statementMaxPageSize;
+
+    public ReactiveTransactionService(ReactiveDatabase reactiveDatabase, ReactiveTransactionRepository transactionRepository, ClientCache clientCache,
+                                      TransferMetrics transferMetrics, PostingWatermark postingWatermark,
+                                      @Value("${payments.statement.max-page-size:100}") int statementMaxPageSize,
+                                      @Value("${payments.ledger.enabled:false}") boolean ledgerEnabled,
+                                      @Value("${payments.split-balance.enabled:false}") boolean splitBalanceEnabled) {
+        if (ledgerEnabled) {
+            throw new IllegalStateException("payments.v2.enabled=true cannot be combined with payments.ledger.enabled=true");
+        }
+        if (splitBalanceEnabled) {
+            throw new IllegalStateException("payments.v2.enabled=true cannot be combined with payments.split-balance.enabled=true");
+        }
+        this.reactiveDatabase = reactiveDatabase;
+        this.transactionRepository = transactionRepository;
+        this.clientCache = clientCache;
+        this.transferMetrics = transferMetrics;
+        this.postingWatermark = postingWatermark;
+        this.statementMaxPageSize = statementMaxPageSize;
+    }
+
+    /*
+     * Process the transaction, at most once per Idempotency-Key when one is given.
+     *
+     * A stored key answers with its Transaction. A concurrent duplicate fails on the primary key of the key and returns
+     * the stored result, as on /v1.
+     *
+     * @param Long   senderAccountNumber   Client sender account number
+     * @param Long   receiverAccountNumber Client receiver account number
+     * @param long   amount                Value amount of the transaction in cents
+     * @param String idempotencyKey        Idempotency-Key of the request, null to always process it
+     *
+     * @return                             Transaction, the stored one for a replay
+     */
+    public Mono<TransactionSummary> processTransaction(Long senderAccountNumber, Long receiverAccountNumber, long amount, String idempotencyKey) {
+        return Mono.defer(() -> {
+            Cents.requirePayable(amount);
+            if (idempotencyKey == null) {
+                return counted(transfer(senderAccountNumber, receiverAccountNumber, amount, null));
+            }
+            PaymentRules.requireIdempotencyKey(idempotencyKey);
+            Mono<TransactionSummary> stored = findStored(senderAccountNumber, receiverAccountNumber, amount, idempotencyKey);
+            return stored.switchIfEmpty(counted(transfer(senderAccountNumber, receiverAccountNumber, amount, idempotencyKey)
+                    // Another request with the key committed first, its transfer is the only one applied
+                    .onErrorResume(DataIntegrityViolationException.class, ex -> stored.switchIfEmpty(Mono.error(ex)))));
+        });
+    }
+
+    /*
+     * Returns one page of the statement of a Client, newest Transactions first, as TransactionService.getStatement.
+     *
+     * @param Long   accountNumber Client Account Number
+     * @param String cursor        nextCursor of the previous page, null for the first page
+     * @param int    size          Page size, capped to payments.statement.max-page-size
+     *
+     * @return                     StatementPage
+     */
+    public Mono<StatementPage> getStatement(Long accountNumber, String cursor, int size) {
+        return Mono.defer(() -> {
+            int pageSize = PaymentRules.statementPageSize(size, statementMaxPageSize);
+            StatementCursor position = PaymentRules.statementPosition(cursor);
+            // One extra row tells whether there is a next page
+            return requireClientId(accountNumber)
+                    .flatMapMany(clientId -> transactionRepository.findStatement(clientId, position.transactionTime(), position.id(), pageSize + 1))
+                    .collectList()
+                    .map(rows -> PaymentRules.statementPage(rows, pageSize));
+        });
+    }
+
+    /*
+     * Streams the full history of a Client, oldest Transactions first. Rows are read from the database as the
+     * subscriber requests them, so the response is written at the pace the client reads it.
+     *
+     * @param Long accountNumber Client Account Number
+     *
+     * @return                   Transactions of the Client
+     */
+    public Flux<TransactionSummary> streamTransactions(Long accountNumber) {
+        return requireClientId(accountNumber).flatMapMany(transactionRepository::streamHistory);
+    }
+
+    private Mono<Long> requireClientId(Long accountNumber) {
+        return transactionRepository.findClientId(accountNumber).switchIfEmpty(Mono.error(() -> new IllegalArgumentException(PaymentRules.INVALID_ACCOUNT)));
+    }
+
+    /*
+     * Reads the Transaction stored for an Idempotency-Key.
+     */
+    private Mono<TransactionSummary> findStored(Long senderAccountNumber, Long receiverAccountNumber, long amount, String idempotencyKey) {
+        return transactionRepository.findIdempotencyKey(idempotencyKey).flatMap(key -> {
+            PaymentRules.requireSamePayment(idempotencyKey, key.matches(senderAccountNumber, receiverAccountNumber, amount));
+            return transactionRepository.findSummary(key.transactionId());
+        });
+    }
+
+    /*
+     * Counts a transfer that fails as a processing error. One that commits is counted with its outcome by transfer.
+     */
+    private Mono<TransactionSummary> counted(Mono<TransactionSummary> transfer) {
+        return transfer.doOnError(ex -> transferMetrics.failed(1));
+    }
+
+    /*
+     * Locks both Clients, applies the transfer and saves the Transaction with its postings, in one database transaction.
+     * Its time is held by the PostingWatermark until the transaction completes.
+     */
+    private Mono<TransactionSummary> transfer(Long senderAccountNumber, Long receiverAccountNumber, long amount, String idempotencyKey) {
+        Mono<TransactionSummary> transfer = Mono.using(postingWatermark::hold, hold -> reactiveDatabase.inTransaction(
+                lockInOrder(senderAccountNumber, receiverAccountNumber).flatMap(clients -> {
+                    LockedClient sender = clients.get(senderAccountNumber);
+                    LockedClient receiver = clients.get(receiverAccountNumber);
+                    if (sender == null) {
+                        return Mono.error(new IllegalArgumentException(PaymentRules.INVALID_SENDER));
+                    }
+                    if (receiver == null) {
+                        return Mono.error(new IllegalArgumentException(PaymentRules.INVALID_RECEIVER));
+                    }
+                    return save(sender, receiver, amount, PaymentRules.decide(sender.balance(), amount), hold.time(), idempotencyKey);
+                })), PostingWatermark.Hold::release);
+        return transfer.doOnSuccess(summary -> {
+            clientCache.evictAll(List.of(senderAccountNumber, receiverAccountNumber));
+            transferMetrics.outcome(summary.getReason());
+        });
+    }
+
+    /*
+     * Locks the Clients of the accounts one at a time in accountNumber order, so two transfers never wait on each other.
+     *
+     * @return Locked Clients by accountNumber, without the accounts that do not exist
+     */
+    private Mono<Map<Long, LockedClient>> lockInOrder(Long senderAccountNumber, Long receiverAccountNumber) {
+        return Flux.just(senderAccountNumber, receiverAccountNumber)
+                .filter(Objects::nonNull)
+                .sort()
+                .distinct()
+                .concatMap(transactionRepository::lockClient)
+                .collect(Collectors.toMap(LockedClient::accountNumber, Function.identity()));
+    }
+
+    /*
+     * Stores the Transaction and, when it succeeded, its postings and the balance changes. The Transaction id is one
+     * sequence value, the two posting ids are the top of one block of posting ids.
+     */
+    private Mono<TransactionSummary> save(LockedClient sender, LockedClient receiver, long amount, TransactionReason reason, LocalDateTime transactionTime,
+                                          String idempotencyKey) {
+        TransactionStatus status = PaymentRules.status(reason);
+        return transactionRepository.nextSequenceValue("transaction_seq").flatMap(transactionId -> {
+            Mono<Void> saved = transactionRepository.insertTransaction(transactionId, sender.id(), receiver.id(), transactionTime, amount, status.getCode(),
+                    reason == null ? null : reason.getCode());
+            if (reason == null) {
+                saved = saved.then(transactionRepository.changeBalance(sender.id(), -amount))
+                        .then(transactionRepository.changeBalance(receiver.id(), amount))
+                        .then(transactionRepository.nextSequenceValue("posting_seq"))
+                        .flatMap(postingId -> transactionRepository.insertPosting(postingId - 1, transactionId, sender.id(), -amount, transactionTime)
+                                .then(transactionRepository.insertPosting(postingId, transactionId, receiver.id(), amount, transactionTime)));
+            }
+            if (idempotencyKey != null) {
+                saved = saved.then(transactionRepository.insertIdempotencyKey(idempotencyKey, transactionId, sender.accountNumber(), receiver.accountNumber(), amount));
+            }
+            return saved.thenReturn(new TransactionSummary(transactionId, sender.accountNumber(), receiver.accountNumber(), transactionTime, amount, status, reason));
+        });
+    }
+}
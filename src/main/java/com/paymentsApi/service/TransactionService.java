@@ -1,52 +1,290 @@
 package com.paymentsApi.service;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.paymentsApi.dto.BatchPaymentResult;
+import com.paymentsApi.dto.StatementCursor;
+import com.paymentsApi.dto.StatementPage;
+import com.paymentsApi.dto.TransactionRequest;
+import com.paymentsApi.dto.TransactionSummary;
 import com.paymentsApi.entity.Client;
+import com.paymentsApi.entity.IdempotencyKey;
+import com.paymentsApi.entity.Posting;
 import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.enums.ExportFormat;
+import com.paymentsApi.enums.LockingMode;
+import com.paymentsApi.enums.TransactionReason;
 import com.paymentsApi.enums.TransactionStatus;
 import com.paymentsApi.exception.InsufficientFundsException;
+import com.paymentsApi.ledger.LedgerEngine;
+import com.paymentsApi.money.Cents;
 import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.IdempotencyKeyRepository;
+import com.paymentsApi.repository.PostingRepository;
 import com.paymentsApi.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 public class TransactionService {
 
+    private static final Logger log = LoggerFactory.getLogger(TransactionService.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String CSV_HEADER = "id,senderAccountNumber,receiverAccountNumber,transactionTime,amount,status,reason\n";
+    // Backoff between attempts of a pending credit of the lanes mode, doubled per failure up to the maximum
+    private static final long CREDIT_RETRY_BACKOFF_MS = 100;
+    private static final long CREDIT_RETRY_MAX_BACKOFF_MS = 5000;
+
     private final TransactionRepository transactionRepository;
     private final ClientRepository clientRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final OptimisticTransferRetry optimisticTransferRetry;
+    private final IdempotencyCache idempotencyCache;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ClientCache clientCache;
+    private final PostingRepository postingRepository;
+    private final TransferMetrics transferMetrics;
+    private final PostingWatermark postingWatermark;
 
     @Autowired
     Environment environment;
 
-    public TransactionService(TransactionRepository transactionRepository, ClientRepository clientRepository) {
+    @Value("${payments.locking.mode:pessimistic}")
+    LockingMode lockingMode;
+
+    @Value("${payments.batch.chunk-size:500}")
+    int batchChunkSize;
+
+    @Value("${payments.batch.max-size:10000}")
+    int batchMaxSize;
+
+    @Value("${payments.statement.max-page-size:100}")
+    int statementMaxPageSize;
+
+    // Time a transfer holds its locks under the transactionControllerTest profile
+    @Value("${payments.test.transfer-delay-ms:5000}")
+    long testTransferDelayMs;
+
+    // Only present when payments.ledger.enabled=true
+    @Autowired(required = false)
+    LedgerEngine ledgerEngine;
+
+    // Only present when payments.split-balance.enabled=true
+    @Autowired(required = false)
+    BalanceSlots balanceSlots;
+
+    // Only present when payments.locking.mode=lanes
+    @Autowired(required = false)
+    AccountLaneDispatcher laneDispatcher;
+
+    // Credits of lane transfers waiting for the lane of their receiver, by lane
+    private final Map<Integer, Queue<LaneCredit>> laneCredits = new ConcurrentHashMap<>();
+
+    public TransactionService(TransactionRepository transactionRepository, ClientRepository clientRepository, PlatformTransactionManager transactionManager,
+                              OptimisticTransferRetry optimisticTransferRetry, IdempotencyCache idempotencyCache, IdempotencyKeyRepository idempotencyKeyRepository,
+                              ClientCache clientCache, PostingRepository postingRepository, TransferMetrics transferMetrics, PostingWatermark postingWatermark) {
         this.transactionRepository = transactionRepository;
         this.clientRepository = clientRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.optimisticTransferRetry = optimisticTransferRetry;
+        this.idempotencyCache = idempotencyCache;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.clientCache = clientCache;
+        this.postingRepository = postingRepository;
+        this.transferMetrics = transferMetrics;
+        this.postingWatermark = postingWatermark;
     }
 
     /*
      * Process the transaction.
      *
+     * When the ledger engine is enabled the transfer is applied in memory and persisted asynchronously, otherwise it
+     * runs in a database transaction. The transaction is opened here rather than with @Transactional, so the ledger
+     * path never holds a database connection and the optimistic mode can retry with a new transaction per attempt.
+     * In the lanes mode the transfer runs on the lanes of its accounts instead (see transferInLanes).
+     *
      * @param Long senderAccountNumber   Client sender account number
      * @param Long receiverAccountNumber Client receiver account number
-     * @param Double amount              Value amount of the transaction
+     * @param long amount                Value amount of the transaction in cents
      *
      * @return                           Transaction object.
      */
+    public Transaction processTransaction(Long senderAccountNumber, Long receiverAccountNumber, long amount) {
+        Cents.requirePayable(amount);
+        if (ledgerEngine != null) {
+            return counted(() -> transferMetrics.outcome(ledgerEngine.transfer(senderAccountNumber, receiverAccountNumber, amount)));
+        }
+        if (lockingMode == LockingMode.LANES) {
+            return counted(() -> transferInLanes(senderAccountNumber, receiverAccountNumber, amount, null));
+        }
+        return counted(() -> runTransfer(() -> transactionTemplate.execute(status -> transfer(senderAccountNumber, receiverAccountNumber, amount))));
+    }
+
+    /*
+     * Process the transaction at most once per Idempotency-Key.
+     *
+     * Replays are answered by the IdempotencyCache without touching the database. Keys that left the cache, or were
+     * used on another instance, are found in the idempotency_key table, which is written in the same database
+     * transaction as the Transaction; a concurrent duplicate fails on its primary key and returns the stored result.
+     * Transfers of the ledger engine are only deduplicated by the cache, as their Transactions are saved later.
+     *
+     * @param Long   senderAccountNumber   Client sender account number
+     * @param Long   receiverAccountNumber Client receiver account number
+     * @param long   amount                Value amount of the transaction in cents
+     * @param String idempotencyKey        Idempotency-Key of the request, null to always process it
+     *
+     * @return                             Transaction object, the stored one for a replay.
+     */
+    public Transaction processTransaction(Long senderAccountNumber, Long receiverAccountNumber, long amount, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return processTransaction(senderAccountNumber, receiverAccountNumber, amount);
+        }
+        Cents.requirePayable(amount);
+        PaymentRules.requireIdempotencyKey(idempotencyKey);
+        return idempotencyCache.execute(idempotencyKey, senderAccountNumber, receiverAccountNumber, amount,
+                () -> processOnce(senderAccountNumber, receiverAccountNumber, amount, idempotencyKey));
+    }
+
+    private Transaction processOnce(Long senderAccountNumber, Long receiverAccountNumber, long amount, String idempotencyKey) {
+        if (ledgerEngine != null) {
+            return counted(() -> transferMetrics.outcome(ledgerEngine.transfer(senderAccountNumber, receiverAccountNumber, amount)));
+        }
+        Optional<Transaction> stored = findStored(senderAccountNumber, receiverAccountNumber, amount, idempotencyKey);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+
+        Consumer<Transaction> saveKey = transaction -> idempotencyKeyRepository.saveAndFlush(
+                new IdempotencyKey(idempotencyKey, transaction, senderAccountNumber, receiverAccountNumber, amount));
+        Supplier<Transaction> attempt = lockingMode == LockingMode.LANES
+                ? () -> transferInLanes(senderAccountNumber, receiverAccountNumber, amount, saveKey)
+                : () -> transactionTemplate.execute(status -> {
+                    Transaction transaction = transfer(senderAccountNumber, receiverAccountNumber, amount);
+                    saveKey.accept(transaction);
+                    return transaction;
+                });
+        try {
+            return runTransfer(attempt);
+        } catch (DataIntegrityViolationException ex) {
+            // Another request with the key committed first, its transfer is the only one applied
+            return counted(() -> findStored(senderAccountNumber, receiverAccountNumber, amount, idempotencyKey).orElseThrow(() -> ex));
+        } catch (RuntimeException ex) {
+            transferMetrics.failed(1);
+            throw ex;
+        }
+    }
+
+    /*
+     * Runs a transfer and counts it as a processing error when it throws. A transfer that returns is counted by the
+     * TransferMetrics when it commits.
+     */
+    private Transaction counted(Supplier<Transaction> transfer) {
+        try {
+            return transfer.get();
+        } catch (RuntimeException ex) {
+            transferMetrics.failed(1);
+            throw ex;
+        }
+    }
+
+    /*
+     * Runs one database transaction of a transfer as the locking mode requires: retried in the optimistic mode, right
+     * away otherwise.
+     */
+    private Transaction runTransfer(Supplier<Transaction> attempt) {
+        if (lockingMode == LockingMode.OPTIMISTIC) {
+            return optimisticTransferRetry.execute(attempt);
+        }
+        return attempt.get();
+    }
+
+    /*
+     * Reads the Transaction stored for an Idempotency-Key, with both Clients loaded.
+     */
+    private Optional<Transaction> findStored(Long senderAccountNumber, Long receiverAccountNumber, long amount, String idempotencyKey) {
+        return readOnlyTransactionTemplate.execute(status -> idempotencyKeyRepository.findById(idempotencyKey).map(key -> {
+            PaymentRules.requireSamePayment(idempotencyKey, key.matches(senderAccountNumber, receiverAccountNumber, amount));
+            return transactionRepository.findWithClientsById(key.getTransaction().getId()).orElseThrow();
+        }));
+    }
+
+    /*
+     * Locks both Clients, applies the transfer and saves the Transaction with its postings. Runs inside a database transaction.
+     * Every phase is timed by the TransferMetrics, and the outcome is counted once the transaction commits.
+     */
+    private Transaction transfer(Long senderAccountNumber, Long receiverAccountNumber, long amount) {
+        // A receiver with a split balance is credited through its balance slots, so its Client row is read, not locked
+        boolean splitReceiver = balanceSlots != null && balanceSlots.isSplit(receiverAccountNumber);
 
-    @Transactional
-    public Transaction processTransaction(Long senderAccountNumber, Long receiverAccountNumber, Double amount) {
         // Find clients
-        Client sender = clientRepository.findByAccountNumber(senderAccountNumber).orElseThrow(() -> new IllegalArgumentException("Invalid sender Account Number"));
-        Client receiver = clientRepository.findByAccountNumber(receiverAccountNumber).orElseThrow(() -> new IllegalArgumentException("Invalid receiver Account Number"));
+        Client sender;
+        Client receiver;
+        // Optimistic transfers read their Clients without locks, so they never count as waiting on or holding one
+        boolean locking = lockingMode != LockingMode.OPTIMISTIC;
+        long lockStarted = locking ? transferMetrics.lockStarted() : transferMetrics.readStarted();
+        long phaseStarted;
+        try {
+            if (lockingMode == LockingMode.ORDERED) {
+                Map<Long, Client> clients = lockInOrder(splitReceiver ? Arrays.asList(senderAccountNumber) : Arrays.asList(senderAccountNumber, receiverAccountNumber));
+                sender = clients.get(senderAccountNumber);
+                receiver = splitReceiver ? clientRepository.readByAccountNumber(receiverAccountNumber).orElse(null) : clients.get(receiverAccountNumber);
+                if (sender == null) {
+                    throw new IllegalArgumentException(PaymentRules.INVALID_SENDER);
+                }
+                if (receiver == null) {
+                    throw new IllegalArgumentException(PaymentRules.INVALID_RECEIVER);
+                }
+            } else if (lockingMode == LockingMode.OPTIMISTIC) {
+                // Concurrent updates are detected by the Client version when the transaction commits
+                sender = clientRepository.readByAccountNumber(senderAccountNumber).orElseThrow(() -> new IllegalArgumentException(PaymentRules.INVALID_SENDER));
+                receiver = clientRepository.readByAccountNumber(receiverAccountNumber).orElseThrow(() -> new IllegalArgumentException(PaymentRules.INVALID_RECEIVER));
+            } else {
+                sender = clientRepository.findByAccountNumber(senderAccountNumber).orElseThrow(() -> new IllegalArgumentException(PaymentRules.INVALID_SENDER));
+                receiver = (splitReceiver ? clientRepository.readByAccountNumber(receiverAccountNumber) : clientRepository.findByAccountNumber(receiverAccountNumber))
+                        .orElseThrow(() -> new IllegalArgumentException(PaymentRules.INVALID_RECEIVER));
+            }
+        } finally {
+            phaseStarted = locking ? transferMetrics.locked(lockStarted) : transferMetrics.read(lockStarted);
+        }
 
         // Create new Transaction
         Transaction transaction = new Transaction();
@@ -54,11 +292,382 @@ public class TransactionService {
         transaction.setReceiver(receiver);
 
         // Executes the Transaction business logic and logs the result
-        String result = this.executeTransaction(sender, receiver, amount);
-        transaction.setStatus(result);
-        transaction.setTransactionTime(LocalDateTime.now());
+        TransactionReason reason = this.executeTransaction(sender, receiver, amount);
+        phaseStarted = transferMetrics.executed(phaseStarted);
+        transaction.setAmount(amount);
+        transaction.setStatus(PaymentRules.status(reason));
+        transaction.setReason(reason);
+        transaction.setTransactionTime(postingWatermark.stamp());
+        clientCache.evictAfterCommit(List.of(senderAccountNumber, receiverAccountNumber));
+
+        Transaction saved = transactionRepository.save(transaction);
+        postingRepository.saveAll(Posting.of(transaction));
+        transferMetrics.saved(phaseStarted, transaction);
+        return saved;
+    }
+
+    /*
+     * Runs a transfer in the lanes locking mode.
+     *
+     * The lane of the sender validates both accounts and debits the sender with a single statement. When the receiver
+     * belongs to the same lane it is credited in the same database transaction. Otherwise the debit commits together
+     * with a pending credit, and the credit is handed to the lane of the receiver as a message: the sender lane goes on
+     * with its next transfer instead of waiting for the other lane. Only the calling thread waits, for the response.
+     *
+     * @param Long                  senderAccountNumber   Client sender account number
+     * @param Long                  receiverAccountNumber Client receiver account number
+     * @param long                  amount                Value amount of the transaction in cents
+     * @param Consumer<Transaction> alsoSave              Saves more rows in the database transaction of the debit, null for none
+     *
+     * @return                                            Transaction object, with the receiver as credited when that succeeded.
+     */
+    private Transaction transferInLanes(Long senderAccountNumber, Long receiverAccountNumber, long amount, Consumer<Transaction> alsoSave) {
+        boolean sameLane = laneDispatcher.sameLane(senderAccountNumber, receiverAccountNumber);
+        CompletableFuture<Transaction> transfer = laneDispatcher.submit(senderAccountNumber, () -> transactionTemplate.execute(status -> {
+            Transaction transaction = debitInLane(senderAccountNumber, receiverAccountNumber, amount, sameLane);
+            if (alsoSave != null) {
+                alsoSave.accept(transaction);
+            }
+            return transaction;
+        }));
+        if (!sameLane) {
+            transfer = transfer.thenCompose(debited -> debited.getStatus() == TransactionStatus.SUCCESS
+                    ? creditInLane(debited, 0)
+                    : CompletableFuture.completedFuture(debited));
+        }
+        return AccountLaneDispatcher.await(transfer);
+    }
+
+    /*
+     * Debits the sender on its lane, and credits the receiver too when it belongs to the same lane. Runs inside a
+     * database transaction; the Clients are only updated by single statements and read without locks.
+     */
+    private Transaction debitInLane(Long senderAccountNumber, Long receiverAccountNumber, long amount, boolean sameLane) {
+        long phaseStarted = transferMetrics.readStarted();
+        try {
+            simulateLongTransfer();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Transfer was interrupted", ex);
+        }
+        boolean debited;
+        if (!sameLane) {
+            debited = clientRepository.debit(senderAccountNumber, amount) == 1;
+        } else if (senderAccountNumber < receiverAccountNumber) {
+            // Rows are updated in accountNumber order, the order batch chunks lock them in
+            debited = clientRepository.debit(senderAccountNumber, amount) == 1;
+            if (debited) {
+                clientRepository.credit(receiverAccountNumber, amount);
+            }
+        } else {
+            clientRepository.credit(receiverAccountNumber, amount);
+            debited = clientRepository.debit(senderAccountNumber, amount) == 1;
+            if (!debited) {
+                clientRepository.credit(receiverAccountNumber, -amount);
+            }
+        }
+        phaseStarted = transferMetrics.executed(phaseStarted);
+
+        // The updates cleared the persistence context, so the Clients are read after them, with their new balances. An
+        // unknown account rolls the updates back.
+        Client sender;
+        Client receiver;
+        try {
+            sender = clientRepository.readByAccountNumber(senderAccountNumber).orElseThrow(() -> new IllegalArgumentException(PaymentRules.INVALID_SENDER));
+            receiver = clientRepository.readByAccountNumber(receiverAccountNumber).orElseThrow(() -> new IllegalArgumentException(PaymentRules.INVALID_RECEIVER));
+        } finally {
+            phaseStarted = transferMetrics.read(phaseStarted);
+        }
+        Transaction transaction = new Transaction();
+        transaction.setSender(sender);
+        transaction.setReceiver(receiver);
+        transaction.setAmount(amount);
+        transaction.setStatus(debited ? TransactionStatus.SUCCESS : TransactionStatus.FAIL);
+        transaction.setReason(debited ? null : TransactionReason.INSUFFICIENT_FUNDS);
+        transaction.setTransactionTime(postingWatermark.stamp());
+        clientCache.evictAfterCommit(sameLane ? List.of(senderAccountNumber, receiverAccountNumber) : List.of(senderAccountNumber));
+
+        Transaction saved = transactionRepository.save(transaction);
+        if (debited && sameLane) {
+            postingRepository.saveAll(Posting.of(transaction));
+        } else if (debited) {
+            postingRepository.save(Posting.debit(transaction));
+            clientRepository.addPendingCredit(saved.getId());
+        }
+        transferMetrics.saved(phaseStarted, transaction);
+        return saved;
+    }
+
+    /*
+     * Hands the credit of a transfer between two lanes to the lane of its receiver. Credits are queued per lane and the
+     * lane applies all credits queued by then in one database transaction, so a hot receiver costs one update per batch
+     * instead of one per transfer.
+     *
+     * @return Future completed with the Transaction once its credit is applied, or left pending after a failure
+     */
+    private CompletableFuture<Transaction> creditInLane(Transaction debited, int failures) {
+        Long receiverAccountNumber = debited.getReceiver().getAccountNumber();
+        Queue<LaneCredit> queue = laneCredits.computeIfAbsent(laneDispatcher.laneOf(receiverAccountNumber), lane -> new ConcurrentLinkedQueue<>());
+        LaneCredit credit = new LaneCredit(debited, failures, new CompletableFuture<>());
+        queue.add(credit);
+        // Every credit queues a drain; the first one takes the whole queue and the later ones find it empty
+        laneDispatcher.submit(receiverAccountNumber, () -> {
+            creditQueued(queue);
+            return null;
+        });
+        return credit.done();
+    }
+
+    /*
+     * Applies the credits queued on a lane. Runs on the lane. Credits that fail stay pending and are retried on the lane
+     * later, so their transfers are still answered with their Transaction.
+     */
+    private void creditQueued(Queue<LaneCredit> queue) {
+        List<LaneCredit> credits = new ArrayList<>();
+        for (LaneCredit credit = queue.poll(); credit != null; credit = queue.poll()) {
+            credits.add(credit);
+        }
+        if (credits.isEmpty()) {
+            return;
+        }
+        try {
+            Map<Long, Client> receivers = transactionTemplate.execute(status -> applyPendingCredits(credits));
+            for (LaneCredit credit : credits) {
+                Client receiver = receivers.get(credit.transaction().getReceiver().getAccountNumber());
+                if (receiver != null) {
+                    credit.transaction().setReceiver(receiver);
+                }
+                credit.done().complete(credit.transaction());
+            }
+        } catch (RuntimeException ex) {
+            log.error("{} credits of lane transfers failed, they stay pending", credits.size(), ex);
+            for (LaneCredit credit : credits) {
+                creditLater(credit.transaction(), credit.failures() + 1);
+                credit.done().complete(credit.transaction());
+            }
+        }
+    }
+
+    /*
+     * Credits the receivers of pending credits and removes the credits. Runs inside a database transaction; a credit
+     * that is not pending anymore was already applied and is skipped.
+     *
+     * @return Credited receivers by account number
+     */
+    private Map<Long, Client> applyPendingCredits(List<LaneCredit> credits) {
+        // Receivers are updated in accountNumber order, the order batch chunks lock them in
+        Map<Long, Long> amounts = new TreeMap<>();
+        List<Transaction> applied = new ArrayList<>(credits.size());
+        for (LaneCredit credit : credits) {
+            Transaction transaction = credit.transaction();
+            if (clientRepository.removePendingCredit(transaction.getId()) == 1) {
+                amounts.merge(transaction.getReceiver().getAccountNumber(), transaction.getAmount(), Long::sum);
+                applied.add(transaction);
+            }
+        }
+        amounts.forEach(clientRepository::credit);
+
+        Map<Long, Client> receivers = new HashMap<>();
+        amounts.keySet().forEach(accountNumber -> receivers.put(accountNumber, clientRepository.readByAccountNumber(accountNumber).orElseThrow()));
+        LocalDateTime postedAt = postingWatermark.stamp();
+        postingRepository.saveAll(applied.stream().map(transaction -> Posting.credit(transactionRepository.getReferenceById(transaction.getId()),
+                receivers.get(transaction.getReceiver().getAccountNumber()), transaction.getAmount(), postedAt)).toList());
+        clientCache.evictAfterCommit(amounts.keySet());
+        return receivers;
+    }
+
+    /*
+     * Queues a pending credit on the lane of its receiver again, after a backoff that grows with the failed attempts.
+     */
+    private void creditLater(Transaction transaction, int failures) {
+        long delayMs = failures == 0 ? 0 : Math.min(CREDIT_RETRY_MAX_BACKOFF_MS, CREDIT_RETRY_BACKOFF_MS << Math.min(failures - 1, 20));
+        laneDispatcher.schedule(transaction.getReceiver().getAccountNumber(), () -> creditInLane(transaction, failures), delayMs);
+    }
+
+    /*
+     * Hands the credits still pending from a previous run to the lanes of their receivers. A credit that another
+     * instance applies meanwhile is only applied once, as applying it removes it.
+     */
+    @PostConstruct
+    void recoverPendingCredits() {
+        if (laneDispatcher == null) {
+            return;
+        }
+        for (Long transactionId : clientRepository.findPendingCredits()) {
+            transactionRepository.findWithClientsById(transactionId).ifPresent(transaction -> creditLater(transaction, 0));
+        }
+    }
+
+    // Credit queued on the lane of its receiver, with the failed attempts before it
+    private record LaneCredit(Transaction transaction, int failures, CompletableFuture<Transaction> done) {
+    }
 
-        return transactionRepository.save(transaction);
+    /*
+     * Locks the Clients of the account numbers one row per query, in accountNumber order. A single IN query does not
+     * guarantee the order in which the database locks its rows, so two of them can still deadlock on the same accounts.
+     *
+     * @param Collection<Long> accountNumbers Client account numbers
+     *
+     * @return                                 Locked Clients by account number. Unknown account numbers are missing.
+     */
+    private Map<Long, Client> lockInOrder(Collection<Long> accountNumbers) {
+        Map<Long, Client> clients = new HashMap<>();
+        accountNumbers.stream().filter(Objects::nonNull).sorted().distinct()
+                .forEach(accountNumber -> clientRepository.findByAccountNumber(accountNumber).ifPresent(client -> clients.put(accountNumber, client)));
+        return clients;
+    }
+
+    /*
+     * Process a batch of transactions.
+     *
+     * The batch is split in chunks of payments.batch.chunk-size requests (the whole batch when it is not positive) and
+     * each chunk runs in one database transaction: the distinct accounts of the chunk are locked once, in accountNumber
+     * order, the postings are applied in request order and the Transactions are saved together. A rejected request does
+     * not fail the rest of its chunk.
+     *
+     * Chunks always lock in accountNumber order, whatever payments.locking.mode is: a chunk locks many accounts, which
+     * only the ordered mode can do without deadlocks, and an optimistic chunk would redo every transfer of the chunk on
+     * a single conflict. In the lanes mode their row locks wait for the single-statement updates of the lanes, which
+     * keeps the balances consistent while batches run outside the lanes.
+     *
+     * A chunk that fails is rolled back and its requests are returned as errors, while the chunks before it stay
+     * committed. When the batch joins a transaction of the caller, chunks are committed with it, so a failure is thrown.
+     *
+     * @param List<TransactionRequest> requests Transactions to process
+     *
+     * @return                                  Result of every request, in request order.
+     */
+    public List<BatchPaymentResult> processBatch(List<TransactionRequest> requests) {
+        if (requests.size() > batchMaxSize) {
+            throw new IllegalArgumentException("Batch has " + requests.size() + " requests, the maximum is " + batchMaxSize);
+        }
+        List<BatchPaymentResult> results = new ArrayList<>(requests.size());
+        int chunkSize = batchChunkSize > 0 ? batchChunkSize : Math.max(requests.size(), 1);
+        boolean joined = TransactionSynchronizationManager.isActualTransactionActive();
+        for (int from = 0; from < requests.size(); from += chunkSize) {
+            List<TransactionRequest> chunk = requests.subList(from, Math.min(from + chunkSize, requests.size()));
+            int offset = from;
+            if (ledgerEngine != null) {
+                results.addAll(transferChunkInLedger(chunk, offset));
+                continue;
+            }
+            try {
+                results.addAll(transactionTemplate.execute(status -> transferChunk(chunk, offset)));
+            } catch (RuntimeException ex) {
+                transferMetrics.failed(chunk.size());
+                if (joined) {
+                    throw ex;
+                }
+                log.error("Batch chunk of {} requests from index {} failed and was rolled back", chunk.size(), offset, ex);
+                for (int i = 0; i < chunk.size(); i++) {
+                    results.add(new BatchPaymentResult(offset + i, null, "Processing error, the chunk of this request was rolled back", true));
+                }
+            }
+        }
+        return results;
+    }
+
+    /*
+     * Applies one chunk of a batch. Runs inside a database transaction, timed by the TransferMetrics like a single transfer.
+     */
+    private List<BatchPaymentResult> transferChunk(List<TransactionRequest> chunk, int offset) {
+        // Lock every distinct account of the chunk once, in accountNumber order
+        TreeSet<Long> accountNumbers = new TreeSet<>();
+        for (TransactionRequest request : chunk) {
+            if (request.getSenderAccountNumber() != null) {
+                accountNumbers.add(request.getSenderAccountNumber());
+            }
+            if (request.getReceiverAccountNumber() != null) {
+                accountNumbers.add(request.getReceiverAccountNumber());
+            }
+        }
+        Map<Long, Client> clients;
+        long phaseStarted = transferMetrics.lockStarted();
+        try {
+            clients = lockInOrder(accountNumbers);
+            if (balanceSlots != null) {
+                // Split balances are locked like any other here, so their slots are folded in before any posting
+                clients.values().stream().filter(client -> balanceSlots.isSplit(client.getAccountNumber())).forEach(balanceSlots::merge);
+            }
+        } finally {
+            phaseStarted = transferMetrics.locked(phaseStarted);
+        }
+
+        // Apply postings in request order. Locked Clients are managed, so each one is updated once at commit.
+        Transaction[] transactions = new Transaction[chunk.size()];
+        String[] rejections = new String[chunk.size()];
+        for (int i = 0; i < chunk.size(); i++) {
+            TransactionRequest request = chunk.get(i);
+            Client sender = clients.get(request.getSenderAccountNumber());
+            Client receiver = clients.get(request.getReceiverAccountNumber());
+            if (!Cents.isPayable(request.getAmount())) {
+                rejections[i] = Cents.NOT_PAYABLE;
+            } else if (sender == null) {
+                rejections[i] = PaymentRules.INVALID_SENDER;
+            } else if (receiver == null) {
+                rejections[i] = PaymentRules.INVALID_RECEIVER;
+            } else {
+                Transaction transaction = new Transaction();
+                transaction.setSender(sender);
+                transaction.setReceiver(receiver);
+                transaction.setAmount(request.getAmount());
+                if (applyPosting(sender, receiver, request.getAmount())) {
+                    transaction.setStatus(TransactionStatus.SUCCESS);
+                } else {
+                    transaction.setStatus(TransactionStatus.FAIL);
+                    transaction.setReason(TransactionReason.INSUFFICIENT_FUNDS);
+                }
+                transaction.setTransactionTime(postingWatermark.stamp());
+                transactions[i] = transaction;
+            }
+        }
+        phaseStarted = transferMetrics.executed(phaseStarted);
+        List<Transaction> applied = Arrays.stream(transactions).filter(Objects::nonNull).toList();
+        transactionRepository.saveAll(applied);
+        postingRepository.saveAll(applied.stream().flatMap(transaction -> Posting.of(transaction).stream()).toList());
+        clientCache.evictAfterCommit(clients.keySet());
+        transferMetrics.saved(phaseStarted, applied, chunk.size() - applied.size());
+
+        List<BatchPaymentResult> results = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Transaction transaction = transactions[i];
+            results.add(transaction != null ? new BatchPaymentResult(offset + i, transaction.getId(), transaction.getStatus().getMessage()) : new BatchPaymentResult(offset + i, null, rejections[i]));
+        }
+        return results;
+    }
+
+    /*
+     * Applies one chunk of a batch through the ledger engine, request by request, so a failure only fails its request.
+     */
+    private List<BatchPaymentResult> transferChunkInLedger(List<TransactionRequest> chunk, int offset) {
+        List<BatchPaymentResult> results = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            TransactionRequest request = chunk.get(i);
+            try {
+                Transaction transaction = processTransaction(request.getSenderAccountNumber(), request.getReceiverAccountNumber(), request.getAmount());
+                results.add(new BatchPaymentResult(offset + i, transaction.getId(), transaction.getStatus().getMessage()));
+            } catch (IllegalArgumentException ex) {
+                results.add(new BatchPaymentResult(offset + i, null, ex.getMessage()));
+            } catch (RuntimeException ex) {
+                log.error("Batch request {} failed", offset + i, ex);
+                results.add(new BatchPaymentResult(offset + i, null, "Processing error, this request was not applied", true));
+            }
+        }
+        return results;
+    }
+
+    /*
+     * Moves the amount from sender to receiver when the sender has sufficient funds.
+     *
+     * @return true when the posting was applied
+     */
+    private static boolean applyPosting(Client sender, Client receiver, long amount) {
+        if (PaymentRules.decide(sender.getAccountBalance(), amount) != null) {
+            return false;
+        }
+        sender.setAccountBalance(sender.getAccountBalance() - amount);
+        receiver.setAccountBalance(receiver.getAccountBalance() + amount);
+        return true;
     }
 
     /*
@@ -70,23 +679,100 @@ public class TransactionService {
     }
 
     /*
-     * Returns all Transactions from a Client by Account Number in desc order.
+     * Returns all Transactions from a Client by Account Number in desc order, read by a single query that only joins
+     * the account numbers of the Clients.
      *
      * @param Long accountNumber Client Account Number
      *
-     * @return                   List of Transaction objects.
+     * @return                   List of TransactionSummary objects.
      */
-    public List<Transaction> getTransactionsByAccountNumber(Long accountNumber) {
-        Client client = clientRepository.findByAccountNumber(accountNumber).orElseThrow(() -> new IllegalArgumentException("Invalid Account Number"));
-        // Collect all transactions from Client in a List
-        List<Transaction> bySender = transactionRepository.findBySender(client);
-        List<Transaction> byReceiver = transactionRepository.findByReceiver(client);
-        List<Transaction> allTransactions = new ArrayList<>(bySender);
-        allTransactions.addAll(byReceiver);
-        // Sort list in descending order by transactionTime
-        allTransactions = allTransactions.stream().sorted(Comparator.comparing(Transaction::getTransactionTime).reversed()).collect(Collectors.toList());
+    public List<TransactionSummary> getTransactionsByAccountNumber(Long accountNumber) {
+        Client client = clientRepository.readByAccountNumber(accountNumber).orElseThrow(() -> new IllegalArgumentException(PaymentRules.INVALID_ACCOUNT));
+        return transactionRepository.findHistory(client.getId());
+    }
 
-        return allTransactions;
+    /*
+     * Returns one page of the statement of a Client, newest Transactions first.
+     *
+     * Pages are read with keyset pagination: the cursor holds the transactionTime and id of the last Transaction of the
+     * previous page, so the database seeks straight to the next page and response time does not grow with history.
+     *
+     * @param Long   accountNumber Client Account Number
+     * @param String cursor        nextCursor of the previous page, null for the first page
+     * @param int    size          Page size, capped to payments.statement.max-page-size
+     *
+     * @return                     StatementPage
+     */
+    public StatementPage getStatement(Long accountNumber, String cursor, int size) {
+        int pageSize = PaymentRules.statementPageSize(size, statementMaxPageSize);
+        Client client = clientRepository.readByAccountNumber(accountNumber).orElseThrow(() -> new IllegalArgumentException(PaymentRules.INVALID_ACCOUNT));
+
+        // One extra row tells whether there is a next page
+        int limit = pageSize + 1;
+        StatementCursor position = PaymentRules.statementPosition(cursor);
+        return PaymentRules.statementPage(transactionRepository.findStatement(client.getId(), position.transactionTime(), position.id(), limit), pageSize);
+    }
+
+    /*
+     * Exports the full history of a Client, oldest Transactions first.
+     *
+     * The Account Number is checked before anything is written, so an invalid one is still answered with 400.
+     * Rows are then read through a database cursor in a read-only transaction and written to the response as they
+     * arrive; no list of Transactions or Client objects is built, so heap use does not depend on the history size.
+     *
+     * @param Long         accountNumber Client Account Number
+     * @param ExportFormat format        NDJSON or CSV
+     *
+     * @return                           StreamingResponseBody that writes the export.
+     */
+    public StreamingResponseBody exportTransactions(Long accountNumber, ExportFormat format) {
+        Client client = clientRepository.readByAccountNumber(accountNumber).orElseThrow(() -> new IllegalArgumentException(PaymentRules.INVALID_ACCOUNT));
+
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            JsonGenerator generator = JSON_FACTORY.createGenerator(writer);
+            generator.setRootValueSeparator(null);
+            if (format == ExportFormat.CSV) {
+                writer.write(CSV_HEADER);
+            }
+            readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                try (Stream<TransactionSummary> rows = transactionRepository.streamHistory(client.getId())) {
+                    rows.forEach(row -> {
+                        try {
+                            if (format == ExportFormat.CSV) {
+                                writeCsv(writer, row);
+                            } else {
+                                writeNdjson(generator, writer, row);
+                            }
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    });
+                }
+            });
+            generator.flush();
+            writer.flush();
+        };
+    }
+
+    private static void writeNdjson(JsonGenerator generator, Writer writer, TransactionSummary row) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", row.getId());
+        generator.writeNumberField("senderAccountNumber", row.getSenderAccountNumber());
+        generator.writeNumberField("receiverAccountNumber", row.getReceiverAccountNumber());
+        generator.writeStringField("transactionTime", row.getTransactionTime().toString());
+        generator.writeFieldName("amount");
+        generator.writeNumber(Cents.toDecimalString(row.getAmount()));
+        generator.writeStringField("status", row.getStatus().name());
+        generator.writeStringField("reason", row.getReason() == null ? null : row.getReason().name());
+        generator.writeEndObject();
+        generator.flush();
+        writer.write('\n');
+    }
+
+    private static void writeCsv(Writer writer, TransactionSummary row) throws IOException {
+        writer.write(row.getId() + "," + row.getSenderAccountNumber() + "," + row.getReceiverAccountNumber() + "," + row.getTransactionTime() + ","
+                + Cents.toDecimalString(row.getAmount()) + "," + row.getStatus().name() + "," + (row.getReason() == null ? "" : row.getReason().name()) + "\n");
     }
 
     /*
@@ -94,27 +780,44 @@ public class TransactionService {
      *
      * @param Client sender   Object
      * @param Client receiver Object
-     * @param Double amount   Value amount of the transaction
+     * @param long   amount   Value amount of the transaction in cents
      *
-     * @return                Status message of the transaction
+     * @return                Reason the transaction failed, null when it was executed
      */
     @Transactional
-    protected String executeTransaction(Client sender, Client receiver, Double amount) {
+    protected TransactionReason executeTransaction(Client sender, Client receiver, long amount) {
         try {
-            // Simulate a long-running transaction only in test environment for ProcessPaymentConcurrentTest
-            if (environment != null && Arrays.asList(environment.getActiveProfiles()).contains("transactionControllerTest")) {
-                Thread.sleep(5000); // 5 seconds delay
+            simulateLongTransfer();
+            if (sender.getAccountBalance() < amount && balanceSlots != null && balanceSlots.isSplit(sender.getAccountNumber())) {
+                // Credits waiting in the balance slots of the sender are only folded in when the debit needs them
+                balanceSlots.merge(sender);
             }
-            if (sender.getAccountBalance() < amount) {
+            if (PaymentRules.decide(sender.getAccountBalance(), amount) != null) {
                 throw new InsufficientFundsException(TransactionStatus.FAIL.getMessage());
             }
-            sender.setAccountBalance(sender.getAccountBalance() - amount);
-            receiver.setAccountBalance(receiver.getAccountBalance() + amount);
-            clientRepository.save(sender);
-            clientRepository.save(receiver);
+            if (balanceSlots != null && balanceSlots.isSplit(receiver.getAccountNumber())) {
+                // The slot update is a statement of its own, so it runs before the sender is debited in case it fails
+                balanceSlots.credit(receiver, amount);
+                sender.setAccountBalance(sender.getAccountBalance() - amount);
+                clientRepository.save(sender);
+            } else {
+                sender.setAccountBalance(sender.getAccountBalance() - amount);
+                receiver.setAccountBalance(receiver.getAccountBalance() + amount);
+                clientRepository.save(sender);
+                clientRepository.save(receiver);
+            }
+        } catch (InsufficientFundsException ex) {
+            return TransactionReason.INSUFFICIENT_FUNDS;
         } catch (Exception ex) {
-            return ex.getMessage();
+            return TransactionReason.PROCESSING_ERROR;
+        }
+        return null;
+    }
+
+    // Simulate a long-running transaction only in test environment for ProcessPaymentConcurrentTest
+    private void simulateLongTransfer() throws InterruptedException {
+        if (environment != null && Arrays.asList(environment.getActiveProfiles()).contains("transactionControllerTest")) {
+            Thread.sleep(testTransferDelayMs); // 5 seconds delay by default
         }
-        return TransactionStatus.SUCCESS.getMessage();
     }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+package com.paymentsApi.service;
+
+import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.enums.TransactionReason;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* TransferMetrics
+ * Meters of the database transfer path, to show where the latency of /pay goes and where transfers contend.
+ *
+ * A transfer runs in phases: it locks both Clients (plain reads in the optimistic mode), executes the transfer, saves
+ * the Transaction with its postings, and commits, which is when the batched inserts and the balance updates are
+ * flushed. A chunk of a batch runs the same phases once for all of its requests. Each phase is timed with a percentile
+ * histogram, so p99 of every phase can be read from a scrape. The lock-wait gauges count the transfers and chunks
+ * blocked on Client row locks and those holding their locks right now; optimistic reads take no lock and are not
+ * counted by them. A transfer that throws, or a chunk that rolls back, counts as processing_error for every request.
+ *
+ * Meters:
+ * payments.transfer.phase          Time per phase of a database transfer, tag phase: lock, execute, save or commit
+ * payments.transfer.outcomes       Transfers by outcome, tag outcome: success, insufficient_funds or processing_error
+ * payments.transfer.lock.waiting   Transfers waiting to lock their Clients
+ * payments.transfer.lock.held      Transfers holding the locks of their Clients, until their transaction completes
+ */
+@Component
+public class TransferMetrics {
+
+    private final Timer lock;
+    private final Timer execute;
+    private final Timer save;
+    private final Timer commit;
+    private final Counter success;
+    private final Counter insufficientFunds;
+    private final Counter processingError;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger held = new AtomicInteger();
+
+    public TransferMetrics(MeterRegistry meterRegistry) {
+        this.lock = phase(meterRegistry, "lock");
+        this.execute = phase(meterRegistry, "execute");
+        this.save = phase(meterRegistry, "save");
+        this.commit = phase(meterRegistry, "commit");
+        this.success = outcome(meterRegistry, "success");
+        this.insufficientFunds = outcome(meterRegistry, "insufficient_funds");
+        this.processingError = outcome(meterRegistry, "processing_error");
+        Gauge.builder("payments.transfer.lock.waiting", waiting, AtomicInteger::get).description("Transfers waiting to lock their Clients").register(meterRegistry);
+        Gauge.builder("payments.transfer.lock.held", held, AtomicInteger::get).description("Transfers holding the locks of their Clients").register(meterRegistry);
+    }
+
+    /*
+     * Marks the start of the lock phase of a transfer.
+     *
+     * @return Start time to pass to locked
+     */
+    public long lockStarted() {
+        waiting.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /*
+     * Marks the start of the lock phase of a transfer that reads its Clients without locking them.
+     *
+     * @return Start time to pass to read
+     */
+    public long readStarted() {
+        return System.nanoTime();
+    }
+
+    /*
+     * Marks the end of a lock phase started by readStarted. Nothing is held until the transaction completes.
+     *
+     * @param long started Start time returned by readStarted
+     *
+     * @return             End time of the phase, the start of the next one
+     */
+    public long read(long started) {
+        long now = System.nanoTime();
+        lock.record(now - started, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    /*
+     * Marks the end of the lock phase, successful or not. The locks count as held until the database transaction
+     * completes; without transaction synchronization they are not counted.
+     *
+     * @param long started Start time returned by lockStarted
+     *
+     * @return             End time of the phase, the start of the next one
+     */
+    public long locked(long started) {
+        long now = System.nanoTime();
+        waiting.decrementAndGet();
+        lock.record(now - started, TimeUnit.NANOSECONDS);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            held.incrementAndGet();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    held.decrementAndGet();
+                }
+            });
+        }
+        return now;
+    }
+
+    /*
+     * Records the execute phase.
+     *
+     * @param long started End time of the lock phase
+     *
+     * @return             End time of the phase, the start of the save phase
+     */
+    public long executed(long started) {
+        long now = System.nanoTime();
+        execute.record(now - started, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    /*
+     * Records the save phase, then times the commit phase and counts the outcome when the database transaction commits.
+     * An attempt that is rolled back, such as one retried in the optimistic mode, is not counted.
+     *
+     * @param long        started     End time of the execute phase
+     * @param Transaction transaction Transaction being saved
+     */
+    public void saved(long started, Transaction transaction) {
+        saved(started, List.of(transaction), 0);
+    }
+
+    /*
+     * Records the save phase of a chunk of a batch, then counts the outcome of every request of the chunk when it commits.
+     *
+     * @param long              started      End time of the execute phase
+     * @param List<Transaction> transactions Transactions being saved
+     * @param int               rejected     Requests of the chunk rejected without a Transaction
+     */
+    public void saved(long started, List<Transaction> transactions, int rejected) {
+        long now = System.nanoTime();
+        save.record(now - started, TimeUnit.NANOSECONDS);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            transactions.forEach(this::outcome);
+            failed(rejected);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                commit.record(System.nanoTime() - now, TimeUnit.NANOSECONDS);
+                transactions.forEach(TransferMetrics.this::outcome);
+                failed(rejected);
+            }
+        });
+    }
+
+    /*
+     * Counts transfers that were not applied because they threw or their transaction rolled back, like a deadlock, a
+     * version conflict on every optimistic attempt or an unknown account.
+     *
+     * @param int transfers Number of transfers
+     */
+    public void failed(int transfers) {
+        processingError.increment(transfers);
+    }
+
+    /*
+     * Counts the outcome of a transfer. Transfers of the database path are counted by saved.
+     *
+     * @param Transaction transaction Applied or failed Transaction
+     *
+     * @return                        The same Transaction
+     */
+    public Transaction outcome(Transaction transaction) {
+        outcome(transaction.getReason());
+        return transaction;
+    }
+
+    /*
+     * Counts the outcome of a transfer that committed without a Transaction entity, like one of the reactive /v2 API.
+     *
+     * @param TransactionReason reason Reason the transfer failed, null when it succeeded
+     */
+    public void outcome(TransactionReason reason) {
+        if (reason == null) {
+            success.increment();
+        } else if (reason == TransactionReason.INSUFFICIENT_FUNDS) {
+            insufficientFunds.increment();
+        } else {
+            processingError.increment();
+        }
+    }
+
+    private static Timer phase(MeterRegistry meterRegistry, String phase) {
+        return Timer.builder("payments.transfer.phase").tag("phase", phase).description("Time per phase of a database transfer")
+                .publishPercentileHistogram().register(meterRegistry);
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("payments.transfer.outcomes").tag("outcome", outcome).description("Transfers by outcome").register(meterRegistry);
+    }
+}
@@ -0,0 +1,122 @@
+package com.paymentsApi.settlement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/* PaymentQueueFile
+ * Local append-only file holding the payments accepted by the SettlementEngine.
+ *
+ * Every payment is one tab separated line, forced to disk before append returns, so an accepted payment survives a
+ * crash. Lines are never updated: settled payments are recorded in the database and the file is only rewritten with
+ * the payments still pending, on startup and whenever the queue drains. A line torn by a crash is skipped on recovery.
+ */
+class PaymentQueueFile implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentQueueFile.class);
+
+    private final Path path;
+    private FileChannel channel;
+
+    PaymentQueueFile(Path path) {
+        this.path = path;
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.channel = open(path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot open settlement queue " + path, ex);
+        }
+    }
+
+    /*
+     * Writes a payment at the end of the file and waits until it is on disk.
+     */
+    synchronized void append(QueuedPayment payment) {
+        String line = payment.ticketId() + "\t" + payment.senderAccountNumber() + "\t" + payment.receiverAccountNumber() + "\t" + payment.amount() + "\t" + payment.acceptedAt() + "\n";
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot write to settlement queue " + path, ex);
+        }
+    }
+
+    /*
+     * Reads every complete payment of the file, in the order they were accepted.
+     */
+    synchronized List<QueuedPayment> readAll() {
+        List<QueuedPayment> payments = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                try {
+                    payments.add(new QueuedPayment(fields[0], Long.valueOf(fields[1]), Long.valueOf(fields[2]), Long.parseLong(fields[3]), LocalDateTime.parse(fields[4])));
+                } catch (RuntimeException ex) {
+                    log.warn("Skipping unreadable settlement queue line: {}", line);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read settlement queue " + path, ex);
+        }
+        return payments;
+    }
+
+    /*
+     * Replaces the file with the given payments. The new file is written aside and moved over the old one, so a crash
+     * leaves either of them complete.
+     */
+    synchronized void rewrite(Collection<QueuedPayment> payments) {
+        try {
+            channel.close();
+            Path next = path.resolveSibling(path.getFileName() + ".next");
+            Files.deleteIfExists(next);
+            channel = open(next);
+            for (QueuedPayment payment : payments) {
+                append(payment);
+            }
+            channel.close();
+            Files.move(next, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = open(path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot rewrite settlement queue " + path, ex);
+        }
+    }
+
+    synchronized long size() {
+        try {
+            return channel.size();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,22 @@
+package com.paymentsApi.settlement;
+
+import java.time.LocalDateTime;
+
+/* QueuedPayment
+ * A payment accepted by the SettlementEngine and waiting in the PaymentQueueFile to be settled.
+ *
+ * String        ticketId              Ticket returned to the caller, the Idempotency-Key when one was sent
+ * Long          senderAccountNumber   Client sender account number
+ * Long          receiverAccountNumber Client receiver account number
+ * long          amount                Payment amount in cents
+ * LocalDateTime acceptedAt            Time the payment was written to the queue
+ */
+public record QueuedPayment(String ticketId, Long senderAccountNumber, Long receiverAccountNumber, long amount, LocalDateTime acceptedAt) {
+
+    /*
+     * @return true when the ticket was accepted for the same payment request
+     */
+    public boolean matches(Long senderAccountNumber, Long receiverAccountNumber, long amount) {
+        return this.senderAccountNumber.equals(senderAccountNumber) && this.receiverAccountNumber.equals(receiverAccountNumber) && this.amount == amount;
+    }
+}
@@ -0,0 +1,380 @@
+package com.paymentsApi.settlement;
+
+import com.paymentsApi.dto.BatchPaymentResult;
+import com.paymentsApi.dto.PaymentTicketStatus;
+import com.paymentsApi.dto.TransactionRequest;
+import com.paymentsApi.entity.PaymentTicket;
+import com.paymentsApi.enums.TicketState;
+import com.paymentsApi.exception.IdempotencyKeyReuseException;
+import com.paymentsApi.money.Cents;
+import com.paymentsApi.repository.PaymentTicketRepository;
+import com.paymentsApi.service.ClientService;
+import com.paymentsApi.service.TransactionService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/* SettlementEngine
+ * Optional accept-then-settle mode of /pay: a payment is written to a local queue file and answered with a ticket,
+ * and settlement workers apply it later.
+ *
+ * Accepting a payment only checks the request against the Client cache and appends one line to the PaymentQueueFile,
+ * so its latency does not depend on row locks. Payments are split into lanes by sender account number, one worker per
+ * lane, and each worker settles what its lane holds in micro-batches through TransactionService.processBatch, which
+ * locks every account of the batch once. The PaymentTickets of a batch are saved in the same database transaction as
+ * its Transactions, so a payment is settled exactly once even when it is read again from the queue after a crash.
+ *
+ * Accepted payments are never dropped because the database is unavailable. processBatch already turns business
+ * failures into per-payment results, so a batch only fails on an error of the database or of a payment itself. A
+ * transient error (connection lost, lock or pool timeout) is retried for as long as it lasts, with an exponential
+ * backoff capped at payments.settlement.max-backoff-ms. Any other error is retried up to payments.settlement.max-attempts
+ * times; the payments of the batch are then settled one at a time with the same bound, so one bad payment does not hold
+ * up the rest of its lane, and only a payment that still fails that way gets a FAILED ticket.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.settlement.enabled", havingValue = "true")
+public class SettlementEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(SettlementEngine.class);
+    private static final int RECOVERY_CHUNK_SIZE = 1000;
+
+    private final TransactionService transactionService;
+    private final ClientService clientService;
+    private final PaymentTicketRepository paymentTicketRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentQueueFile queueFile;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+    private final List<BlockingQueue<QueuedPayment>> lanes = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    // Payments written to the queue file and not settled yet, by ticket id
+    private final Map<String, QueuedPayment> pending = new ConcurrentHashMap<>();
+    // Held while writing to the queue file, so a drained queue is never rewritten under a new payment
+    private final Object appendLock = new Object();
+    private volatile boolean running = true;
+
+    public SettlementEngine(TransactionService transactionService, ClientService clientService, PaymentTicketRepository paymentTicketRepository,
+                            PlatformTransactionManager transactionManager, @Value("${payments.settlement.queue-file:data/settlement-queue.log}") String queueFile,
+                            @Value("${payments.settlement.workers:4}") int workerCount, @Value("${payments.settlement.batch-size:200}") int batchSize,
+                            @Value("${payments.settlement.max-attempts:5}") int maxAttempts, @Value("${payments.settlement.backoff-ms:100}") long backoffMs,
+                            @Value("${payments.settlement.max-backoff-ms:5000}") long maxBackoffMs, @Value("${payments.ledger.enabled:false}") boolean ledgerEnabled) {
+        if (ledgerEnabled) {
+            throw new IllegalStateException("payments.settlement.enabled cannot be combined with payments.ledger.enabled");
+        }
+        if (workerCount < 1 || batchSize < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("payments.settlement.workers, payments.settlement.batch-size and payments.settlement.max-attempts must be at least 1");
+        }
+        this.transactionService = transactionService;
+        this.clientService = clientService;
+        this.paymentTicketRepository = paymentTicketRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queueFile = new PaymentQueueFile(Path.of(queueFile));
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        for (int i = 0; i < workerCount; i++) {
+            BlockingQueue<QueuedPayment> lane = new LinkedBlockingQueue<>();
+            lanes.add(lane);
+            Thread worker = new Thread(() -> drain(lane), "settlement-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+        recover();
+        workers.forEach(Thread::start);
+    }
+
+    /*
+     * Accepts a payment for settlement.
+     *
+     * The payment is on disk when this returns. With an Idempotency-Key the key is the ticket id, and a replay returns
+     * the ticket of the first request instead of queueing the payment again.
+     *
+     * @param Long   senderAccountNumber   Client sender account number
+     * @param Long   receiverAccountNumber Client receiver account number
+     * @param long   amount                Value amount of the transaction in cents
+     * @param String idempotencyKey        Idempotency-Key of the request, null to always queue it
+     *
+     * @return                             PaymentTicketStatus of the ticket, PENDING for a new one.
+     */
+    public PaymentTicketStatus accept(Long senderAccountNumber, Long receiverAccountNumber, long amount, String idempotencyKey) {
+        Cents.requirePayable(amount);
+        if (senderAccountNumber == null) {
+            throw new IllegalArgumentException("Invalid sender Account Number");
+        }
+        if (receiverAccountNumber == null) {
+            throw new IllegalArgumentException("Invalid receiver Account Number");
+        }
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > 64)) {
+            throw new IllegalArgumentException("Invalid Idempotency-Key, it must have 1 to 64 characters");
+        }
+        // Unknown accounts are refused right away, from the Client cache when they were read recently
+        clientService.getClientByAccountNumber(senderAccountNumber);
+        clientService.getClientByAccountNumber(receiverAccountNumber);
+
+        if (idempotencyKey != null) {
+            Optional<PaymentTicket> settled = paymentTicketRepository.findById(idempotencyKey);
+            if (settled.isPresent()) {
+                if (!toPayment(settled.get()).matches(senderAccountNumber, receiverAccountNumber, amount)) {
+                    throw new IdempotencyKeyReuseException("key " + idempotencyKey + " was used with another payment");
+                }
+                return toStatus(settled.get());
+            }
+        }
+
+        String ticketId = idempotencyKey != null ? idempotencyKey : UUID.randomUUID().toString();
+        QueuedPayment payment = new QueuedPayment(ticketId, senderAccountNumber, receiverAccountNumber, amount, LocalDateTime.now());
+        synchronized (appendLock) {
+            QueuedPayment queued = pending.get(ticketId);
+            if (queued != null) {
+                if (!queued.matches(senderAccountNumber, receiverAccountNumber, amount)) {
+                    throw new IdempotencyKeyReuseException("key " + idempotencyKey + " was used with another payment");
+                }
+                return new PaymentTicketStatus(ticketId, TicketState.PENDING, null, null);
+            }
+            queueFile.append(payment);
+            pending.put(ticketId, payment);
+        }
+        laneFor(senderAccountNumber).add(payment);
+        return new PaymentTicketStatus(ticketId, TicketState.PENDING, null, null);
+    }
+
+    /*
+     * Returns the status of a ticket.
+     *
+     * @param String ticketId Ticket returned by accept
+     *
+     * @return                PaymentTicketStatus of the ticket, empty for an unknown ticket
+     */
+    public Optional<PaymentTicketStatus> getStatus(String ticketId) {
+        if (pending.containsKey(ticketId)) {
+            return Optional.of(new PaymentTicketStatus(ticketId, TicketState.PENDING, null, null));
+        }
+        return paymentTicketRepository.findById(ticketId).map(SettlementEngine::toStatus);
+    }
+
+    /*
+     * Number of accepted payments not settled yet.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        // Payments still pending stay in the queue file and are settled after the next start
+        running = false;
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        queueFile.close();
+    }
+
+    private BlockingQueue<QueuedPayment> laneFor(Long senderAccountNumber) {
+        return lanes.get(Math.floorMod(Long.hashCode(senderAccountNumber), lanes.size()));
+    }
+
+    /*
+     * Loop of a settlement worker. A batch that fails is retried as it is, so payments of a lane settle in order. Only
+     * errors that are not transient count as attempts: once a batch has failed maxAttempts times, its payments are
+     * settled one at a time before anything new in the lane.
+     */
+    private void drain(BlockingQueue<QueuedPayment> lane) {
+        List<QueuedPayment> batch = new ArrayList<>(batchSize);
+        // Payments of a batch that kept failing, settled one at a time
+        Deque<QueuedPayment> alone = new ArrayDeque<>();
+        // Failures of the current batch that are not transient
+        int attempts = 0;
+        // Failures in a row of any kind, for the backoff
+        int failures = 0;
+        while (running) {
+            try {
+                if (batch.isEmpty()) {
+                    if (!alone.isEmpty()) {
+                        batch.add(alone.poll());
+                    } else {
+                        QueuedPayment first = lane.poll(100, TimeUnit.MILLISECONDS);
+                        if (first == null) {
+                            continue;
+                        }
+                        batch.add(first);
+                        lane.drainTo(batch, batchSize - 1);
+                    }
+                }
+                if (attempts < maxAttempts) {
+                    settle(batch);
+                } else {
+                    markFailed(batch.get(0), attempts);
+                }
+                batch.forEach(payment -> pending.remove(payment.ticketId()));
+                batch.clear();
+                attempts = 0;
+                failures = 0;
+                compactIfDrained();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                failures++;
+                if (isTransient(ex)) {
+                    log.warn("Database unavailable while settling {} payments, retry {}", batch.size(), failures, ex);
+                } else {
+                    attempts = Math.min(attempts + 1, maxAttempts);
+                    if (attempts < maxAttempts) {
+                        log.warn("Failed to settle {} payments, attempt {} of {}", batch.size(), attempts, maxAttempts, ex);
+                    } else if (batch.size() > 1) {
+                        log.error("Failed to settle {} payments {} times, settling them one at a time", batch.size(), attempts, ex);
+                        alone.addAll(batch);
+                        batch.clear();
+                        attempts = 0;
+                    } else {
+                        log.error("Failed to settle payment {} {} times, marking it failed", batch.get(0).ticketId(), attempts, ex);
+                    }
+                }
+                try {
+                    Thread.sleep(Math.min(maxBackoffMs, backoffMs << Math.min(failures - 1, 20)));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /*
+     * Settles a batch in one database transaction. Tickets that already have a PaymentTicket are skipped.
+     */
+    private void settle(List<QueuedPayment> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Set<String> settled = new HashSet<>(paymentTicketRepository.findSettledIds(batch.stream().map(QueuedPayment::ticketId).toList()));
+            Map<String, QueuedPayment> unsettled = new LinkedHashMap<>();
+            for (QueuedPayment payment : batch) {
+                if (!settled.contains(payment.ticketId())) {
+                    unsettled.putIfAbsent(payment.ticketId(), payment);
+                }
+            }
+            if (unsettled.isEmpty()) {
+                return;
+            }
+
+            List<QueuedPayment> payments = new ArrayList<>(unsettled.values());
+            List<BatchPaymentResult> results = transactionService.processBatch(payments.stream().map(SettlementEngine::toRequest).toList());
+            List<PaymentTicket> tickets = new ArrayList<>(payments.size());
+            for (int i = 0; i < payments.size(); i++) {
+                QueuedPayment payment = payments.get(i);
+                BatchPaymentResult result = results.get(i);
+                tickets.add(new PaymentTicket(payment.ticketId(), payment.senderAccountNumber(), payment.receiverAccountNumber(), payment.amount(),
+                        result.getTransactionId(), result.getStatus(), payment.acceptedAt()));
+            }
+            paymentTicketRepository.saveAll(tickets);
+        });
+    }
+
+    /*
+     * Errors that say nothing about the payments being settled: the database could not be reached, or a connection or a
+     * lock was not granted in time. The same payments settle once the database is back.
+     */
+    static boolean isTransient(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof RecoverableDataAccessException || cause instanceof CannotCreateTransactionException
+                    || cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Records a payment that kept failing on its own with a FAILED ticket, so it is neither settled later nor left pending.
+     */
+    private void markFailed(QueuedPayment payment, int attempts) {
+        transactionTemplate.executeWithoutResult(status -> paymentTicketRepository.save(PaymentTicket.failed(payment.ticketId(), payment.senderAccountNumber(),
+                payment.receiverAccountNumber(), payment.amount(), "Processing error, settlement failed " + attempts + " times", payment.acceptedAt())));
+    }
+
+    /*
+     * Queues again the payments of the queue file that were not settled before the last shutdown or crash.
+     */
+    private void recover() {
+        List<QueuedPayment> queued = queueFile.readAll();
+        Set<String> settled = new HashSet<>();
+        for (int from = 0; from < queued.size(); from += RECOVERY_CHUNK_SIZE) {
+            List<String> ticketIds = queued.subList(from, Math.min(from + RECOVERY_CHUNK_SIZE, queued.size())).stream().map(QueuedPayment::ticketId).toList();
+            settled.addAll(paymentTicketRepository.findSettledIds(ticketIds));
+        }
+        Map<String, QueuedPayment> unsettled = new LinkedHashMap<>();
+        for (QueuedPayment payment : queued) {
+            if (!settled.contains(payment.ticketId())) {
+                unsettled.putIfAbsent(payment.ticketId(), payment);
+            }
+        }
+        queueFile.rewrite(unsettled.values());
+        for (QueuedPayment payment : unsettled.values()) {
+            pending.put(payment.ticketId(), payment);
+            laneFor(payment.senderAccountNumber()).add(payment);
+        }
+        if (!unsettled.isEmpty()) {
+            log.info("Recovered {} pending payments from the settlement queue", unsettled.size());
+        }
+    }
+
+    /*
+     * Empties the queue file once every payment in it is settled, so it does not grow forever.
+     */
+    private void compactIfDrained() {
+        synchronized (appendLock) {
+            if (pending.isEmpty() && queueFile.size() > 0) {
+                queueFile.rewrite(List.of());
+            }
+        }
+    }
+
+    private static TransactionRequest toRequest(QueuedPayment payment) {
+        TransactionRequest request = new TransactionRequest();
+        request.setSenderAccountNumber(payment.senderAccountNumber());
+        request.setReceiverAccountNumber(payment.receiverAccountNumber());
+        request.setAmount(payment.amount());
+        return request;
+    }
+
+    private static QueuedPayment toPayment(PaymentTicket ticket) {
+        return new QueuedPayment(ticket.getId(), ticket.getSenderAccountNumber(), ticket.getReceiverAccountNumber(), ticket.getAmount(), ticket.getAcceptedAt());
+    }
+
+    private static PaymentTicketStatus toStatus(PaymentTicket ticket) {
+        TicketState state = ticket.isFailed() ? TicketState.FAILED : ticket.getTransactionId() != null ? TicketState.SETTLED : TicketState.REJECTED;
+        return new PaymentTicketStatus(ticket.getId(), state, ticket.getTransactionId(), ticket.getOutcome());
+    }
+}
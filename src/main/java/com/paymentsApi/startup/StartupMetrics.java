@@ -0,0 +1,105 @@
+package com.paymentsApi.startup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.support.ServletRequestHandledEvent;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/* StartupMetrics
+ * Measures how long the service takes from JVM start to be ready, to serve its first request and to reach a steady p99.
+ *
+ * Requests are grouped in windows of payments.startup.steady-window requests, actuator requests left out. Latency is
+ * steady once the p99 of a window is within 10% (or 1 ms) of the p99 of the previous window. Each time is measured
+ * once and stays NaN until it is known.
+ *
+ * Meters:
+ * payments.startup.ready         Time from JVM start until the application is ready
+ * payments.startup.first.request Time from JVM start until the first request is handled
+ * payments.startup.steady.p99    Time from JVM start until the p99 of request latency is steady
+ */
+@Component
+public class StartupMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupMetrics.class);
+
+    private final long[] window;
+    private volatile double readyMs = Double.NaN;
+    private volatile double firstRequestMs = Double.NaN;
+    private volatile double steadyP99Ms = Double.NaN;
+
+    // Only touched while holding the monitor of this object
+    private int windowed;
+    private long previousP99 = -1;
+
+    public StartupMetrics(MeterRegistry meterRegistry, @Value("${payments.startup.steady-window:200}") int steadyWindow) {
+        this.window = new long[Math.max(10, steadyWindow)];
+        TimeGauge.builder("payments.startup.ready", this, TimeUnit.MILLISECONDS, metrics -> metrics.readyMs)
+                .description("Time from JVM start until the application is ready").register(meterRegistry);
+        TimeGauge.builder("payments.startup.first.request", this, TimeUnit.MILLISECONDS, metrics -> metrics.firstRequestMs)
+                .description("Time from JVM start until the first request is handled").register(meterRegistry);
+        TimeGauge.builder("payments.startup.steady.p99", this, TimeUnit.MILLISECONDS, metrics -> metrics.steadyP99Ms)
+                .description("Time from JVM start until the p99 of request latency is steady").register(meterRegistry);
+    }
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        readyMs = uptime();
+        log.info("Ready {} ms after JVM start", (long) readyMs);
+    }
+
+    @EventListener
+    public void onRequest(ServletRequestHandledEvent event) {
+        if (!Double.isNaN(steadyP99Ms) || event.getRequestUrl().startsWith("/actuator")) {
+            return;
+        }
+        record(event.getProcessingTimeMillis());
+    }
+
+    synchronized void record(long latencyMs) {
+        if (!Double.isNaN(steadyP99Ms)) {
+            return;
+        }
+        if (Double.isNaN(firstRequestMs)) {
+            firstRequestMs = uptime();
+            log.info("First request handled {} ms after JVM start", (long) firstRequestMs);
+        }
+        window[windowed++] = latencyMs;
+        if (windowed < window.length) {
+            return;
+        }
+        windowed = 0;
+        long[] sorted = window.clone();
+        Arrays.sort(sorted);
+        long p99 = sorted[(int) Math.ceil(sorted.length * 0.99) - 1];
+        if (previousP99 >= 0 && Math.abs(p99 - previousP99) <= Math.max(1, previousP99 / 10)) {
+            steadyP99Ms = uptime();
+            log.info("Request p99 steady at {} ms, {} ms after JVM start", p99, (long) steadyP99Ms);
+        }
+        previousP99 = p99;
+    }
+
+    double getReadyMs() {
+        return readyMs;
+    }
+
+    double getFirstRequestMs() {
+        return firstRequestMs;
+    }
+
+    double getSteadyP99Ms() {
+        return steadyP99Ms;
+    }
+
+    private static double uptime() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
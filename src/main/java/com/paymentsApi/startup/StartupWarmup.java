@@ -0,0 +1,151 @@
+package com.paymentsApi.startup;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.enums.LockingMode;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.service.ClientService;
+import com.paymentsApi.service.TransactionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/* StartupWarmup
+ * Optional startup phase that brings the service close to steady-state latency before it reports ready.
+ *
+ * Spring Boot only flips the readiness probe to ACCEPTING_TRAFFIC once every ApplicationRunner has returned, so while
+ * this runner works the pod gets no traffic. It first loads up to payments.clients.cache-size Clients into the
+ * ClientCache, in pages read in parallel by payments.warmup.threads threads. It then runs payments.warmup.iterations
+ * synthetic transfers between the first two Clients, each in a database transaction that is rolled back, and as many
+ * statement and client reads, so the JIT has compiled those paths before the first real request.
+ *
+ * Transfers are not warmed up with the ledger engine or in the lanes locking mode, whose transfers leave the calling
+ * thread's transaction.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.warmup.enabled", havingValue = "true")
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+    private static final int PAGE_SIZE = 1000;
+
+    private final ClientRepository clientRepository;
+    private final ClientService clientService;
+    private final TransactionService transactionService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${payments.warmup.threads:4}")
+    int threads;
+
+    @Value("${payments.warmup.iterations:2000}")
+    int iterations;
+
+    @Value("${payments.clients.cache-size:10000}")
+    long cacheSize;
+
+    @Value("${payments.ledger.enabled:false}")
+    boolean ledgerEnabled;
+
+    @Value("${payments.locking.mode:pessimistic}")
+    LockingMode lockingMode;
+
+    public StartupWarmup(ClientRepository clientRepository, ClientService clientService, TransactionService transactionService,
+                         PlatformTransactionManager transactionManager) {
+        this.clientRepository = clientRepository;
+        this.clientService = clientService;
+        this.transactionService = transactionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long started = System.nanoTime();
+        int loaded = preloadClients();
+        long preloaded = System.nanoTime();
+
+        List<Long> accounts = clientRepository.findAll(PageRequest.of(0, 2, Sort.by("id"))).stream().map(Client::getAccountNumber).toList();
+        int transfers = 0;
+        int reads = 0;
+        if (accounts.size() == 2) {
+            transfers = warmTransfers(accounts.get(0), accounts.get(1));
+            reads = warmReads(accounts.get(0), accounts.get(1));
+        }
+        log.info("Warm-up preloaded {} clients in {} ms, ran {} transfers and {} reads in {} ms", loaded, TimeUnit.NANOSECONDS.toMillis(preloaded - started),
+                transfers, reads, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - preloaded));
+    }
+
+    /*
+     * Reads the Clients page by page in parallel and hands them to the ClientCache.
+     *
+     * @return Number of Clients handed to the cache
+     */
+    int preloadClients() throws InterruptedException, ExecutionException {
+        long total = Math.min(clientRepository.count(), cacheSize);
+        int pages = (int) ((total + PAGE_SIZE - 1) / PAGE_SIZE);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Integer>> futures = new ArrayList<>(pages);
+            for (int page = 0; page < pages; page++) {
+                int number = page;
+                futures.add(executor.submit(() -> clientService.preloadClients(number, PAGE_SIZE)));
+            }
+            int loaded = 0;
+            for (Future<Integer> future : futures) {
+                loaded += future.get();
+            }
+            return loaded;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /*
+     * Runs transfers of one cent back and forth, each rolled back with the database transaction it joins.
+     *
+     * @return Number of transfers run
+     */
+    int warmTransfers(Long first, Long second) {
+        if (ledgerEnabled || lockingMode == LockingMode.LANES) {
+            log.info("Warm-up skips transfers in this transfer mode");
+            return 0;
+        }
+        for (int i = 0; i < iterations; i++) {
+            Long sender = i % 2 == 0 ? first : second;
+            Long receiver = i % 2 == 0 ? second : first;
+            transactionTemplate.executeWithoutResult(status -> {
+                status.setRollbackOnly();
+                transactionService.processTransaction(sender, receiver, 1L);
+            });
+        }
+        return iterations;
+    }
+
+    /*
+     * Reads the first statement page and the Client of both accounts.
+     *
+     * @return Number of iterations run
+     */
+    int warmReads(Long first, Long second) {
+        for (int i = 0; i < iterations; i++) {
+            Long accountNumber = i % 2 == 0 ? first : second;
+            transactionService.getStatement(accountNumber, null, 20);
+            clientService.getClientByAccountNumber(accountNumber);
+        }
+        return iterations;
+    }
+}
@@ -0,0 +1,8 @@
+-- Credits owed by transfers of the lanes locking mode between accounts of two lanes. The lane of the sender inserts the
+-- row in the database transaction of the debit and the lane of the receiver deletes it in the one of the credit, so a
+-- credit is applied exactly once, also when it is retried after a failure or a restart.
+CREATE TABLE pending_credit (
+    transaction_id BIGINT NOT NULL,
+    CONSTRAINT pk_pending_credit PRIMARY KEY (transaction_id),
+    CONSTRAINT fk_pending_credit_transaction FOREIGN KEY (transaction_id) REFERENCES transaction (id) ON DELETE CASCADE
+);
@@ -0,0 +1,26 @@
+-- Baseline schema, matching the tables previously generated by Hibernate (ddl-auto=update)
+
+-- Id sequences, the increment matches the allocationSize of the entities
+CREATE SEQUENCE client_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE transaction_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE client (
+    id              BIGINT       NOT NULL,
+    name            VARCHAR(255) NOT NULL,
+    account_balance BIGINT       NOT NULL,
+    account_number  BIGINT       NOT NULL,
+    version         BIGINT,
+    CONSTRAINT pk_client PRIMARY KEY (id),
+    CONSTRAINT uk_client_account_number UNIQUE (account_number)
+);
+
+CREATE TABLE transaction (
+    id               BIGINT       NOT NULL,
+    sender_id        BIGINT       NOT NULL,
+    receiver_id      BIGINT       NOT NULL,
+    transaction_time TIMESTAMP(6) NOT NULL,
+    status           VARCHAR(255),
+    CONSTRAINT pk_transaction PRIMARY KEY (id),
+    CONSTRAINT fk_transaction_sender FOREIGN KEY (sender_id) REFERENCES client (id),
+    CONSTRAINT fk_transaction_receiver FOREIGN KEY (receiver_id) REFERENCES client (id)
+);
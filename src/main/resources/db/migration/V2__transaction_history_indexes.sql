@@ -0,0 +1,5 @@
+-- Composite indexes for the per-account, newest-first history lookups (statement pages and transaction lists).
+-- Each index serves one side of a "sent or received by" lookup already in (transaction_time, id) order,
+-- so a page is read by seeking into the index instead of scanning and sorting the account history.
+CREATE INDEX idx_transaction_sender_time ON transaction (sender_id, transaction_time DESC, id DESC);
+CREATE INDEX idx_transaction_receiver_time ON transaction (receiver_id, transaction_time DESC, id DESC);
@@ -0,0 +1,14 @@
+-- Stores the transfer amount in cents and replaces the status message with compact codes
+-- (TransactionStatus and TransactionReason codes, see TransactionStatusConverter and TransactionReasonConverter).
+
+-- Amounts were not recorded before this migration, existing rows get 0
+ALTER TABLE transaction ADD COLUMN amount BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE transaction ALTER COLUMN amount DROP DEFAULT;
+
+ALTER TABLE transaction ADD COLUMN status_code SMALLINT;
+ALTER TABLE transaction ADD COLUMN reason SMALLINT;
+UPDATE transaction SET status_code = CASE WHEN status LIKE 'SUCCESS%' THEN 1 ELSE 2 END,
+    reason = CASE WHEN status LIKE 'SUCCESS%' THEN NULL WHEN status LIKE 'FAILED: Sender does not have sufficient funds%' THEN 1 ELSE 2 END;
+ALTER TABLE transaction ALTER COLUMN status_code SET NOT NULL;
+ALTER TABLE transaction DROP COLUMN status;
+ALTER TABLE transaction ALTER COLUMN status_code RENAME TO status;
@@ -0,0 +1,12 @@
+-- Idempotency keys of processed payments, written in the same database transaction as the Transaction they produced.
+-- The primary key makes a concurrent duplicate fail at commit instead of posting twice.
+CREATE TABLE idempotency_key (
+    idempotency_key         VARCHAR(64)  NOT NULL,
+    transaction_id          BIGINT       NOT NULL,
+    sender_account_number   BIGINT       NOT NULL,
+    receiver_account_number BIGINT       NOT NULL,
+    amount                  BIGINT       NOT NULL,
+    created_at              TIMESTAMP(6) NOT NULL,
+    CONSTRAINT pk_idempotency_key PRIMARY KEY (idempotency_key),
+    CONSTRAINT fk_idempotency_key_transaction FOREIGN KEY (transaction_id) REFERENCES transaction (id)
+);
@@ -0,0 +1,2 @@
+-- Name prefix filter and name sort order of the client list
+CREATE INDEX idx_client_name ON client (name, id);
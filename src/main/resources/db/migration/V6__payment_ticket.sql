@@ -0,0 +1,14 @@
+-- Payments settled by the asynchronous settlement workers, written in the same database transaction as the transfer.
+-- A ticket found here is never settled again, even when it is still in the local queue file after a crash.
+CREATE TABLE payment_ticket (
+    ticket_id               VARCHAR(64)  NOT NULL,
+    sender_account_number   BIGINT       NOT NULL,
+    receiver_account_number BIGINT       NOT NULL,
+    amount                  BIGINT       NOT NULL,
+    transaction_id          BIGINT,
+    outcome                 VARCHAR(255) NOT NULL,
+    accepted_at             TIMESTAMP(6) NOT NULL,
+    settled_at              TIMESTAMP(6) NOT NULL,
+    CONSTRAINT pk_payment_ticket PRIMARY KEY (ticket_id),
+    CONSTRAINT fk_payment_ticket_transaction FOREIGN KEY (transaction_id) REFERENCES transaction (id)
+);
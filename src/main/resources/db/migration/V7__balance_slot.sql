@@ -0,0 +1,9 @@
+-- Credits to accounts with a split balance, spread over several rows so concurrent credits do not queue on one row lock.
+-- The balance of such an account is client.account_balance plus its slots; reads add the slots, only debits fold them into it.
+CREATE TABLE balance_slot (
+    client_id BIGINT   NOT NULL,
+    slot      SMALLINT NOT NULL,
+    amount    BIGINT   NOT NULL,
+    CONSTRAINT pk_balance_slot PRIMARY KEY (client_id, slot),
+    CONSTRAINT fk_balance_slot_client FOREIGN KEY (client_id) REFERENCES client (id) ON DELETE CASCADE
+);
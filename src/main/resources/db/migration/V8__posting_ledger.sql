@@ -0,0 +1,33 @@
+-- Double-entry postings: a successful Transaction writes a debit of its sender and a credit of its receiver, in the same
+-- database transaction as the balance change. Postings without a Transaction adjust a balance on their own, such as the
+-- opening balance of a new Client. Rows are only ever inserted; client.account_balance is their running total.
+CREATE SEQUENCE posting_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE posting (
+    id             BIGINT       NOT NULL,
+    transaction_id BIGINT,
+    client_id      BIGINT       NOT NULL,
+    amount         BIGINT       NOT NULL,
+    posted_at      TIMESTAMP(6) NOT NULL,
+    CONSTRAINT pk_posting PRIMARY KEY (id),
+    CONSTRAINT fk_posting_transaction FOREIGN KEY (transaction_id) REFERENCES transaction (id) ON DELETE CASCADE,
+    CONSTRAINT fk_posting_client FOREIGN KEY (client_id) REFERENCES client (id) ON DELETE CASCADE
+);
+-- Postings of one account after a checkpoint, and postings of all accounts since the last checkpoint run
+CREATE INDEX idx_posting_client_time ON posting (client_id, posted_at);
+CREATE INDEX idx_posting_time ON posting (posted_at);
+
+-- Balance of a Client as of a time, written periodically from the previous checkpoint plus the postings since it
+CREATE TABLE balance_checkpoint (
+    client_id BIGINT       NOT NULL,
+    as_of     TIMESTAMP(6) NOT NULL,
+    balance   BIGINT       NOT NULL,
+    CONSTRAINT pk_balance_checkpoint PRIMARY KEY (client_id, as_of),
+    CONSTRAINT fk_balance_checkpoint_client FOREIGN KEY (client_id) REFERENCES client (id) ON DELETE CASCADE
+);
+
+-- Existing balances, including credits waiting in balance slots, become opening postings
+INSERT INTO posting (id, transaction_id, client_id, amount, posted_at)
+SELECT NEXT VALUE FOR posting_seq, NULL, c.id, c.account_balance + COALESCE((SELECT SUM(s.amount) FROM balance_slot s WHERE s.client_id = c.id), 0), LOCALTIMESTAMP
+FROM client c
+WHERE c.account_balance + COALESCE((SELECT SUM(s.amount) FROM balance_slot s WHERE s.client_id = c.id), 0) <> 0;
@@ -0,0 +1,3 @@
+-- Payments the settlement workers gave up on after payments.settlement.max-attempts failed attempts. They were never
+-- applied, and a failed ticket is not settled again.
+ALTER TABLE payment_ticket ADD COLUMN failed BOOLEAN DEFAULT FALSE NOT NULL;
@@ -2,8 +2,14 @@ package com.paymentsApi.controller;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymentsApi.dto.ClientImportResult;
 import com.paymentsApi.entity.Client;
+import com.paymentsApi.entity.Posting;
 import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.PostingRepository;
+import com.paymentsApi.repository.TransactionRepository;
+import com.paymentsApi.service.ClientCache;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,9 +21,12 @@ import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /* Test classes have package scope as default, so "public" access modifier is not needed. */
@@ -30,6 +39,15 @@ public class ClientControllerV1IntegrationTest {
     @Autowired
     private ClientRepository clientRepository;
 
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private PostingRepository postingRepository;
+
+    @Autowired
+    private ClientCache clientCache;
+
     private Client sender;
     private Client receiver;
     private ObjectMapper objectMapper;
@@ -40,14 +58,14 @@ public class ClientControllerV1IntegrationTest {
         // Client client sender
         sender = new Client();
         sender.setName("Felipe Matos");
-        sender.setAccountBalance(1000.00);
+        sender.setAccountBalance(100000L);
         sender.setAccountNumber(123456L);
         clientRepository.save(sender);
 
         // Client client receiver
         receiver = new Client();
         receiver.setName("Gisele Almeida");
-        receiver.setAccountBalance(3000.00);
+        receiver.setAccountBalance(300000L);
         receiver.setAccountNumber(654321L);
         clientRepository.save(receiver);
 
@@ -55,6 +73,17 @@ public class ClientControllerV1IntegrationTest {
         objectMapper = new ObjectMapper();
     }
 
+    /*
+     * Clients read by a test stay in the ClientCache after its transaction is rolled back, so the cache is cleared too.
+     * Rows committed by the non-transactional test are removed here.
+     */
+    @AfterEach
+    public void tearDown() {
+        clientCache.invalidateAll();
+        transactionRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
     @Test
     @Transactional
     void testGetAllClients() throws Exception {
@@ -64,7 +93,8 @@ public class ClientControllerV1IntegrationTest {
         };
 
         // Act
-        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/v1/clients").contentType(MediaType.APPLICATION_JSON)).andExpect(status().isOk()).andReturn();
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/v1/clients").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk()).andExpect(header().string("X-Total-Count", "2")).andReturn();
         List<Client> actualClients = objectMapper.readValue(result.getResponse().getContentAsString(), jacksonTypeReference);
 
         // Assert
@@ -72,6 +102,36 @@ public class ClientControllerV1IntegrationTest {
         assertEquals(expectedClients.get(1).getId(), actualClients.get(1).getId());
     }
 
+    @Test
+    @Transactional
+    void givenGetClients_whenFilteredAndPaged_thenMatchingPageIsReturned() throws Exception {
+        // Set up
+        Client client = new Client();
+        client.setName("Felipe Costa");
+        client.setAccountBalance(500000L);
+        client.setAccountNumber(111111L);
+        clientRepository.save(client);
+        TypeReference<List<Client>> jacksonTypeReference = new TypeReference<List<Client>>() {
+        };
+
+        // Act
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/v1/clients").param("name", "Felipe").param("minBalance", "500.00")
+                        .param("sort", "accountBalance").param("direction", "desc").param("size", "1"))
+                .andExpect(status().isOk()).andExpect(header().string("X-Total-Count", "2")).andReturn();
+        List<Client> actualClients = objectMapper.readValue(result.getResponse().getContentAsString(), jacksonTypeReference);
+
+        // Assert
+        assertEquals(1, actualClients.size());
+        assertEquals(client.getId(), actualClients.get(0).getId());
+    }
+
+    @Test
+    @Transactional
+    void givenGetClients_whenSortIsUnknown_then400isBadRequest() throws Exception {
+        // Act and Assert
+        mockMvc.perform(MockMvcRequestBuilders.get("/v1/clients").param("sort", "version")).andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     void givenGetClientByAccountNumber_whenAccountNumberIsValid_then200OK() throws Exception {
@@ -84,6 +144,48 @@ public class ClientControllerV1IntegrationTest {
         assertEquals(sender.getId(), actualClient.getId());
     }
 
+    /*
+     * The Client is cached by the first read and evicted when a payment commits, so the next read has the new balance.
+     * Not transactional, as the eviction runs after the payment commits.
+     */
+    @Test
+    void givenGetClientByAccountNumber_whenPaymentIsCommitted_thenBalanceIsRefreshed() throws Exception {
+        // Set up
+        String requestBody = "{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 250.00}";
+        mockMvc.perform(MockMvcRequestBuilders.get("/v1/clients/123456")).andExpect(status().isOk());
+
+        // Act
+        mockMvc.perform(MockMvcRequestBuilders.post("/v1/transactions/pay").contentType(MediaType.APPLICATION_JSON).content(requestBody)).andExpect(status().isOk());
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/v1/clients/123456")).andExpect(status().isOk()).andReturn();
+        Client actualClient = objectMapper.readValue(result.getResponse().getContentAsString(), Client.class);
+
+        // Assert
+        assertEquals(75000L, actualClient.getAccountBalance());
+    }
+
+    /*
+     * Clients saved by the set up have no opening posting, so their balance at a time is the sum of these postings.
+     */
+    @Test
+    @Transactional
+    void givenGetBalanceAt_whenAccountHasPostings_thenBalanceAtThatTimeIsReturned() throws Exception {
+        // Set up
+        LocalDateTime opened = LocalDateTime.now();
+        postingRepository.saveAndFlush(Posting.adjustment(sender, 100000L, opened));
+
+        // Act & Assert
+        mockMvc.perform(MockMvcRequestBuilders.get("/v1/clients/123456/balance").param("at", opened.minusDays(1).toString()))
+                .andExpect(status().isOk()).andExpect(jsonPath("$.accountNumber").value(123456)).andExpect(jsonPath("$.balance").value(0.0));
+        mockMvc.perform(MockMvcRequestBuilders.get("/v1/clients/123456/balance").param("at", opened.plusDays(1).toString()))
+                .andExpect(status().isOk()).andExpect(jsonPath("$.balance").value(1000.0));
+    }
+
+    @Test
+    @Transactional
+    void givenGetBalanceAt_whenAtIsMissing_then400isBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/v1/clients/123456/balance")).andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     void givenGetClientByAccountNumber_whenAccountNumberIsNotValid_then400isBadRequest() throws Exception {
@@ -100,7 +202,7 @@ public class ClientControllerV1IntegrationTest {
         // Set up
         Client newClient = new Client();
         newClient.setName("Alicia Jones");
-        newClient.setAccountBalance(1500.00);
+        newClient.setAccountBalance(150000L);
         newClient.setAccountNumber(1000L);
 
         // Act
@@ -112,13 +214,34 @@ public class ClientControllerV1IntegrationTest {
         assertEquals(newClient.getAccountNumber(), actualClient.getAccountNumber());
     }
 
+    @Test
+    @Transactional
+    void givenImportClients_whenBodyIsNdjson_thenNewClientsAreCreatedAndConflictsReported() throws Exception {
+        // Set up
+        String body = "{\"name\": \"Alicia Jones\", \"accountNumber\": 1000, \"accountBalance\": 1500.00}\n"
+                + "{\"name\": \"Alicia Jones\", \"accountNumber\": 654321, \"accountBalance\": 1500.00}\n"
+                + "{\"name\": \"Bruno Lima\", \"accountNumber\": 1001, \"accountBalance\": 20.00}\n";
+
+        // Act
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/v1/clients/bulk").content(body).contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk()).andReturn();
+        ClientImportResult importResult = objectMapper.readValue(result.getResponse().getContentAsString(), ClientImportResult.class);
+
+        // Assert
+        assertEquals(2, importResult.getCreated());
+        assertEquals(1, importResult.getRejected().size());
+        assertEquals(654321L, importResult.getRejected().get(0).getAccountNumber());
+        assertEquals(150000L, clientRepository.readByAccountNumber(1000L).orElseThrow().getAccountBalance());
+        assertEquals(300000L, clientRepository.readByAccountNumber(654321L).orElseThrow().getAccountBalance());
+    }
+
     @Test
     @Transactional
     void givenCreateClient_whenCreateIsNotSuccess_then409isConflict() throws Exception {
         // Set up
         Client newClient = new Client();
         newClient.setName("Alicia Jones");
-        newClient.setAccountBalance(1500.00);
+        newClient.setAccountBalance(150000L);
         newClient.setAccountNumber(654321L); // Same accountNumber from Client receiver
 
         // Act
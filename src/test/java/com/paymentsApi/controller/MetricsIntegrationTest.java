@@ -0,0 +1,88 @@
+package com.paymentsApi.controller;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.TransactionRepository;
+import com.paymentsApi.service.ClientCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed.
+ * Metrics export is off in Spring Boot tests unless observability is auto-configured. Outcomes are counted when the
+ * transfer commits, so these tests are not transactional and clean up after themselves.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:metrics-test")
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+@ActiveProfiles("metricsTest")
+class MetricsIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ClientCache clientCache;
+
+    @BeforeEach
+    public void setUp() {
+        // Client client sender
+        Client sender = new Client();
+        sender.setName("Felipe Matos");
+        sender.setAccountBalance(100000L);
+        sender.setAccountNumber(123456L);
+        clientRepository.save(sender);
+
+        // Client client receiver
+        Client receiver = new Client();
+        receiver.setName("Gisele Almeida");
+        receiver.setAccountBalance(300000L);
+        receiver.setAccountNumber(654321L);
+        clientRepository.save(receiver);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        clientCache.invalidateAll();
+        transactionRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    /*
+     * The phases of a transfer, its outcome, the lock-wait gauges and the connection pool are all in the scrape.
+     */
+    @Test
+    void givenProcessPayment_whenPrometheusIsScraped_thenTransferMetricsArePublished() throws Exception {
+        // Set up
+        String requestBody = "{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 300.00}";
+        mockMvc.perform(post("/v1/transactions/pay").contentType(MediaType.APPLICATION_JSON).content(requestBody)).andExpect(status().isOk());
+
+        // Act
+        String scrape = mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+        // Assert
+        assertTrue(scrape.contains("payments_transfer_phase_seconds_bucket{phase=\"lock\""));
+        assertTrue(scrape.contains("payments_transfer_phase_seconds_count{phase=\"commit\"} 1"));
+        assertTrue(scrape.contains("payments_transfer_outcomes_total{outcome=\"success\"} 1.0"));
+        assertTrue(scrape.contains("payments_transfer_lock_waiting 0.0"));
+        assertTrue(scrape.contains("payments_transfer_lock_held 0.0"));
+        assertTrue(scrape.contains("hikaricp_connections_pending{"));
+    }
+}
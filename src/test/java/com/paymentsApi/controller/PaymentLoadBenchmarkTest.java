@@ -0,0 +1,141 @@
+package com.paymentsApi.controller;
+
+import com.paymentsApi.PaymentsApiApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * Throughput and p99 latency of /pay under row lock contention, with request threads from the Tomcat platform thread
+ * pool and with virtual threads.
+ *
+ * As in ProcessPaymentConcurrentTest, the transactionControllerTest profile makes every transfer hold its row locks,
+ * here for TRANSFER_DELAY_MS. Half of the requests are transfers between a few hot accounts, the other half read a
+ * cached Client and never need a row lock; with the platform pool those reads wait for threads parked by transfers.
+ * Transfers use the ordered locking mode, so hot accounts never deadlock.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=PaymentLoadBenchmarkTest
+ */
+@Tag("benchmark")
+class PaymentLoadBenchmarkTest {
+
+    private static final int CLIENTS = 1000;
+    private static final int HOT_ACCOUNTS = 16;
+    private static final int USERS = 400;
+    private static final int REQUESTS_PER_USER = 10;
+    private static final int TRANSFER_DELAY_MS = 10;
+
+    @Test
+    void benchmarkPlatformAndVirtualThreads() throws Exception {
+        // Act
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        // Assert
+        System.out.printf("%-16s %12s %14s %14s %14s %14s %8s%n", "Request threads", "Requests/s", "Pay p50 ms", "Pay p99 ms", "Read p50 ms", "Read p99 ms", "Errors");
+        print("platform", platform);
+        print("virtual", virtual);
+        assertEquals(0, platform.errors());
+        assertEquals(0, virtual.errors());
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(PaymentsApiApplication.class)
+                .profiles("transactionControllerTest")
+                // Passed as arguments, as default properties would lose to application.properties
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        // Waits on hot rows must not hit the default lock timeout of H2
+                        "--spring.datasource.url=jdbc:h2:mem:load-" + mode + ";LOCK_TIMEOUT=30000",
+                        "--payments.locking.mode=ordered",
+                        "--payments.test.transfer-delay-ms=" + TRANSFER_DELAY_MS)) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            jdbcTemplate.update("INSERT INTO client (id, name, account_balance, account_number, version) "
+                    + "SELECT X, CONCAT('Client ', X), 100000000, X, 0 FROM SYSTEM_RANGE(1, ?)", CLIENTS);
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+            load(baseUrl, USERS / 4); // warm up
+            return load(baseUrl, USERS);
+        }
+    }
+
+    /*
+     * Every user sends its requests one after the other, alternating transfers between hot accounts and Client reads.
+     */
+    private Result load(String baseUrl, int users) throws Exception {
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        List<Long> payLatencies = new ArrayList<>();
+        List<Long> readLatencies = new ArrayList<>();
+        AtomicInteger errors = new AtomicInteger();
+
+        long start = System.nanoTime();
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<long[][]>> futures = new ArrayList<>();
+            for (int user = 0; user < users; user++) {
+                Random random = new Random(user);
+                futures.add(executorService.submit(() -> {
+                    long[][] latencies = new long[2][REQUESTS_PER_USER / 2];
+                    for (int i = 0; i < REQUESTS_PER_USER; i++) {
+                        HttpRequest request;
+                        if (i % 2 == 0) {
+                            int sender = random.nextInt(HOT_ACCOUNTS) + 1;
+                            int receiver = (sender + random.nextInt(HOT_ACCOUNTS - 1)) % HOT_ACCOUNTS + 1;
+                            String body = "{\"senderAccountNumber\": " + sender + ", \"receiverAccountNumber\": " + receiver + ", \"amount\": 0.01}";
+                            request = HttpRequest.newBuilder(URI.create(baseUrl + "/v1/transactions/pay")).header("Content-Type", "application/json")
+                                    .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+                        } else {
+                            int accountNumber = HOT_ACCOUNTS + random.nextInt(CLIENTS - HOT_ACCOUNTS) + 1;
+                            request = HttpRequest.newBuilder(URI.create(baseUrl + "/v1/clients/" + accountNumber)).GET().build();
+                        }
+                        long requestStart = System.nanoTime();
+                        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                        latencies[i % 2][i / 2] = System.nanoTime() - requestStart;
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    return latencies;
+                }));
+            }
+            for (Future<long[][]> future : futures) {
+                long[][] latencies = future.get();
+                Arrays.stream(latencies[0]).forEach(payLatencies::add);
+                Arrays.stream(latencies[1]).forEach(readLatencies::add);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        return new Result(users * REQUESTS_PER_USER / seconds, payLatencies, readLatencies, errors.get());
+    }
+
+    private static void print(String mode, Result result) {
+        System.out.printf("%-16s %12.0f %14.1f %14.1f %14.1f %14.1f %8d%n", mode, result.throughput(),
+                percentile(result.payLatencies(), 0.50), percentile(result.payLatencies(), 0.99),
+                percentile(result.readLatencies(), 0.50), percentile(result.readLatencies(), 0.99), result.errors());
+    }
+
+    private static double percentile(List<Long> latencies, double percentile) {
+        List<Long> sorted = latencies.stream().sorted().toList();
+        return sorted.get((int) Math.ceil(percentile * sorted.size()) - 1) / 1_000_000.0;
+    }
+
+    private record Result(double throughput, List<Long> payLatencies, List<Long> readLatencies, int errors) {
+    }
+}
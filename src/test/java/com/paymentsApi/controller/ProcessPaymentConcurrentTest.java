@@ -7,6 +7,8 @@ import com.paymentsApi.entity.Client;
 import com.paymentsApi.entity.Transaction;
 import com.paymentsApi.enums.TransactionStatus;
 import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,6 +37,9 @@ public class ProcessPaymentConcurrentTest {
     @Autowired
     private ClientRepository clientRepository;
 
+    @Autowired
+    private TransactionRepository transactionRepository;
+
     private Client sender;
     private Client receiver;
 
@@ -43,18 +48,25 @@ public class ProcessPaymentConcurrentTest {
         // Client client sender
         sender = new Client();
         sender.setName("Felipe Matos");
-        sender.setAccountBalance(1000.00);
+        sender.setAccountBalance(100000L);
         sender.setAccountNumber(123456L);
         clientRepository.save(sender);
 
         // Client client receiver
         receiver = new Client();
         receiver.setName("Gisele Almeida");
-        receiver.setAccountBalance(3000.00);
+        receiver.setAccountBalance(300000L);
         receiver.setAccountNumber(654321L);
         clientRepository.save(receiver);
     }
 
+    /* Requests run in their own transactions, so the committed rows are removed for the other integration tests. */
+    @AfterEach
+    public void tearDown() {
+        transactionRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
     @Test
     public void givenConcurrentProcessPayment_whenDuplicateRequest_then400IsBadRequest() throws Exception {
         // Set up
@@ -66,7 +78,7 @@ public class ProcessPaymentConcurrentTest {
         TransactionRequest request = new TransactionRequest();
         request.setSenderAccountNumber(sender.getAccountNumber());
         request.setReceiverAccountNumber(receiver.getAccountNumber());
-        request.setAmount(1000.00);
+        request.setAmount(100000L);
 
         String requestBody = objectMapper.writeValueAsString(request);
 
@@ -85,9 +97,9 @@ public class ProcessPaymentConcurrentTest {
         // Assert
         // Result 1
         assertEquals(200, result1.getResponse().getStatus());
-        assertEquals(0.0, result1Transaction.getSender().getAccountBalance());
-        assertEquals(4000.0, result1Transaction.getReceiver().getAccountBalance());
-        assertEquals(TransactionStatus.SUCCESS.getMessage(), result1Transaction.getStatus());
+        assertEquals(0L, result1Transaction.getSender().getAccountBalance());
+        assertEquals(400000L, result1Transaction.getReceiver().getAccountBalance());
+        assertEquals(TransactionStatus.SUCCESS, result1Transaction.getStatus());
 
         // Result 2
         assertEquals(500, result2.getResponse().getStatus());
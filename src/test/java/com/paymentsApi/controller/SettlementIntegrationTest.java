@@ -0,0 +1,145 @@
+package com.paymentsApi.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymentsApi.dto.PaymentTicketStatus;
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.enums.TicketState;
+import com.paymentsApi.enums.TransactionStatus;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.PaymentTicketRepository;
+import com.paymentsApi.repository.TransactionRepository;
+import com.paymentsApi.service.ClientCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed.
+ * Settlement workers commit on their own threads, so these tests are not transactional and clean up after themselves.
+ */
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:settlement-test", "payments.settlement.enabled=true",
+        "payments.settlement.queue-file=target/settlement-test/settlement-queue.log"})
+@AutoConfigureMockMvc
+@ActiveProfiles("settlementTest")
+class SettlementIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private PaymentTicketRepository paymentTicketRepository;
+
+    @Autowired
+    private ClientCache clientCache;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    public void setUp() {
+        // Client client sender
+        Client sender = new Client();
+        sender.setName("Felipe Matos");
+        sender.setAccountBalance(100000L);
+        sender.setAccountNumber(123456L);
+        clientRepository.save(sender);
+
+        // Client client receiver
+        Client receiver = new Client();
+        receiver.setName("Gisele Almeida");
+        receiver.setAccountBalance(300000L);
+        receiver.setAccountNumber(654321L);
+        clientRepository.save(receiver);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        clientCache.invalidateAll();
+        paymentTicketRepository.deleteAll();
+        transactionRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void givenProcessPayment_whenSettlementIsEnabled_thenPaymentIsAcceptedAndSettledLater() throws Exception {
+        // Set up
+        String requestBody = "{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 250.00}";
+
+        // Act
+        String response = mockMvc.perform(post("/v1/transactions/pay").contentType(MediaType.APPLICATION_JSON).content(requestBody))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andReturn().getResponse().getContentAsString();
+        PaymentTicketStatus accepted = objectMapper.readValue(response, PaymentTicketStatus.class);
+        PaymentTicketStatus settled = awaitSettled(accepted.getTicketId());
+
+        // Assert
+        assertEquals(TicketState.PENDING, accepted.getState());
+        assertEquals(TicketState.SETTLED, settled.getState());
+        assertEquals(TransactionStatus.SUCCESS.getMessage(), settled.getStatus());
+        assertEquals(75000L, clientRepository.readByAccountNumber(123456L).orElseThrow().getAccountBalance());
+        assertEquals(325000L, clientRepository.readByAccountNumber(654321L).orElseThrow().getAccountBalance());
+    }
+
+    @Test
+    void givenProcessPayment_whenIdempotencyKeyIsReplayed_thenPaymentIsSettledOnce() throws Exception {
+        // Set up
+        String requestBody = "{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 100.00}";
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/v1/transactions/pay").header("Idempotency-Key", "settle-once").contentType(MediaType.APPLICATION_JSON).content(requestBody))
+                    .andExpect(status().isAccepted());
+        }
+        PaymentTicketStatus settled = awaitSettled("settle-once");
+        mockMvc.perform(post("/v1/transactions/pay").header("Idempotency-Key", "settle-once").contentType(MediaType.APPLICATION_JSON).content(requestBody))
+                .andExpect(status().isAccepted());
+
+        // Assert
+        assertEquals(TicketState.SETTLED, settled.getState());
+        assertEquals(1, transactionRepository.count());
+        assertEquals(90000L, clientRepository.readByAccountNumber(123456L).orElseThrow().getAccountBalance());
+    }
+
+    @Test
+    void givenProcessPayment_whenAccountNumberIsNotValid_then400IsBadRequest() throws Exception {
+        // Set up
+        String requestBody = "{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 1, \"amount\": 100.00}";
+
+        // Act and Assert
+        mockMvc.perform(post("/v1/transactions/pay").contentType(MediaType.APPLICATION_JSON).content(requestBody)).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void givenTicketStatus_whenTicketIsUnknown_then404IsNotFound() throws Exception {
+        // Act and Assert
+        mockMvc.perform(get("/v1/transactions/tickets/unknown")).andExpect(status().isNotFound());
+    }
+
+    private PaymentTicketStatus awaitSettled(String ticketId) throws Exception {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            String response = mockMvc.perform(get("/v1/transactions/tickets/" + ticketId)).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+            PaymentTicketStatus ticket = objectMapper.readValue(response, PaymentTicketStatus.class);
+            if (ticket.getState() != TicketState.PENDING) {
+                return ticket;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Ticket " + ticketId + " was not settled");
+    }
+}
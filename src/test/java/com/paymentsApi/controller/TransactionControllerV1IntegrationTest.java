@@ -3,12 +3,19 @@ package com.paymentsApi.controller;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.paymentsApi.dto.BatchPaymentResult;
+import com.paymentsApi.dto.StatementPage;
 import com.paymentsApi.dto.TransactionRequest;
+import com.paymentsApi.dto.TransactionSummary;
 import com.paymentsApi.entity.Client;
 import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.enums.TransactionReason;
 import com.paymentsApi.enums.TransactionStatus;
 import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.IdempotencyKeyRepository;
 import com.paymentsApi.repository.TransactionRepository;
+import com.paymentsApi.service.IdempotencyCache;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,12 +27,20 @@ import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /* Test classes have package scope as default, so "public" access modifier is not needed.
@@ -42,6 +57,12 @@ class TransactionControllerV1IntegrationTest {
     @Autowired
     private TransactionRepository transactionRepository;
 
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
     private Client sender;
     private Client receiver;
     private Transaction transaction1;
@@ -54,31 +75,36 @@ class TransactionControllerV1IntegrationTest {
         // Client client sender
         sender = new Client();
         sender.setName("Felipe Matos");
-        sender.setAccountBalance(1000.00);
+        sender.setAccountBalance(100000L);
         sender.setAccountNumber(123456L);
         clientRepository.save(sender);
 
         // Client client receiver
         receiver = new Client();
         receiver.setName("Gisele Almeida");
-        receiver.setAccountBalance(3000.00);
+        receiver.setAccountBalance(300000L);
         receiver.setAccountNumber(654321L);
         clientRepository.save(receiver);
 
+        // Transaction times are truncated to the database precision, as these entities stay in the persistence context
+        // of the test and are returned as they are by the statement queries
         // Transaction transaction1
         transaction1 = new Transaction();
         transaction1.setSender(sender);
         transaction1.setReceiver(receiver);
-        transaction1.setTransactionTime(LocalDateTime.now());
-        transaction1.setStatus(TransactionStatus.SUCCESS.getMessage());
+        transaction1.setTransactionTime(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        transaction1.setAmount(50000L);
+        transaction1.setStatus(TransactionStatus.SUCCESS);
         transactionRepository.save(transaction1);
 
         // Transaction transaction2
         transaction2 = new Transaction();
         transaction2.setSender(receiver);
         transaction2.setReceiver(sender);
-        transaction2.setTransactionTime(LocalDateTime.now());
-        transaction2.setStatus(TransactionStatus.FAIL.getMessage());
+        transaction2.setTransactionTime(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        transaction2.setAmount(500000L);
+        transaction2.setStatus(TransactionStatus.FAIL);
+        transaction2.setReason(TransactionReason.INSUFFICIENT_FUNDS);
         transactionRepository.save(transaction2);
 
         // ObjectMapper object
@@ -86,21 +112,37 @@ class TransactionControllerV1IntegrationTest {
         objectMapper.registerModule(new JavaTimeModule()); // this dependency is needed to handle LocalDate
     }
 
+    /*
+     * The export test is not transactional, as the response is written by another thread that only sees committed rows.
+     * Rows committed by it are removed here; in transactional tests this runs inside the rolled back transaction.
+     */
+    @AfterEach
+    public void tearDown() {
+        idempotencyCache.invalidateAll();
+        idempotencyKeyRepository.deleteAll();
+        transactionRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
     @Test
     @Transactional
     void givenGetTransactionsByAccountNumber_whenAccountNumberIsRetrieved_then202IsSuccess() throws Exception {
         // Set up
         List<Transaction> expectedTransactions = Arrays.asList(transaction2, transaction1);
-        TypeReference<List<Transaction>> jacksonTypeReference = new TypeReference<List<Transaction>>() {
+        TypeReference<List<TransactionSummary>> jacksonTypeReference = new TypeReference<List<TransactionSummary>>() {
         };
 
         // Act
         MvcResult result = mockMvc.perform(get("/v1/transactions/123456")).andExpect(status().isOk()).andReturn();
-        List<Transaction> actualTransactions = objectMapper.readValue(result.getResponse().getContentAsString(), jacksonTypeReference);
+        List<TransactionSummary> actualTransactions = objectMapper.readValue(result.getResponse().getContentAsString(), jacksonTypeReference);
 
         // Assert
         assertEquals(expectedTransactions.get(0).getId(), actualTransactions.get(0).getId());
         assertEquals(expectedTransactions.get(1).getId(), actualTransactions.get(1).getId());
+        assertEquals(receiver.getAccountNumber(), actualTransactions.get(0).getSenderAccountNumber());
+        assertEquals(sender.getAccountNumber(), actualTransactions.get(0).getReceiverAccountNumber());
+        // Only account numbers are sent, not the Clients and their balances
+        assertFalse(result.getResponse().getContentAsString().contains("accountBalance"));
     }
 
     @Test
@@ -110,6 +152,54 @@ class TransactionControllerV1IntegrationTest {
         mockMvc.perform(get("/v1/transactions/1").contentType(MediaType.APPLICATION_JSON)).andExpect(status().isBadRequest());
     }
 
+    @Test
+    @Transactional
+    void givenGetStatement_whenPagesAreFollowed_thenTransactionsAreReturnedNewestFirst() throws Exception {
+        // Act
+        MvcResult firstResult = mockMvc.perform(get("/v1/transactions/123456/statement").param("size", "1")).andExpect(status().isOk()).andReturn();
+        StatementPage firstPage = objectMapper.readValue(firstResult.getResponse().getContentAsString(), StatementPage.class);
+
+        MvcResult lastResult = mockMvc.perform(get("/v1/transactions/123456/statement").param("size", "1").param("cursor", firstPage.getNextCursor())).andExpect(status().isOk()).andReturn();
+        StatementPage lastPage = objectMapper.readValue(lastResult.getResponse().getContentAsString(), StatementPage.class);
+
+        // Assert
+        assertEquals(1, firstPage.getTransactions().size());
+        assertEquals(transaction2.getId(), firstPage.getTransactions().get(0).getId());
+        assertEquals(1, lastPage.getTransactions().size());
+        assertEquals(transaction1.getId(), lastPage.getTransactions().get(0).getId());
+        assertNull(lastPage.getNextCursor());
+    }
+
+    @Test
+    @Transactional
+    void givenGetStatement_whenCursorIsInvalid_then400IsBadRequest() throws Exception {
+        // Act and Assert
+        mockMvc.perform(get("/v1/transactions/123456/statement").param("cursor", "not-a-cursor")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void givenExportTransactions_whenFormatIsNdjson_thenHistoryIsStreamedOldestFirst() throws Exception {
+        // Act
+        MvcResult result = mockMvc.perform(get("/v1/transactions/123456/export")).andExpect(request().asyncStarted()).andReturn();
+
+        // Assert
+        String expectedNdjson = "{\"id\":" + transaction1.getId() + ",\"senderAccountNumber\":123456,\"receiverAccountNumber\":654321,"
+                + "\"transactionTime\":\"" + transaction1.getTransactionTime() + "\",\"amount\":500.00,\"status\":\"SUCCESS\",\"reason\":null}\n"
+                + "{\"id\":" + transaction2.getId() + ",\"senderAccountNumber\":654321,\"receiverAccountNumber\":123456,"
+                + "\"transactionTime\":\"" + transaction2.getTransactionTime() + "\",\"amount\":5000.00,\"status\":\"FAIL\",\"reason\":\"INSUFFICIENT_FUNDS\"}\n";
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson"))
+                .andExpect(content().string(expectedNdjson));
+    }
+
+    @Test
+    @Transactional
+    void givenExportTransactions_whenFormatIsUnknown_then400IsBadRequest() throws Exception {
+        // Act and Assert
+        mockMvc.perform(get("/v1/transactions/123456/export").param("format", "xml")).andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     void givenProcessPayment_whenPaymentSucess_then200isOK() throws Exception {
@@ -118,21 +208,108 @@ class TransactionControllerV1IntegrationTest {
         TransactionRequest request = new TransactionRequest();
         request.setSenderAccountNumber(sender.getAccountNumber());
         request.setReceiverAccountNumber(receiver.getAccountNumber());
-        request.setAmount(1000.00);
+        request.setAmount(100000L);
 
         // Serialized Transaction Request
         String requestBody = objectMapper.writeValueAsString(request);
 
         // Act
-        MvcResult result = mockMvc.perform(post("/v1/transactions/pay").contentType(MediaType.APPLICATION_JSON).content(requestBody)).andExpect(status().isOk()).andReturn();
+        MvcResult result = mockMvc.perform(post("/v1/transactions/pay").contentType(MediaType.APPLICATION_JSON).content(requestBody)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("SUCCESS: Transaction executed.")).andReturn();
         String responseBody = result.getResponse().getContentAsString();
         Transaction actualTransaction = objectMapper.readValue(responseBody, Transaction.class);
 
         // Assert
         assertEquals(sender.getName(), actualTransaction.getSender().getName());
         assertEquals(receiver.getName(), actualTransaction.getReceiver().getName());
-        assertEquals(TransactionStatus.SUCCESS.getMessage(), actualTransaction.getStatus());
-        assertEquals(0.0, actualTransaction.getSender().getAccountBalance());
-        assertEquals(4000.0, actualTransaction.getReceiver().getAccountBalance());
+        assertEquals(100000L, actualTransaction.getAmount());
+        assertEquals(TransactionStatus.SUCCESS, actualTransaction.getStatus());
+        assertEquals(0L, actualTransaction.getSender().getAccountBalance());
+        assertEquals(400000L, actualTransaction.getReceiver().getAccountBalance());
+    }
+
+    /*
+     * A retry with the same Idempotency-Key returns the first Transaction without a second debit, first from the cache
+     * and then, once the cache has lost the key, from the idempotency_key table.
+     */
+    @Test
+    @Transactional
+    void givenProcessPayment_whenIdempotencyKeyIsReplayed_thenPaymentIsProcessedOnce() throws Exception {
+        // Set up
+        String requestBody = "{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 300.00}";
+
+        // Act
+        Transaction first = objectMapper.readValue(mockMvc.perform(post("/v1/transactions/pay").header("Idempotency-Key", "order-1").contentType(MediaType.APPLICATION_JSON).content(requestBody))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString(), Transaction.class);
+        Transaction cached = objectMapper.readValue(mockMvc.perform(post("/v1/transactions/pay").header("Idempotency-Key", "order-1").contentType(MediaType.APPLICATION_JSON).content(requestBody))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString(), Transaction.class);
+        idempotencyCache.invalidateAll();
+        Transaction stored = objectMapper.readValue(mockMvc.perform(post("/v1/transactions/pay").header("Idempotency-Key", "order-1").contentType(MediaType.APPLICATION_JSON).content(requestBody))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString(), Transaction.class);
+
+        // Assert
+        assertEquals(first.getId(), cached.getId());
+        assertEquals(first.getId(), stored.getId());
+        assertEquals(70000L, clientRepository.readByAccountNumber(123456L).orElseThrow().getAccountBalance());
+        assertEquals(3, transactionRepository.count());
+    }
+
+    @Test
+    @Transactional
+    void givenProcessPayment_whenIdempotencyKeyIsReusedForAnotherPayment_then422IsUnprocessable() throws Exception {
+        // Set up
+        String requestBody = "{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 300.00}";
+        String otherRequestBody = "{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 400.00}";
+        mockMvc.perform(post("/v1/transactions/pay").header("Idempotency-Key", "order-2").contentType(MediaType.APPLICATION_JSON).content(requestBody)).andExpect(status().isOk());
+
+        // Act and Assert
+        mockMvc.perform(post("/v1/transactions/pay").header("Idempotency-Key", "order-2").contentType(MediaType.APPLICATION_JSON).content(otherRequestBody)).andExpect(status().isUnprocessableEntity());
+        assertEquals(70000L, clientRepository.readByAccountNumber(123456L).orElseThrow().getAccountBalance());
+    }
+
+    @Test
+    @Transactional
+    void givenProcessPayment_whenAmountHasFractionsOfCents_then400IsBadRequest() throws Exception {
+        // Set up
+        String requestBody = "{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 10.001}";
+
+        // Act and Assert
+        mockMvc.perform(post("/v1/transactions/pay").contentType(MediaType.APPLICATION_JSON).content(requestBody)).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void givenProcessBatchPayment_whenBatchIsProcessed_then200isOK() throws Exception {
+        // Set up
+        TransactionRequest request1 = new TransactionRequest();
+        request1.setSenderAccountNumber(sender.getAccountNumber());
+        request1.setReceiverAccountNumber(receiver.getAccountNumber());
+        request1.setAmount(60000L);
+
+        TransactionRequest request2 = new TransactionRequest();
+        request2.setSenderAccountNumber(sender.getAccountNumber());
+        request2.setReceiverAccountNumber(receiver.getAccountNumber());
+        request2.setAmount(60000L);
+
+        TransactionRequest request3 = new TransactionRequest();
+        request3.setSenderAccountNumber(sender.getAccountNumber());
+        request3.setReceiverAccountNumber(1L);
+        request3.setAmount(100L);
+
+        String requestBody = objectMapper.writeValueAsString(List.of(request1, request2, request3));
+        TypeReference<List<BatchPaymentResult>> jacksonTypeReference = new TypeReference<List<BatchPaymentResult>>() {
+        };
+
+        // Act
+        MvcResult result = mockMvc.perform(post("/v1/transactions/pay/batch").contentType(MediaType.APPLICATION_JSON).content(requestBody)).andExpect(status().isOk()).andReturn();
+        List<BatchPaymentResult> actualResults = objectMapper.readValue(result.getResponse().getContentAsString(), jacksonTypeReference);
+
+        // Assert
+        assertEquals(3, actualResults.size());
+        assertEquals(TransactionStatus.SUCCESS.getMessage(), actualResults.get(0).getStatus());
+        assertEquals(TransactionStatus.FAIL.getMessage(), actualResults.get(1).getStatus());
+        assertEquals("Invalid receiver Account Number", actualResults.get(2).getStatus());
+        assertEquals(40000L, clientRepository.findById(sender.getId()).orElseThrow().getAccountBalance());
+        assertEquals(360000L, clientRepository.findById(receiver.getId()).orElseThrow().getAccountBalance());
     }
 }
\ No newline at end of file
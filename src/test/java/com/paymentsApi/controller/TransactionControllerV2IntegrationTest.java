@@ -0,0 +1,215 @@
+package com.paymentsApi.controller;
+
+import com.paymentsApi.dto.StatementPage;
+import com.paymentsApi.dto.TransactionSummary;
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.enums.TransactionReason;
+import com.paymentsApi.enums.TransactionStatus;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.IdempotencyKeyRepository;
+import com.paymentsApi.repository.PostingRepository;
+import com.paymentsApi.repository.TransactionRepository;
+import com.paymentsApi.service.ClientCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed.
+ * The /v2 API commits through its own R2DBC connections, so these tests are not transactional and clean up after
+ * themselves. Both pools are pointed at the same in-memory database.
+ */
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:v2-test", "payments.v2.enabled=true", "payments.v2.port=0",
+        "payments.v2.event-loop-threads=2", "payments.v2.r2dbc.url=r2dbc:h2:mem:///v2-test"})
+class TransactionControllerV2IntegrationTest {
+    @Autowired
+    private ApiServerV2 apiServer;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private PostingRepository postingRepository;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private ClientCache clientCache;
+
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    public void setUp() {
+        // Client client sender
+        Client sender = new Client();
+        sender.setName("Felipe Matos");
+        sender.setAccountBalance(100000L);
+        sender.setAccountNumber(123456L);
+        clientRepository.save(sender);
+
+        // Client client receiver
+        Client receiver = new Client();
+        receiver.setName("Gisele Almeida");
+        receiver.setAccountBalance(300000L);
+        receiver.setAccountNumber(654321L);
+        clientRepository.save(receiver);
+
+        webTestClient = WebTestClient.bindToServer().baseUrl("http://localhost:" + apiServer.getPort()).build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        clientCache.invalidateAll();
+        idempotencyKeyRepository.deleteAll();
+        transactionRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void givenProcessPayment_whenPaymentSuccess_thenTransactionIsInHistoryAndStatement() {
+        // Set up
+        String requestBody = "{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 250.00}";
+
+        // Act
+        TransactionSummary transaction = webTestClient.post().uri("/v2/transactions/pay").contentType(MediaType.APPLICATION_JSON).bodyValue(requestBody)
+                .exchange().expectStatus().isOk().expectBody(TransactionSummary.class).returnResult().getResponseBody();
+        Flux<TransactionSummary> history = webTestClient.get().uri("/v2/transactions/123456").accept(MediaType.APPLICATION_NDJSON)
+                .exchange().expectStatus().isOk().returnResult(TransactionSummary.class).getResponseBody();
+        StatementPage page = webTestClient.get().uri("/v2/transactions/654321/statement?size=1")
+                .exchange().expectStatus().isOk().expectBody(StatementPage.class).returnResult().getResponseBody();
+
+        // Assert
+        assertEquals(TransactionStatus.SUCCESS, transaction.getStatus());
+        assertEquals(25000L, transaction.getAmount());
+        assertEquals(75000L, clientRepository.readByAccountNumber(123456L).orElseThrow().getAccountBalance());
+        assertEquals(325000L, clientRepository.readByAccountNumber(654321L).orElseThrow().getAccountBalance());
+        assertEquals(2, postingRepository.count());
+        StepVerifier.create(history)
+                .assertNext(summary -> assertEquals(transaction.getId(), summary.getId()))
+                .verifyComplete();
+        assertEquals(1, page.getTransactions().size());
+        assertEquals(transaction.getId(), page.getTransactions().get(0).getId());
+        assertNull(page.getNextCursor());
+    }
+
+    /*
+     * The history is requested one row at a time, as a slow client reading the stream would.
+     */
+    @Test
+    void givenStreamTransactions_whenClientRequestsOneByOne_thenRowsArriveOnDemand() {
+        // Set up
+        for (int i = 0; i < 3; i++) {
+            webTestClient.post().uri("/v2/transactions/pay").contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 1.00}")
+                    .exchange().expectStatus().isOk();
+        }
+
+        // Act
+        Flux<TransactionSummary> history = webTestClient.get().uri("/v2/transactions/654321").accept(MediaType.APPLICATION_NDJSON)
+                .exchange().expectStatus().isOk().returnResult(TransactionSummary.class).getResponseBody();
+
+        // Assert
+        StepVerifier.create(history, 1)
+                .expectNextCount(1)
+                .thenRequest(1)
+                .expectNextCount(1)
+                .thenRequest(1)
+                .expectNextCount(1)
+                .thenRequest(1)
+                .verifyComplete();
+    }
+
+    /*
+     * Payments in both directions between the same two accounts, all in flight at once on two event loop threads.
+     */
+    @Test
+    void givenProcessPayment_whenPaymentsAreConcurrent_thenEveryPaymentIsApplied() {
+        // Set up
+        WebClient webClient = WebClient.create("http://localhost:" + apiServer.getPort());
+
+        // Act
+        List<TransactionSummary> transactions = Flux.range(0, 200)
+                .flatMap(i -> webClient.post().uri("/v2/transactions/pay").contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(i % 2 == 0 ? "{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 3.00}"
+                                : "{\"senderAccountNumber\": 654321, \"receiverAccountNumber\": 123456, \"amount\": 1.00}")
+                        .retrieve().bodyToMono(TransactionSummary.class), 100)
+                .collectList()
+                .block(Duration.ofSeconds(60));
+
+        // Assert
+        assertEquals(200, transactions.size());
+        assertTrue(transactions.stream().allMatch(transaction -> transaction.getStatus() == TransactionStatus.SUCCESS));
+        assertEquals(80000L, clientRepository.readByAccountNumber(123456L).orElseThrow().getAccountBalance());
+        assertEquals(320000L, clientRepository.readByAccountNumber(654321L).orElseThrow().getAccountBalance());
+        assertEquals(400, postingRepository.count());
+    }
+
+    @Test
+    void givenProcessPayment_whenBalanceIsInsufficient_thenTransactionFails() {
+        // Set up
+        String requestBody = "{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 5000.00}";
+
+        // Act
+        TransactionSummary transaction = webTestClient.post().uri("/v2/transactions/pay").contentType(MediaType.APPLICATION_JSON).bodyValue(requestBody)
+                .exchange().expectStatus().isOk().expectBody(TransactionSummary.class).returnResult().getResponseBody();
+
+        // Assert
+        assertEquals(TransactionStatus.FAIL, transaction.getStatus());
+        assertEquals(TransactionReason.INSUFFICIENT_FUNDS, transaction.getReason());
+        assertEquals(100000L, clientRepository.readByAccountNumber(123456L).orElseThrow().getAccountBalance());
+        assertEquals(0, postingRepository.count());
+    }
+
+    @Test
+    void givenProcessPayment_whenIdempotencyKeyIsReplayed_thenPaymentIsProcessedOnce() {
+        // Set up
+        String requestBody = "{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 250.00}";
+
+        // Act
+        TransactionSummary first = webTestClient.post().uri("/v2/transactions/pay").header("Idempotency-Key", "order-1").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requestBody).exchange().expectStatus().isOk().expectBody(TransactionSummary.class).returnResult().getResponseBody();
+        TransactionSummary replay = webTestClient.post().uri("/v2/transactions/pay").header("Idempotency-Key", "order-1").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requestBody).exchange().expectStatus().isOk().expectBody(TransactionSummary.class).returnResult().getResponseBody();
+
+        // Assert
+        assertEquals(first.getId(), replay.getId());
+        assertEquals(75000L, clientRepository.readByAccountNumber(123456L).orElseThrow().getAccountBalance());
+        webTestClient.post().uri("/v2/transactions/pay").header("Idempotency-Key", "order-1").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 654321, \"amount\": 1.00}")
+                .exchange().expectStatus().isEqualTo(422);
+    }
+
+    @Test
+    void givenStreamTransactions_whenAccountNumberIsNotValid_then400IsBadRequest() {
+        // Act and Assert
+        webTestClient.get().uri("/v2/transactions/1").accept(MediaType.APPLICATION_NDJSON)
+                .exchange().expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Resource is not correctly referenced: Invalid Account Number");
+    }
+
+    @Test
+    void givenProcessPayment_whenReceiverIsNotValid_then400IsBadRequest() {
+        // Act and Assert
+        webTestClient.post().uri("/v2/transactions/pay").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"senderAccountNumber\": 123456, \"receiverAccountNumber\": 1, \"amount\": 1.00}")
+                .exchange().expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Resource is not correctly referenced: Invalid receiver Account Number");
+    }
+}
@@ -0,0 +1,221 @@
+package com.paymentsApi.ledger;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.PostingRepository;
+import com.paymentsApi.service.PostingWatermark;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+@ExtendWith(MockitoExtension.class) // Mockito will handle injection
+class DurableLedgerJournalTest {
+
+    @Mock
+    private ClientRepository clientRepository;
+
+    @Mock
+    private PostingRepository postingRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path directory;
+
+    private final List<DurableLedgerJournal> journals = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (DurableLedgerJournal journal : journals) {
+            journal.shutdown();
+        }
+    }
+
+    /*
+     * A restart without a final snapshot replays every transfer over the balances the accounts were opened with.
+     */
+    @Test
+    void testRecover_ReplaysJournalOverSnapshot() {
+        // Set up
+        DurableLedgerJournal crashed = journal(60000);
+        crashed.open(balance(1L, 200000L));
+        crashed.open(balance(2L, 100000L));
+        crashed.transfer(1L, 2L, 50000L);
+        crashed.transfer(2L, 1L, 20000L);
+        when(clientRepository.findAll()).thenReturn(List.of(client(1L, "Felipe Matos", 1L, 200000L), client(2L, "Gisele Almeida", 2L, 100000L)));
+
+        // Act
+        journal(60000);
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Client>> clientsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(clientRepository).saveAll(clientsCaptor.capture());
+        assertEquals(2, clientsCaptor.getValue().size());
+        assertEquals(170000L, clientsCaptor.getValue().get(0).getAccountBalance());
+        assertEquals(130000L, clientsCaptor.getValue().get(1).getAccountBalance());
+    }
+
+    /*
+     * The balance of an edited Client replaces the transfers of the account journaled before the edit.
+     */
+    @Test
+    void testRecover_EditReplacesEarlierTransfers() {
+        // Set up
+        DurableLedgerJournal crashed = journal(60000);
+        crashed.open(balance(1L, 200000L));
+        crashed.open(balance(2L, 100000L));
+        crashed.transfer(1L, 2L, 50000L);
+        crashed.open(balance(1L, 500000L));
+        crashed.transfer(1L, 2L, 20000L);
+        when(clientRepository.findAll()).thenReturn(List.of(client(1L, "Felipe Matos", 1L, 200000L), client(2L, "Gisele Almeida", 2L, 100000L)));
+
+        // Act
+        journal(60000);
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Client>> clientsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(clientRepository).saveAll(clientsCaptor.capture());
+        assertEquals(480000L, clientsCaptor.getValue().get(0).getAccountBalance());
+        assertEquals(170000L, clientsCaptor.getValue().get(1).getAccountBalance());
+    }
+
+    /*
+     * A snapshot covers the journal generations before it, so after a clean shutdown the snapshot alone restores the
+     * balances.
+     */
+    @Test
+    void testSnapshot_CoversJournal() throws Exception {
+        // Set up
+        DurableLedgerJournal journal = journal(0);
+
+        // Act
+        journal.open(balance(1L, 200000L));
+        journal.open(balance(2L, 100000L));
+        journal.transfer(1L, 2L, 50000L);
+        journal.shutdown();
+        journals.remove(journal);
+
+        // Assert
+        SnapshotFile.Snapshot snapshot = new SnapshotFile(directory.resolve("snapshot.bin")).read();
+        assertEquals(150000L, snapshot.balances().get(0).balance());
+        assertEquals(150000L, snapshot.balances().get(1).balance());
+        for (String name : List.of("journal-0.bin", "journal-1.bin")) {
+            try (JournalFile journalFile = new JournalFile(directory.resolve(name), 1024 * 1024)) {
+                assertTrue(journalFile.generation() <= snapshot.generation() || journalFile.readAll().isEmpty());
+            }
+        }
+    }
+
+    /*
+     * A generation the snapshot already covers is not replayed again, even when its file was not reused yet.
+     */
+    @Test
+    void testRecover_SkipsGenerationsCoveredBySnapshot() throws Exception {
+        // Set up
+        new SnapshotFile(directory.resolve("snapshot.bin")).write(1, List.of(balance(1L, 150000L), balance(2L, 150000L)));
+        try (JournalFile covered = new JournalFile(directory.resolve("journal-0.bin"), 1024 * 1024);
+             JournalFile next = new JournalFile(directory.resolve("journal-1.bin"), 1024 * 1024)) {
+            covered.start(1);
+            covered.append(JournalFile.encode(new JournalRecord.Transferred(1L, 2L, 50000L)));
+            covered.force(0);
+            next.start(2);
+            next.append(JournalFile.encode(new JournalRecord.Transferred(2L, 1L, 20000L)));
+            next.force(0);
+        }
+        when(clientRepository.findAll()).thenReturn(List.of(client(1L, "Felipe Matos", 1L, 200000L), client(2L, "Gisele Almeida", 2L, 100000L)));
+
+        // Act
+        journal(60000);
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Client>> clientsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(clientRepository).saveAll(clientsCaptor.capture());
+        assertEquals(170000L, clientsCaptor.getValue().get(0).getAccountBalance());
+        assertEquals(130000L, clientsCaptor.getValue().get(1).getAccountBalance());
+    }
+
+    /*
+     * A record torn by a crash ends the journal, the records before it are kept.
+     */
+    @Test
+    void testReadAll_StopsAtTornRecord() throws Exception {
+        // Set up
+        Path path = directory.resolve("journal.bin");
+        int secondRecord;
+        try (JournalFile journalFile = new JournalFile(path, 4096)) {
+            journalFile.append(JournalFile.encode(new JournalRecord.Transferred(1L, 2L, 50000L)));
+            secondRecord = journalFile.position();
+            journalFile.append(JournalFile.encode(new JournalRecord.Transferred(2L, 1L, 20000L)));
+            journalFile.force(0);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(secondRecord + 12);
+            file.writeLong(-1L);
+        }
+
+        // Act
+        try (JournalFile journalFile = new JournalFile(path, 4096)) {
+            List<JournalRecord> records = journalFile.readAll();
+
+            // Assert
+            assertEquals(List.of(new JournalRecord.Transferred(1L, 2L, 50000L)), records);
+            assertEquals(secondRecord, journalFile.position());
+        }
+    }
+
+    /*
+     * A journal file larger than one memory mapping can hold is rejected before anything is mapped.
+     */
+    @Test
+    void testConstructor_RejectsSizeAboveOneMapping() {
+        // Act
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () ->
+                new DurableLedgerJournal(clientRepository, postingRepository, new PostingWatermark(), transactionManager, directory, 2048, 100, 60000));
+
+        // Assert
+        assertEquals("payments.ledger.journal.size-mb must be at most 2047, was 2048", exception.getMessage());
+        assertFalse(Files.exists(directory.resolve("journal-0.bin")));
+    }
+
+    private DurableLedgerJournal journal(long snapshotIntervalMs) {
+        DurableLedgerJournal journal = new DurableLedgerJournal(clientRepository, postingRepository, new PostingWatermark(), transactionManager, directory, 1, 100, snapshotIntervalMs);
+        journals.add(journal);
+        return journal;
+    }
+
+    private static LedgerBalance balance(Long accountNumber, long balance) {
+        return new LedgerBalance(accountNumber, accountNumber, accountNumber == 1L ? "Felipe Matos" : "Gisele Almeida", balance, 0);
+    }
+
+    private static Client client(Long id, String name, Long accountNumber, long accountBalance) {
+        Client client = new Client();
+        ReflectionTestUtils.setField(client, "id", id);
+        client.setName(name);
+        client.setAccountNumber(accountNumber);
+        client.setAccountBalance(accountBalance);
+        return client;
+    }
+}
@@ -0,0 +1,79 @@
+package com.paymentsApi.ledger;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.service.ClientService;
+import com.paymentsApi.service.TransactionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed.
+ * The journal is only flushed by the tests, so transfers can be left unwritten on purpose.
+ */
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:ledger-engine-test", "payments.ledger.enabled=true", "payments.ledger.flush-interval-ms=600000"})
+class LedgerEngineIntegrationTest {
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private WriteBehindJournal journal;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    /*
+     * A balance edited while a transfer of the account is still waiting in the journal is kept by the flush, and the
+     * next transfer starts from it.
+     */
+    @Test
+    void testSaveClient_EditedBalanceIsKeptAfterLedgerTransfers() {
+        // Set up
+        Client sender = clientService.saveClient(client("Felipe Matos", 111111L, 200000L));
+        clientService.saveClient(client("Gisele Almeida", 222222L, 100000L));
+        transactionService.processTransaction(111111L, 222222L, 50000L);
+
+        // Act
+        Client edited = clientRepository.findById(sender.getId()).orElseThrow();
+        edited.setAccountBalance(500000L);
+        clientService.saveClient(edited);
+        transactionService.processTransaction(111111L, 222222L, 20000L);
+        journal.flush();
+
+        // Assert
+        assertEquals(480000L, clientService.getClientByAccountNumber(111111L).getAccountBalance());
+        assertEquals(480000L, clientService.getBalanceAt(111111L, LocalDateTime.now()).getBalance());
+        assertEquals(170000L, clientService.getClientByAccountNumber(222222L).getAccountBalance());
+    }
+
+    @Test
+    void testDeleteClient_AccountHeldByLedgerIsRefused() {
+        // Set up
+        Client sender = clientService.saveClient(client("Alicia Jones", 333333L, 200000L));
+        clientService.saveClient(client("Bruno Lima", 444444L, 100000L));
+        transactionService.processTransaction(333333L, 444444L, 50000L);
+
+        // Act and Assert
+        assertThrows(IllegalArgumentException.class, () -> clientService.deleteClient(sender.getId()));
+        journal.flush();
+        assertTrue(clientRepository.findById(sender.getId()).isPresent());
+    }
+
+    private static Client client(String name, Long accountNumber, long accountBalance) {
+        Client client = new Client();
+        client.setName(name);
+        client.setAccountNumber(accountNumber);
+        client.setAccountBalance(accountBalance);
+        return client;
+    }
+}
@@ -0,0 +1,163 @@
+package com.paymentsApi.ledger;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.enums.TransactionReason;
+import com.paymentsApi.enums.TransactionStatus;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.service.PostingWatermark;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+@ExtendWith(MockitoExtension.class) // Mockito will handle injection
+class LedgerEngineTest {
+
+    @Mock
+    private ClientRepository clientRepository;
+
+    @Mock
+    private WriteBehindJournal journal;
+
+    @Mock
+    private DurableLedgerJournal durableJournal;
+
+    private LedgerEngine ledgerEngine;
+
+    @BeforeEach
+    void setUp() {
+        // Sender and receiver land on different shards, the third client shares the sender shard
+        when(clientRepository.readByAccountNumber(1L)).thenReturn(Optional.of(client("Felipe Matos", 1L, 200000L)));
+        lenient().when(clientRepository.readByAccountNumber(2L)).thenReturn(Optional.of(client("Gisele Almeida", 2L, 100000L)));
+        lenient().when(clientRepository.readByAccountNumber(5L)).thenReturn(Optional.of(client("Alicia Jones", 5L, 50000L)));
+
+        ledgerEngine = new LedgerEngine(clientRepository, journal, new PostingWatermark(), 4);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ledgerEngine.shutdown();
+    }
+
+    @Test
+    void testTransfer_SuccessAcrossShards() {
+        // Act
+        Transaction transaction = ledgerEngine.transfer(1L, 2L, 100000L);
+
+        // Assert
+        assertEquals(TransactionStatus.SUCCESS, transaction.getStatus());
+        assertEquals(100000L, transaction.getAmount());
+        assertEquals(100000L, transaction.getSender().getAccountBalance());
+        assertEquals(200000L, transaction.getReceiver().getAccountBalance());
+
+        ArgumentCaptor<JournalEntry> entryCaptor = ArgumentCaptor.forClass(JournalEntry.class);
+        verify(journal, times(1)).append(entryCaptor.capture(), any());
+        assertEquals(1, entryCaptor.getValue().sender().sequence());
+        assertEquals(1, entryCaptor.getValue().receiver().sequence());
+    }
+
+    @Test
+    void testTransfer_SuccessWithinShard() {
+        // Act
+        Transaction transaction = ledgerEngine.transfer(1L, 5L, 50000L);
+
+        // Assert
+        assertEquals(TransactionStatus.SUCCESS, transaction.getStatus());
+        assertEquals(150000L, transaction.getSender().getAccountBalance());
+        assertEquals(100000L, transaction.getReceiver().getAccountBalance());
+    }
+
+    @Test
+    void testTransfer_InsufficientFunds() {
+        // Act
+        Transaction transaction = ledgerEngine.transfer(1L, 2L, 200100L);
+
+        // Assert
+        assertEquals(TransactionStatus.FAIL, transaction.getStatus());
+        assertEquals(TransactionReason.INSUFFICIENT_FUNDS, transaction.getReason());
+        assertEquals(200000L, transaction.getSender().getAccountBalance());
+        assertEquals(100000L, transaction.getReceiver().getAccountBalance());
+        verify(journal, times(1)).append(any(JournalEntry.class), any());
+    }
+
+    @Test
+    void testTransfer_InvalidReceiverDoesNotDebitSender() {
+        // Set up
+        when(clientRepository.readByAccountNumber(3L)).thenReturn(Optional.empty());
+
+        // Act and Assert
+        assertThrows(IllegalArgumentException.class, () -> ledgerEngine.transfer(1L, 3L, 10000L));
+        Transaction transaction = ledgerEngine.transfer(1L, 2L, 10000L);
+        assertEquals(190000L, transaction.getSender().getAccountBalance());
+        verify(journal, times(1)).append(any(JournalEntry.class), any());
+    }
+
+    /*
+     * A transfer the durable journal fails to write gives the sender its debit back and never credits the receiver.
+     */
+    @Test
+    void testTransfer_FailedJournalWriteGivesDebitBack() {
+        // Set up
+        ledgerEngine.durableJournal = durableJournal;
+        doThrow(new IllegalStateException("Ledger journal failed")).doNothing().when(durableJournal).transfer(anyLong(), anyLong(), anyLong());
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> ledgerEngine.transfer(1L, 5L, 100000L));
+        Transaction transaction = ledgerEngine.transfer(1L, 5L, 10000L);
+
+        // Assert
+        assertEquals(190000L, transaction.getSender().getAccountBalance());
+        assertEquals(60000L, transaction.getReceiver().getAccountBalance());
+        verify(durableJournal, times(2)).open(any(LedgerBalance.class));
+        verify(journal, times(1)).append(any(JournalEntry.class), any());
+    }
+
+    /*
+     * Symmetric transfers from many threads must neither deadlock nor lose money.
+     */
+    @Test
+    void testTransfer_ConcurrentSymmetricTransfersKeepTotal() throws Exception {
+        // Set up
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<Transaction>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            boolean forward = i % 2 == 0;
+            futures.add(executorService.submit(() -> forward ? ledgerEngine.transfer(1L, 2L, 100L) : ledgerEngine.transfer(2L, 1L, 100L)));
+        }
+        for (Future<Transaction> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        // Assert
+        Transaction last = ledgerEngine.transfer(1L, 2L, 0L);
+        assertEquals(300000L, last.getSender().getAccountBalance() + last.getReceiver().getAccountBalance());
+        assertEquals(200000L, last.getSender().getAccountBalance());
+    }
+
+    private static Client client(String name, Long accountNumber, long accountBalance) {
+        Client client = new Client();
+        client.setName(name);
+        client.setAccountNumber(accountNumber);
+        client.setAccountBalance(accountBalance);
+        return client;
+    }
+}
@@ -0,0 +1,59 @@
+package com.paymentsApi.money;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.paymentsApi.dto.TransactionRequest;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+class CentsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testFromDecimal() {
+        assertEquals(100050L, Cents.fromDecimal(new BigDecimal("1000.50")));
+        assertEquals(100000L, Cents.fromDecimal(new BigDecimal("1000")));
+        assertEquals(-1L, Cents.fromDecimal(new BigDecimal("-0.01")));
+        assertThrows(IllegalArgumentException.class, () -> Cents.fromDecimal(new BigDecimal("0.001")));
+    }
+
+    @Test
+    void testToDecimalString() {
+        assertEquals("1000.50", Cents.toDecimalString(100050L));
+        assertEquals("0.05", Cents.toDecimalString(5L));
+        assertEquals("-0.05", Cents.toDecimalString(-5L));
+        assertEquals("0.00", Cents.toDecimalString(0L));
+    }
+
+    @Test
+    void testRequirePayable() {
+        Cents.requirePayable(1L);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> Cents.requirePayable(0L));
+        assertEquals(Cents.NOT_PAYABLE, ex.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> Cents.requirePayable(-1L));
+    }
+
+    @Test
+    void testJsonRoundTrip() throws Exception {
+        // Decimal numbers, integers and strings are all read as cents
+        assertEquals(100050L, objectMapper.readValue("{\"amount\": 1000.50}", TransactionRequest.class).getAmount());
+        assertEquals(100000L, objectMapper.readValue("{\"amount\": 1000}", TransactionRequest.class).getAmount());
+        assertEquals(1L, objectMapper.readValue("{\"amount\": \"0.01\"}", TransactionRequest.class).getAmount());
+
+        // Cents are written back as a decimal number
+        TransactionRequest request = new TransactionRequest();
+        request.setAmount(100050L);
+        assertEquals("{\"senderAccountNumber\":null,\"receiverAccountNumber\":null,\"amount\":1000.50}", objectMapper.writeValueAsString(request));
+    }
+
+    @Test
+    void testJsonRejectsFractionsOfCents() {
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("{\"amount\": 0.001}", TransactionRequest.class));
+    }
+}
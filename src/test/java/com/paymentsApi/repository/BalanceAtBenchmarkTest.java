@@ -0,0 +1,121 @@
+package com.paymentsApi.repository;
+
+import com.paymentsApi.service.ClientService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Point-in-time balance latency over a posting table seeded with years of history.
+ * Postings are one minute apart, so the largest table holds close to four years, with a checkpoint per day as the
+ * BalanceCheckpointJob would write them. The history grows 8 times between the first and the last measurement; read
+ * from the latest checkpoint, the latency of a balance must grow far less than that. The sum of every posting up to the
+ * time, as it would be read without checkpoints, is measured for comparison.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=BalanceAtBenchmarkTest
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:balance-at-benchmark", "payments.postings.checkpoint-interval-ms=0"})
+@ActiveProfiles("benchmark")
+class BalanceAtBenchmarkTest {
+
+    private static final int CLIENTS = 100;
+    private static final int[] TABLE_SIZES = {250_000, 500_000, 1_000_000, 2_000_000};
+    private static final int LOOKUPS = 1000;
+    private static final LocalDateTime START = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PostingRepository postingRepository;
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void benchmarkBalanceAtLatency() {
+        // Set up
+        jdbcTemplate.update("INSERT INTO client (id, name, account_balance, account_number, version) "
+                + "SELECT X, CONCAT('Client ', X), 0, X, 0 FROM SYSTEM_RANGE(1, ?)", CLIENTS);
+
+        // Act
+        double[] latencies = new double[TABLE_SIZES.length];
+        double[] fullSumLatencies = new double[TABLE_SIZES.length];
+        int seeded = 0;
+        for (int i = 0; i < TABLE_SIZES.length; i++) {
+            long seedStart = System.nanoTime();
+            seed(seeded, TABLE_SIZES[i]);
+            System.out.printf("Seeded %,d postings and their checkpoints in %.1f s%n", TABLE_SIZES[i] - seeded, (System.nanoTime() - seedStart) / 1_000_000_000.0);
+            seeded = TABLE_SIZES[i];
+            balances(LOOKUPS, seeded); // warm up
+            latencies[i] = balances(LOOKUPS, seeded);
+            fullSumLatencies[i] = fullSums(LOOKUPS, seeded);
+            System.out.printf("Balance at with %,d postings: %.3f ms, full sum: %.3f ms%n", seeded, latencies[i], fullSumLatencies[i]);
+        }
+
+        // Assert
+        LocalDateTime end = START.plusMinutes(seeded);
+        assertEquals(jdbcTemplate.queryForObject("SELECT SUM(amount) FROM posting WHERE client_id = 1", Long.class),
+                clientService.getBalanceAt(1L, end).getBalance());
+        double growth = latencies[latencies.length - 1] / latencies[0];
+        System.out.printf("History grew %dx, balance latency grew %.2fx%n", TABLE_SIZES[TABLE_SIZES.length - 1] / TABLE_SIZES[0], growth);
+        assertTrue(growth < 2.0);
+    }
+
+    /*
+     * Inserts postings with ids from + 1 to to, alternating debits and credits of pseudo-random clients, one minute
+     * apart, then writes a checkpoint at the end of every whole day they cover.
+     */
+    private void seed(int from, int to) {
+        jdbcTemplate.update("INSERT INTO posting (id, transaction_id, client_id, amount, posted_at) "
+                + "SELECT X, NULL, MOD(X * 7919, ?) + 1, CASEWHEN(MOD(X, 2) = 0, 100, -100), DATEADD(MINUTE, X, TIMESTAMP '2020-01-01 00:00:00') "
+                + "FROM SYSTEM_RANGE(?, ?)", CLIENTS, from + 1, to);
+        LocalDateTime checkpointed = START.plusDays(from / (24 * 60));
+        LocalDateTime end = START.plusMinutes(to);
+        while (!checkpointed.plusDays(1).isAfter(end)) {
+            LocalDateTime previous = checkpointed;
+            LocalDateTime asOf = checkpointed.plusDays(1);
+            transactionTemplate.executeWithoutResult(status -> postingRepository.insertCheckpoints(previous, asOf));
+            checkpointed = asOf;
+        }
+    }
+
+    /*
+     * Reads the balance of random clients at random times of the history and returns the mean latency in milliseconds.
+     */
+    private double balances(int lookups, int minutes) {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            clientService.getBalanceAt((long) random.nextInt(CLIENTS) + 1, START.plusMinutes(random.nextInt(minutes)));
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / lookups;
+    }
+
+    /*
+     * Sums every posting of random clients up to random times and returns the mean latency in milliseconds.
+     */
+    private double fullSums(int lookups, int minutes) {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            jdbcTemplate.queryForObject("SELECT COALESCE(SUM(amount), 0) FROM posting WHERE client_id = ? AND posted_at <= ?", Long.class,
+                    random.nextInt(CLIENTS) + 1, START.plusMinutes(random.nextInt(minutes)));
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / lookups;
+    }
+}
@@ -5,7 +5,15 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
+import java.util.List;
+
+import static com.paymentsApi.repository.ClientSpecifications.fullBalanceAtLeast;
+import static com.paymentsApi.repository.ClientSpecifications.orderByFullBalance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /* Test classes have package scope as default, so "public" access modifier is not needed. */
@@ -20,14 +28,14 @@ public class ClientRepositoryIntegrationTest {
         // Create and save the first client
         Client client1 = new Client();
         client1.setName("Felipe Matos");
-        client1.setAccountBalance(1392.40);
+        client1.setAccountBalance(139240L);
         client1.setAccountNumber(123456L);
         clientRepository.save(client1);
 
         // Create and save the second client with the same account number
         Client client2 = new Client();
         client2.setName("Gisele Almeida");
-        client2.setAccountBalance(2000.10);
+        client2.setAccountBalance(200010L);
         client2.setAccountNumber(123456L);
 
         // Assert that saving the second client throws a DataIntegrityViolationException
@@ -45,4 +53,35 @@ public class ClientRepositoryIntegrationTest {
             clientRepository.saveAndFlush(client1);
         });
     }
+
+    /*
+     * Credits still in the balance slots count towards the balance filters and order, without being folded in.
+     */
+    @Test
+    void testFullBalance_IncludesBalanceSlots() {
+        // Set up
+        Client split = new Client();
+        split.setName("Felipe Matos");
+        split.setAccountBalance(10000L);
+        split.setAccountNumber(123456L);
+        clientRepository.save(split);
+        Client plain = new Client();
+        plain.setName("Gisele Almeida");
+        plain.setAccountBalance(50000L);
+        plain.setAccountNumber(654321L);
+        clientRepository.save(plain);
+        clientRepository.createBalanceSlot(123456L, 0);
+        clientRepository.createBalanceSlot(123456L, 1);
+        clientRepository.addToBalanceSlot(split.getId(), 0, 30000L);
+        clientRepository.addToBalanceSlot(split.getId(), 1, 40000L);
+
+        // Act
+        List<Client> atLeast = clientRepository.findAll(fullBalanceAtLeast(60000L));
+        List<Client> ordered = clientRepository.findAll(Specification.where(orderByFullBalance(Sort.Direction.DESC)), PageRequest.of(0, 10)).getContent();
+
+        // Assert
+        assertEquals(List.of(123456L), atLeast.stream().map(Client::getAccountNumber).toList());
+        assertEquals(List.of(123456L, 654321L), ordered.stream().map(Client::getAccountNumber).toList());
+        assertEquals(10000L, clientRepository.readByAccountNumber(123456L).orElseThrow().getAccountBalance());
+    }
 }
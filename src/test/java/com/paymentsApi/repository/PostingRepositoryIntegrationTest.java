@@ -0,0 +1,109 @@
+package com.paymentsApi.repository;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.entity.Posting;
+import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.enums.TransactionReason;
+import com.paymentsApi.enums.TransactionStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+@DataJpaTest
+class PostingRepositoryIntegrationTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Autowired
+    private PostingRepository postingRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /*
+     * A checkpoint adds the postings since the previous checkpoint to it, failed transfers leave no postings.
+     */
+    @Test
+    void testInsertCheckpoints_AddsPostingsToPreviousCheckpoint() {
+        // Set up
+        Client sender = clientRepository.save(client("Felipe Matos", 123456L));
+        Client receiver = clientRepository.save(client("Gisele Almeida", 654321L));
+        transfer(sender, receiver, 30000L, DAY.plusHours(10), TransactionStatus.SUCCESS);
+        transfer(sender, receiver, 20000L, DAY.plusHours(13), TransactionStatus.SUCCESS);
+        transfer(sender, receiver, 900000L, DAY.plusHours(13).plusMinutes(30), TransactionStatus.FAIL);
+        postingRepository.flush();
+
+        // Act
+        int first = postingRepository.insertCheckpoints(DAY.minusYears(1), DAY.plusHours(12));
+        int second = postingRepository.insertCheckpoints(DAY.plusHours(12), DAY.plusHours(14));
+
+        // Assert
+        assertEquals(2, first);
+        assertEquals(2, second);
+        assertEquals(-30000L, checkpoint(sender, DAY.plusHours(12)));
+        assertEquals(30000L, checkpoint(receiver, DAY.plusHours(12)));
+        assertEquals(-50000L, checkpoint(sender, DAY.plusHours(14)));
+        assertEquals(50000L, checkpoint(receiver, DAY.plusHours(14)));
+        assertEquals(DAY.plusHours(14), postingRepository.findLastCheckpointTime());
+    }
+
+    /*
+     * The balance at a time is the latest checkpoint before it plus the postings after the checkpoint, up to the time.
+     */
+    @Test
+    void testFindBalanceAt_AddsPostingsAfterCheckpoint() {
+        // Set up
+        Client sender = clientRepository.save(client("Felipe Matos", 123456L));
+        Client receiver = clientRepository.save(client("Gisele Almeida", 654321L));
+        transfer(sender, receiver, 30000L, DAY.plusHours(10), TransactionStatus.SUCCESS);
+        transfer(sender, receiver, 20000L, DAY.plusHours(13), TransactionStatus.SUCCESS);
+        transfer(receiver, sender, 5000L, DAY.plusHours(15), TransactionStatus.SUCCESS);
+        postingRepository.flush();
+        postingRepository.insertCheckpoints(DAY.minusYears(1), DAY.plusHours(12));
+
+        // Act & Assert
+        assertEquals(0L, postingRepository.findBalanceAt(sender.getId(), DAY.plusHours(9)));
+        assertEquals(-30000L, postingRepository.findBalanceAt(sender.getId(), DAY.plusHours(10)));
+        assertEquals(-30000L, postingRepository.findBalanceAt(sender.getId(), DAY.plusHours(12)));
+        assertEquals(-50000L, postingRepository.findBalanceAt(sender.getId(), DAY.plusHours(14)));
+        assertEquals(45000L, postingRepository.findBalanceAt(receiver.getId(), DAY.plusHours(16)));
+    }
+
+    private void transfer(Client sender, Client receiver, long amount, LocalDateTime time, TransactionStatus status) {
+        Transaction transaction = new Transaction();
+        transaction.setSender(sender);
+        transaction.setReceiver(receiver);
+        transaction.setAmount(amount);
+        transaction.setTransactionTime(time);
+        transaction.setStatus(status);
+        if (status == TransactionStatus.FAIL) {
+            transaction.setReason(TransactionReason.INSUFFICIENT_FUNDS);
+        }
+        transactionRepository.save(transaction);
+        postingRepository.saveAll(Posting.of(transaction));
+    }
+
+    private long checkpoint(Client client, LocalDateTime asOf) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM balance_checkpoint WHERE client_id = ? AND as_of = ?", Long.class, client.getId(), asOf);
+    }
+
+    private static Client client(String name, Long accountNumber) {
+        Client client = new Client();
+        client.setName(name);
+        client.setAccountNumber(accountNumber);
+        client.setAccountBalance(0L);
+        return client;
+    }
+}
@@ -0,0 +1,88 @@
+package com.paymentsApi.repository;
+
+import com.paymentsApi.dto.StatementPage;
+import com.paymentsApi.service.TransactionService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Statement latency over a transaction table seeded with millions of rows.
+ * The table grows 8 times between the first and the last measurement; with the history indexes of the V2 migration
+ * the latency of a statement page must grow far less than that.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=TransactionHistoryBenchmarkTest
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:history-benchmark")
+@ActiveProfiles("benchmark")
+class TransactionHistoryBenchmarkTest {
+
+    private static final int CLIENTS = 10000;
+    private static final int[] TABLE_SIZES = {250_000, 500_000, 1_000_000, 2_000_000};
+    private static final int LOOKUPS = 1000;
+    private static final int PAGE_SIZE = 20;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Test
+    void benchmarkStatementLatency() {
+        // Set up
+        jdbcTemplate.update("INSERT INTO client (id, name, account_balance, account_number, version) "
+                + "SELECT X, CONCAT('Client ', X), 100000, X, 0 FROM SYSTEM_RANGE(1, ?)", CLIENTS);
+
+        // Act
+        double[] latencies = new double[TABLE_SIZES.length];
+        int seeded = 0;
+        for (int i = 0; i < TABLE_SIZES.length; i++) {
+            long seedStart = System.nanoTime();
+            seed(seeded, TABLE_SIZES[i]);
+            System.out.printf("Seeded %,d transactions in %.1f s%n", TABLE_SIZES[i] - seeded, (System.nanoTime() - seedStart) / 1_000_000_000.0);
+            seeded = TABLE_SIZES[i];
+            statementPages(LOOKUPS); // warm up
+            latencies[i] = statementPages(LOOKUPS);
+            System.out.printf("Statement page with %,d transactions: %.3f ms%n", seeded, latencies[i]);
+        }
+
+        // Assert
+        assertEquals((long) seeded, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transaction", Long.class));
+        double growth = latencies[latencies.length - 1] / latencies[0];
+        System.out.printf("Table grew %dx, statement latency grew %.2fx%n", TABLE_SIZES[TABLE_SIZES.length - 1] / TABLE_SIZES[0], growth);
+        assertTrue(growth < 2.0);
+    }
+
+    /*
+     * Inserts transactions with ids from + 1 to to, between pseudo-random clients, one second apart.
+     */
+    private void seed(int from, int to) {
+        jdbcTemplate.update("INSERT INTO transaction (id, sender_id, receiver_id, transaction_time, amount, status) "
+                + "SELECT X, MOD(X * 7919, ?) + 1, MOD(X * 104729, ?) + 1, DATEADD(SECOND, X, TIMESTAMP '2024-01-01 00:00:00'), 100, 1 "
+                + "FROM SYSTEM_RANGE(?, ?)", CLIENTS, CLIENTS, from + 1, to);
+    }
+
+    /*
+     * Reads the first and the second statement page of random clients and returns the mean latency in milliseconds.
+     */
+    private double statementPages(int lookups) {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            long accountNumber = random.nextInt(CLIENTS) + 1;
+            StatementPage page = transactionService.getStatement(accountNumber, null, PAGE_SIZE);
+            transactionService.getStatement(accountNumber, page.getNextCursor(), PAGE_SIZE);
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / lookups;
+    }
+}
@@ -0,0 +1,104 @@
+package com.paymentsApi.repository;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.enums.TransactionStatus;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * Insert throughput of Transactions committed together, with and without JDBC batching.
+ * Sequence ids with a pooled allocation are what allow Hibernate to batch the inserts at all.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=TransactionInsertBenchmarkTest
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:insert-benchmark")
+@ActiveProfiles("benchmark")
+class TransactionInsertBenchmarkTest {
+
+    private static final int TRANSACTIONS = 20000;
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void benchmarkBatchedInserts() {
+        // Set up
+        Client sender = new Client();
+        sender.setName("Felipe Matos");
+        sender.setAccountBalance(100000L);
+        sender.setAccountNumber(123456L);
+        clientRepository.save(sender);
+
+        Client receiver = new Client();
+        receiver.setName("Gisele Almeida");
+        receiver.setAccountBalance(300000L);
+        receiver.setAccountNumber(654321L);
+        clientRepository.save(receiver);
+
+        // Warm up both paths before measuring
+        insert(sender, receiver, 1);
+        insert(sender, receiver, 50);
+
+        // Act
+        double unbatched = 0;
+        double batched = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            unbatched += insert(sender, receiver, 1);
+            batched += insert(sender, receiver, 50);
+        }
+
+        // Assert
+        System.out.printf("Transaction inserts: %.0f rows/s without batching, %.0f rows/s with batch size 50 (%.1fx)%n", unbatched / ROUNDS, batched / ROUNDS, batched / unbatched);
+        assertEquals((2L + 2L * ROUNDS) * TRANSACTIONS, transactionRepository.count());
+    }
+
+    /*
+     * Inserts TRANSACTIONS rows in one database transaction and returns the throughput in rows per second.
+     */
+    private double insert(Client sender, Client receiver, int jdbcBatchSize) {
+        List<Transaction> transactions = new ArrayList<>(TRANSACTIONS);
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setSender(sender);
+            transaction.setReceiver(receiver);
+            transaction.setTransactionTime(LocalDateTime.now());
+            transaction.setAmount(100L);
+            transaction.setStatus(TransactionStatus.SUCCESS);
+            transactions.add(transaction);
+        }
+
+        long start = System.nanoTime();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+            transactionRepository.saveAll(transactions);
+            entityManager.flush();
+            entityManager.clear();
+        });
+        return TRANSACTIONS / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+}
@@ -1,11 +1,19 @@
 package com.paymentsApi.repository;
 
+import com.paymentsApi.dto.TransactionSummary;
+import com.paymentsApi.entity.Client;
 import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.enums.TransactionStatus;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.dao.DataIntegrityViolationException;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /* Test classes have package scope as default, so "public" access modifier is not needed. */
@@ -15,14 +23,60 @@ public class TransactionRepositoryIntegrationTest {
     @Autowired
     private TransactionRepository transactionRepository;
 
+    @Autowired
+    private ClientRepository clientRepository;
+
     @Test
     void testNotNullableTransactionFields() {
         Transaction transaction = new Transaction();
 
-        // Try saving Client with null fields and except exception
+        // Try saving Transaction with null fields and except exception. Sequence ids defer the insert to the flush.
         assertThrows(DataIntegrityViolationException.class, () -> {
-            transactionRepository.save(transaction);
+            transactionRepository.saveAndFlush(transaction);
         });
     }
 
+    /*
+     * The history has the Transactions sent and received by the Client, a self-transfer once, oldest first with ties
+     * broken by id.
+     */
+    @Test
+    void testStreamHistory_SentAndReceivedOldestFirst() {
+        // Set up
+        Client client = client("Felipe Matos", 123456L);
+        Client other = client("Gisele Almeida", 654321L);
+        LocalDateTime time = LocalDateTime.of(2024, 1, 1, 12, 0);
+        Transaction received = transaction(other, client, time.plusMinutes(1));
+        Transaction sent = transaction(client, other, time);
+        Transaction self = transaction(client, client, time.plusMinutes(1));
+        transaction(other, other, time);
+        transactionRepository.flush();
+
+        // Act
+        List<Long> ids;
+        try (Stream<TransactionSummary> rows = transactionRepository.streamHistory(client.getId())) {
+            ids = rows.map(TransactionSummary::getId).toList();
+        }
+
+        // Assert
+        assertEquals(List.of(sent.getId(), received.getId(), self.getId()), ids);
+    }
+
+    private Client client(String name, Long accountNumber) {
+        Client client = new Client();
+        client.setName(name);
+        client.setAccountNumber(accountNumber);
+        client.setAccountBalance(100000L);
+        return clientRepository.save(client);
+    }
+
+    private Transaction transaction(Client sender, Client receiver, LocalDateTime transactionTime) {
+        Transaction transaction = new Transaction();
+        transaction.setSender(sender);
+        transaction.setReceiver(receiver);
+        transaction.setAmount(1000L);
+        transaction.setStatus(TransactionStatus.SUCCESS);
+        transaction.setTransactionTime(transactionTime);
+        return transactionRepository.save(transaction);
+    }
 }
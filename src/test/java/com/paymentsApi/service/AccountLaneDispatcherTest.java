@@ -0,0 +1,99 @@
+package com.paymentsApi.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+class AccountLaneDispatcherTest {
+
+    private final AccountLaneDispatcher dispatcher = new AccountLaneDispatcher(4, false);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testSubmit_SerialisesTasksOfOneLane() {
+        // Set up
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 200; i++) {
+            // 1, 5 and 9 share a lane
+            futures.add(dispatcher.submit(1L + 4L * (i % 3), () -> exclusive(running, overlaps)));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        // Assert
+        assertTrue(dispatcher.sameLane(1L, 9L));
+        assertEquals(0, overlaps.get());
+    }
+
+    /*
+     * A lane waiting on its own task does not stop another lane, so a credit handed over never waits for its sender lane.
+     */
+    @Test
+    void testSubmit_LanesRunIndependently() throws Exception {
+        // Set up
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher.submit(1L, () -> {
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+
+        // Act
+        Integer result = dispatcher.submit(2L, () -> 42).get(1, TimeUnit.SECONDS);
+        release.countDown();
+
+        // Assert
+        assertFalse(dispatcher.sameLane(1L, 2L));
+        assertEquals(42, result);
+    }
+
+    @Test
+    void testAwait_RethrowsTaskException() {
+        // Act and Assert
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> AccountLaneDispatcher.await(dispatcher.submit(1L, () -> {
+            throw new IllegalArgumentException("Invalid receiver Account Number");
+        })));
+        assertEquals("Invalid receiver Account Number", ex.getMessage());
+    }
+
+    @Test
+    void testConstructor_RefusesSplitBalances() {
+        // Act and Assert
+        assertThrows(IllegalStateException.class, () -> new AccountLaneDispatcher(4, true));
+    }
+
+    // Every task runs on the lane of account 1, so no two of them may run at once
+    private static int exclusive(AtomicInteger running, AtomicInteger overlaps) {
+        if (running.incrementAndGet() > 1) {
+            overlaps.incrementAndGet();
+        }
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        running.decrementAndGet();
+        return 0;
+    }
+}
@@ -0,0 +1,112 @@
+package com.paymentsApi.service;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.repository.ClientRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:balance-slots-test")
+class BalanceSlotsIntegrationTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private BalanceSlots balanceSlots;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // The account is split before its Client exists, so it has no slots yet
+        balanceSlots = new BalanceSlots(clientRepository, transactionManager, Set.of(222222L), 4, false);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clientRepository.deleteAll();
+    }
+
+    /*
+     * Concurrent first credits to a Client inserted without its slots all create them and none of them fails.
+     */
+    @Test
+    void testCredit_ConcurrentFirstCreditsCreateSlotsOnce() throws Exception {
+        // Set up
+        Client receiver = clientRepository.save(client(222222L, 100000L));
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executorService.submit(() -> {
+                start.await();
+                transactionTemplate.executeWithoutResult(status -> balanceSlots.credit(receiver, 100L));
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        // Assert
+        assertEquals(4, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_slot WHERE client_id = ?", Integer.class, receiver.getId()));
+        assertEquals(THREADS * 100L, jdbcTemplate.queryForObject("SELECT SUM(amount) FROM balance_slot WHERE client_id = ?", Long.class, receiver.getId()));
+    }
+
+    /*
+     * A read adds the slots to the balance without folding them in, so the stored balance and the slots are unchanged.
+     */
+    @Test
+    void testReadWithSlots_AddsSlotsWithoutFoldingThem() {
+        // Set up
+        Client receiver = clientRepository.save(client(222222L, 100000L));
+        transactionTemplate.executeWithoutResult(status -> {
+            balanceSlots.credit(receiver, 3000L);
+            balanceSlots.credit(receiver, 2000L);
+        });
+
+        // Act
+        Client read = balanceSlots.readWithSlots(222222L).orElseThrow();
+
+        // Assert
+        assertEquals(105000L, read.getAccountBalance());
+        assertEquals(100000L, clientRepository.readByAccountNumber(222222L).orElseThrow().getAccountBalance());
+        assertEquals(5000L, jdbcTemplate.queryForObject("SELECT SUM(amount) FROM balance_slot WHERE client_id = ?", Long.class, receiver.getId()));
+    }
+
+    private static Client client(Long accountNumber, long accountBalance) {
+        Client client = new Client();
+        client.setName("Gisele Almeida");
+        client.setAccountNumber(accountNumber);
+        client.setAccountBalance(accountBalance);
+        return client;
+    }
+}
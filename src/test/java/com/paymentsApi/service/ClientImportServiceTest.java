@@ -0,0 +1,124 @@
+package com.paymentsApi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymentsApi.dto.ClientImportRejection;
+import com.paymentsApi.dto.ClientImportResult;
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.PostingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+@ExtendWith(MockitoExtension.class) // Mockito will handle injection
+class ClientImportServiceTest {
+
+    @Mock
+    private ClientRepository clientRepository;
+
+    @Mock
+    private PostingRepository postingRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ClientImportService clientImportService;
+
+    @BeforeEach
+    void setUp() {
+        clientImportService = new ClientImportService(clientRepository, postingRepository, new PostingWatermark(), new ObjectMapper(), transactionManager);
+        ReflectionTestUtils.setField(clientImportService, "chunkSize", 2);
+    }
+
+    /*
+     * Rows are imported in chunks of two; invalid, repeated and existing account numbers are reported by position.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportClients_JsonArrayReportsRejectedRows() throws IOException {
+        // Set up
+        String body = "[{\"name\": \"Felipe Matos\", \"accountNumber\": 1, \"accountBalance\": 100.00},"
+                + "{\"name\": \"Gisele Almeida\", \"accountNumber\": 1, \"accountBalance\": 200.00},"
+                + "{\"name\": \"Alicia Jones\", \"accountNumber\": \"abc\", \"accountBalance\": 300.00},"
+                + "{\"name\": \"Bruno Lima\", \"accountNumber\": 2, \"accountBalance\": 400.00},"
+                + "{\"name\": \"Carla Dias\", \"accountNumber\": 3, \"accountBalance\": 500.00}]";
+        when(clientRepository.findExistingAccountNumbers(List.of(1L, 2L))).thenReturn(List.of(2L));
+        when(clientRepository.findExistingAccountNumbers(List.of(3L))).thenReturn(List.of());
+
+        // Act
+        ClientImportResult result = clientImportService.importClients(stream(body));
+
+        // Assert
+        assertEquals(2, result.getCreated());
+        assertEquals(List.of(1, 2, 3), result.getRejected().stream().map(ClientImportRejection::getIndex).toList());
+        assertEquals("Account Number is repeated in the request", result.getRejected().get(0).getReason());
+        assertEquals("Account Number already exists", result.getRejected().get(2).getReason());
+
+        ArgumentCaptor<List<Client>> clientsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(clientRepository, times(2)).saveAllAndFlush(clientsCaptor.capture());
+        assertEquals(1L, clientsCaptor.getAllValues().get(0).get(0).getAccountNumber());
+        assertEquals(10000L, clientsCaptor.getAllValues().get(0).get(0).getAccountBalance());
+        assertEquals(3L, clientsCaptor.getAllValues().get(1).get(0).getAccountNumber());
+    }
+
+    /*
+     * When another request creates an account number of the chunk first, only that row is rejected.
+     */
+    @Test
+    void testImportClients_NdjsonConflictFallsBackToSingleInserts() throws IOException {
+        // Set up
+        String body = "{\"name\": \"Felipe Matos\", \"accountNumber\": 1, \"accountBalance\": 100.00}\n"
+                + "{\"name\": \"Gisele Almeida\", \"accountNumber\": 2, \"accountBalance\": 200.00}\n";
+        when(clientRepository.findExistingAccountNumbers(List.of(1L, 2L))).thenReturn(List.of());
+        when(clientRepository.saveAllAndFlush(anyList())).thenThrow(new DataIntegrityViolationException("uk_client_account_number"));
+        when(clientRepository.saveAndFlush(any(Client.class))).thenAnswer(invocation -> {
+            Client client = invocation.getArgument(0);
+            if (client.getAccountNumber() == 2L) {
+                throw new DataIntegrityViolationException("uk_client_account_number");
+            }
+            return client;
+        });
+
+        // Act
+        ClientImportResult result = clientImportService.importClients(stream(body));
+
+        // Assert
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getRejected().size());
+        assertEquals(1, result.getRejected().get(0).getIndex());
+        assertEquals(2L, result.getRejected().get(0).getAccountNumber());
+    }
+
+    @Test
+    void testImportClients_MalformedBodyKeepsImportedRows() throws IOException {
+        // Set up
+        String body = "{\"name\": \"Felipe Matos\", \"accountNumber\": 1, \"accountBalance\": 100.00}\n{\"name\": ";
+        when(clientRepository.findExistingAccountNumbers(List.of(1L))).thenReturn(List.of());
+
+        // Act
+        ClientImportResult result = clientImportService.importClients(stream(body));
+
+        // Assert
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getRejected().get(0).getIndex());
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,19 +1,31 @@
 package com.paymentsApi.service;
 
+import com.paymentsApi.dto.AccountBalance;
 import com.paymentsApi.entity.Client;
 import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.PostingRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 /* Test classes have package scope as default, so "public" access modifier is not needed. */
@@ -23,6 +35,15 @@ class ClientServiceTest {
     @Mock
     private ClientRepository clientRepository;
 
+    @Mock
+    private PostingRepository postingRepository;
+
+    @Spy
+    private ClientCache clientCache = new ClientCache(new SimpleMeterRegistry(), 100);
+
+    @Spy
+    private PostingWatermark postingWatermark = new PostingWatermark();
+
     @InjectMocks
     private ClientService clientService;
 
@@ -34,30 +55,47 @@ class ClientServiceTest {
         // Initialize Client 1
         client1 = new Client();
         client1.setName("Felipe Matos");
-        client1.setAccountBalance(1392.40);
+        client1.setAccountBalance(139240L);
         client1.setAccountNumber(123456L);
 
         // Initialize Client 2
         client2 = new Client();
         client2.setName("Gisele Almeida");
-        client2.setAccountBalance(2000.10);
+        client2.setAccountBalance(200010L);
         client2.setAccountNumber(123457L);
     }
 
+    /*
+     * The page size is capped and ties of the sort property are ordered by id.
+     */
     @Test
-    void testGetAllClients() {
+    @SuppressWarnings("unchecked")
+    void testGetClients() {
         // Set up
-        List<Client> expectedClients = Arrays.asList(client1, client2);
-
-        // Instruct ClientRepository to return Client 1 and Client 2
-        when(clientRepository.findAll()).thenReturn(expectedClients);
+        ReflectionTestUtils.setField(clientService, "maxPageSize", 100);
+        Page<Client> expectedClients = new PageImpl<>(Arrays.asList(client2, client1));
+        when(clientRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(expectedClients);
 
         // Act
-        List<Client> actualClients = clientService.getAllClients();
+        Page<Client> actualClients = clientService.getClients("Fel", 10000L, null, 2, 500, "accountBalance", "desc");
 
         // Assert
         assertEquals(expectedClients, actualClients);
-        verify(clientRepository, times(1)).findAll();
+        ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
+        verify(clientRepository, times(1)).findAll(any(Specification.class), pageableCaptor.capture());
+        assertEquals(2, pageableCaptor.getValue().getPageNumber());
+        assertEquals(100, pageableCaptor.getValue().getPageSize());
+        assertEquals(Sort.by(Sort.Direction.DESC, "accountBalance").and(Sort.by("id")), pageableCaptor.getValue().getSort());
+    }
+
+    @Test
+    void testGetClients_InvalidArguments() {
+        // Act and Assert
+        assertThrows(IllegalArgumentException.class, () -> clientService.getClients(null, null, null, -1, 20, "accountNumber", "asc"));
+        assertThrows(IllegalArgumentException.class, () -> clientService.getClients(null, null, null, 0, 0, "accountNumber", "asc"));
+        assertThrows(IllegalArgumentException.class, () -> clientService.getClients(null, null, null, 0, 20, "version", "asc"));
+        assertThrows(IllegalArgumentException.class, () -> clientService.getClients(null, null, null, 0, 20, "accountNumber", "up"));
+        verifyNoInteractions(clientRepository);
     }
 
     @Test
@@ -74,38 +112,83 @@ class ClientServiceTest {
         verify(clientRepository, times(1)).findById(1L);
     }
 
+    /*
+     * Reads never lock the Client and a second read is served by the ClientCache.
+     */
     @Test
     void testGetClientByAccountNumber() {
         // Set up
-        when(clientRepository.findByAccountNumber(123456L)).thenReturn(Optional.of(client1));
+        when(clientRepository.readByAccountNumber(123456L)).thenReturn(Optional.of(client1));
 
         // Act
         Client actualClient = clientService.getClientByAccountNumber(123456L);
+        Client cachedClient = clientService.getClientByAccountNumber(123456L);
 
         // Assert
         assertEquals(client1, actualClient);
-        verify(clientRepository, times(1)).findByAccountNumber(123456L);
+        assertEquals(client1, cachedClient);
+        verify(clientRepository, times(1)).readByAccountNumber(123456L);
+        verify(clientRepository, never()).findByAccountNumber(anyLong());
+    }
+
+    @Test
+    void testGetClientByAccountNumber_SaveEvictsCachedClient() {
+        // Set up
+        when(clientRepository.readByAccountNumber(123456L)).thenReturn(Optional.of(client1));
+        when(clientRepository.saveAndFlush(client1)).thenReturn(client1);
+        clientService.getClientByAccountNumber(123456L);
+
+        // Act
+        clientService.saveClient(client1);
+        clientService.getClientByAccountNumber(123456L);
+
+        // Assert
+        verify(clientRepository, times(2)).readByAccountNumber(123456L);
+    }
+
+    /*
+     * The balance at a time is read for the id of the Client with the Account Number.
+     */
+    @Test
+    void testGetBalanceAt() {
+        // Set up
+        LocalDateTime at = LocalDateTime.of(2024, 1, 1, 12, 0);
+        ReflectionTestUtils.setField(client1, "id", 1L);
+        when(clientRepository.readByAccountNumber(123456L)).thenReturn(Optional.of(client1));
+        when(postingRepository.findBalanceAt(1L, at)).thenReturn(90000L);
+
+        // Act
+        AccountBalance balance = clientService.getBalanceAt(123456L, at);
+
+        // Assert
+        assertEquals(123456L, balance.getAccountNumber());
+        assertEquals(at, balance.getAt());
+        assertEquals(90000L, balance.getBalance());
     }
 
     @Test
     void testSaveClient() {
         // Set up
-        when(clientRepository.save(client1)).thenReturn(client1);
+        when(clientRepository.saveAndFlush(client1)).thenReturn(client1);
 
         // Act
         Client savedClient = clientService.saveClient(client1);
 
         // Assert
         assertEquals(client1, savedClient);
-        verify(clientRepository, times(1)).save(client1);
+        verify(clientRepository, times(1)).saveAndFlush(client1);
     }
 
     @Test
     void testDeleteClient() {
+        // Set up
+        when(clientRepository.findById(1L)).thenReturn(Optional.of(client1));
+
         // Act
         clientService.deleteClient(1L);
 
         // Only assert if method is called, because return is none
         verify(clientRepository, times(1)).deleteById(1L);
+        verify(clientCache, times(1)).evict(123456L);
     }
 }
\ No newline at end of file
@@ -0,0 +1,191 @@
+package com.paymentsApi.service;
+
+import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.enums.LockingMode;
+import com.paymentsApi.enums.TransactionStatus;
+import com.paymentsApi.repository.ClientRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * Throughput and latency of transfers whose receivers follow a Zipf distribution, so a handful of merchant accounts
+ * receive most of them, with the row locking modes, the optimistic mode, the account lanes and with split balances for
+ * the hottest receivers.
+ *
+ * The transactionControllerTest profile makes every transfer hold its row locks for TRANSFER_DELAY_MS, standing in for
+ * the work a real transfer does; in the lanes mode it holds the lane of the sender instead. Senders are uniform. Each mode runs on the same seeded accounts and request sequence.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=HotAccountBenchmarkTest
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:hot-account-benchmark;LOCK_TIMEOUT=30000", "payments.test.transfer-delay-ms=" + HotAccountBenchmarkTest.TRANSFER_DELAY_MS})
+@ActiveProfiles("transactionControllerTest")
+class HotAccountBenchmarkTest {
+
+    static final int TRANSFER_DELAY_MS = 1;
+    private static final int CLIENTS = 1000;
+    private static final int SPLIT_ACCOUNTS = 10;
+    private static final int SLOTS = 16;
+    private static final int LANES = 16;
+    private static final double ZIPF_EXPONENT = 1.1;
+    private static final int THREADS = 64;
+    private static final int TRANSFERS_PER_THREAD = 100;
+    private static final long BALANCE = 100000000L;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void benchmarkLockingModesOnZipfReceivers() throws Exception {
+        // Set up
+        jdbcTemplate.update("INSERT INTO client (id, name, account_balance, account_number, version) "
+                + "SELECT X, CONCAT('Client ', X), ?, X, 0 FROM SYSTEM_RANGE(1, ?)", BALANCE, CLIENTS);
+        double[] zipf = zipfCdf(CLIENTS, ZIPF_EXPONENT);
+        TransactionService target = AopTestUtils.getTargetObject(transactionService);
+
+        try {
+            // Act
+            List<Result> results = new ArrayList<>();
+            for (LockingMode mode : List.of(LockingMode.PESSIMISTIC, LockingMode.ORDERED, LockingMode.OPTIMISTIC)) {
+                ReflectionTestUtils.setField(target, "lockingMode", mode);
+                run(zipf, THREADS / 4); // warm up
+                results.add(run(zipf, THREADS));
+            }
+            // Receivers are credited on their own lanes, after the sender lane has debited
+            ReflectionTestUtils.setField(target, "lockingMode", LockingMode.LANES);
+            target.laneDispatcher = new AccountLaneDispatcher(LANES, false);
+            run(zipf, THREADS / 4); // warm up
+            results.add(run(zipf, THREADS));
+            target.laneDispatcher.shutdown();
+            target.laneDispatcher = null;
+            // The hottest receivers credit their balance slots instead of their Client rows
+            ReflectionTestUtils.setField(target, "lockingMode", LockingMode.PESSIMISTIC);
+            Set<Long> hottest = LongStream.rangeClosed(1, SPLIT_ACCOUNTS).boxed().collect(Collectors.toSet());
+            target.balanceSlots = new BalanceSlots(clientRepository, transactionManager, hottest, SLOTS, false);
+            run(zipf, THREADS / 4); // warm up
+            results.add(run(zipf, THREADS));
+
+            // Assert
+            System.out.printf("%-12s %12s %12s %12s %10s%n", "Mode", "Transfers/s", "p50 ms", "p99 ms", "Failures");
+            for (int i = 0; i < results.size(); i++) {
+                Result result = results.get(i);
+                System.out.printf("%-12s %12.0f %12.1f %12.1f %10d%n", List.of("pessimistic", "ordered", "optimistic", "lanes", "split").get(i), result.throughput(),
+                        percentile(result.latencies(), 0.50), percentile(result.latencies(), 0.99), result.failures());
+            }
+            Long total = jdbcTemplate.queryForObject("SELECT SUM(account_balance) + (SELECT COALESCE(SUM(amount), 0) FROM balance_slot) FROM client", Long.class);
+            assertEquals(BALANCE * CLIENTS, total);
+            assertEquals(0, results.get(1).failures());
+            assertEquals(0, results.get(3).failures());
+            assertEquals(0, results.get(4).failures());
+        } finally {
+            if (target.laneDispatcher != null) {
+                target.laneDispatcher.shutdown();
+                target.laneDispatcher = null;
+            }
+            ReflectionTestUtils.setField(target, "lockingMode", LockingMode.PESSIMISTIC);
+            target.balanceSlots = null;
+        }
+    }
+
+    private Result run(double[] zipf, int threads) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            Random random = new Random(thread);
+            futures.add(executorService.submit(() -> {
+                start.await();
+                long[] latencies = new long[TRANSFERS_PER_THREAD];
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    long receiver = sample(zipf, random);
+                    long sender = (receiver + random.nextInt(CLIENTS - 1)) % CLIENTS + 1;
+                    long transferStart = System.nanoTime();
+                    try {
+                        Transaction transaction = transactionService.processTransaction(sender, receiver, 1L);
+                        latencies[i] = transaction.getStatus() == TransactionStatus.SUCCESS ? System.nanoTime() - transferStart : -1;
+                    } catch (RuntimeException ex) {
+                        latencies[i] = -1;
+                    }
+                }
+                return latencies;
+            }));
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        List<Long> latencies = new ArrayList<>();
+        int failures = 0;
+        for (Future<long[]> future : futures) {
+            for (long latency : future.get()) {
+                if (latency < 0) {
+                    failures++;
+                } else {
+                    latencies.add(latency);
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+        executorService.shutdown();
+        return new Result(threads * TRANSFERS_PER_THREAD / seconds, latencies, failures);
+    }
+
+    /*
+     * Cumulative probabilities of ranks 1..n, rank k being drawn with a probability proportional to 1 / k^exponent.
+     */
+    private static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1 / Math.pow(k, exponent);
+            cdf[k - 1] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    // Account numbers are the ranks, so account 1 is the hottest
+    private static long sample(double[] cdf, Random random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return (index >= 0 ? index : -index - 1) + 1;
+    }
+
+    private static double percentile(List<Long> latencies, double percentile) {
+        List<Long> sorted = latencies.stream().sorted().toList();
+        return sorted.get((int) Math.ceil(percentile * sorted.size()) - 1) / 1_000_000.0;
+    }
+
+    private record Result(double throughput, List<Long> latencies, int failures) {
+    }
+}
@@ -0,0 +1,93 @@
+package com.paymentsApi.service;
+
+import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.exception.IdempotencyKeyReuseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+class IdempotencyCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private IdempotencyCache idempotencyCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        idempotencyCache = new IdempotencyCache(meterRegistry, 100, Duration.ofMinutes(1));
+    }
+
+    /*
+     * Concurrent requests with one key run the payment once and all get its Transaction.
+     */
+    @Test
+    void testExecute_ConcurrentReplaysRunPaymentOnce() throws Exception {
+        // Set up
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Transaction transaction = new Transaction();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<Transaction>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 8; i++) {
+            futures.add(executorService.submit(() -> idempotencyCache.execute("order-1", 1L, 2L, 100L, () -> {
+                calls.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return transaction;
+            })));
+        }
+        release.countDown();
+        for (Future<Transaction> future : futures) {
+            assertSame(transaction, future.get());
+        }
+        executorService.shutdown();
+
+        // Assert
+        assertEquals(1, calls.get());
+        assertEquals(7.0, meterRegistry.get("cache.gets").tag("cache", "payments.idempotency").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void testExecute_KeyReusedForAnotherPayment() {
+        // Set up
+        idempotencyCache.execute("order-1", 1L, 2L, 100L, Transaction::new);
+
+        // Act and Assert
+        assertThrows(IdempotencyKeyReuseException.class, () -> idempotencyCache.execute("order-1", 1L, 2L, 200L, Transaction::new));
+        assertThrows(IdempotencyKeyReuseException.class, () -> idempotencyCache.execute("order-1", 1L, 3L, 100L, Transaction::new));
+    }
+
+    @Test
+    void testExecute_FailedPaymentCanBeRetried() {
+        // Set up
+        Transaction transaction = new Transaction();
+
+        // Act
+        assertThrows(IllegalArgumentException.class, () -> idempotencyCache.execute("order-1", 1L, 2L, 100L, () -> {
+            throw new IllegalArgumentException("Invalid receiver Account Number");
+        }));
+        Transaction result = idempotencyCache.execute("order-1", 1L, 2L, 100L, () -> transaction);
+
+        // Assert
+        assertSame(transaction, result);
+    }
+}
@@ -0,0 +1,73 @@
+package com.paymentsApi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+class OptimisticTransferRetryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private OptimisticTransferRetry optimisticTransferRetry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        optimisticTransferRetry = new OptimisticTransferRetry(meterRegistry, 3, 1, 2);
+    }
+
+    @Test
+    void testExecute_RetriesUntilVersionCheckSucceeds() {
+        // Set up
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act
+        String result = optimisticTransferRetry.execute(() -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Client", 1L);
+            }
+            return "done";
+        });
+
+        // Assert
+        assertEquals("done", result);
+        assertEquals(3, calls.get());
+        assertEquals(2.0, meterRegistry.counter("payments.transfer.optimistic.retries").count());
+        assertEquals(0.0, meterRegistry.counter("payments.transfer.optimistic.exhausted").count());
+        assertEquals(3.0, meterRegistry.summary("payments.transfer.optimistic.attempts").totalAmount());
+    }
+
+    @Test
+    void testExecute_RethrowsWhenAttemptsAreExhausted() {
+        // Set up
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act and Assert
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> optimisticTransferRetry.execute(() -> {
+            calls.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Client", 1L);
+        }));
+        assertEquals(3, calls.get());
+        assertEquals(2.0, meterRegistry.counter("payments.transfer.optimistic.retries").count());
+        assertEquals(1.0, meterRegistry.counter("payments.transfer.optimistic.exhausted").count());
+    }
+
+    @Test
+    void testExecute_DoesNotRetryOtherExceptions() {
+        // Set up
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act and Assert
+        assertThrows(IllegalArgumentException.class, () -> optimisticTransferRetry.execute(() -> {
+            calls.incrementAndGet();
+            throw new IllegalArgumentException("Invalid sender Account Number");
+        }));
+        assertEquals(1, calls.get());
+    }
+}
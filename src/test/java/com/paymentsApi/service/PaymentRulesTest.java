@@ -0,0 +1,69 @@
+package com.paymentsApi.service;
+
+import com.paymentsApi.dto.StatementCursor;
+import com.paymentsApi.dto.StatementPage;
+import com.paymentsApi.dto.TransactionSummary;
+import com.paymentsApi.enums.TransactionReason;
+import com.paymentsApi.enums.TransactionStatus;
+import com.paymentsApi.exception.IdempotencyKeyReuseException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+class PaymentRulesTest {
+
+    @Test
+    void testDecide_PostsWhenBalanceCoversAmount() {
+        // Act and Assert
+        assertNull(PaymentRules.decide(100L, 100L));
+        assertEquals(TransactionReason.INSUFFICIENT_FUNDS, PaymentRules.decide(99L, 100L));
+        assertEquals(TransactionStatus.SUCCESS, PaymentRules.status(null));
+        assertEquals(TransactionStatus.FAIL, PaymentRules.status(TransactionReason.INSUFFICIENT_FUNDS));
+    }
+
+    @Test
+    void testRequireIdempotencyKey_RefusesBlankAndLongKeys() {
+        // Act and Assert
+        PaymentRules.requireIdempotencyKey("order-1");
+        assertThrows(IllegalArgumentException.class, () -> PaymentRules.requireIdempotencyKey(" "));
+        assertThrows(IllegalArgumentException.class, () -> PaymentRules.requireIdempotencyKey("k".repeat(65)));
+        assertThrows(IdempotencyKeyReuseException.class, () -> PaymentRules.requireSamePayment("order-1", false));
+    }
+
+    @Test
+    void testStatementPageSize_CapsToMaximum() {
+        // Act and Assert
+        assertEquals(20, PaymentRules.statementPageSize(20, 100));
+        assertEquals(100, PaymentRules.statementPageSize(500, 100));
+        assertThrows(IllegalArgumentException.class, () -> PaymentRules.statementPageSize(0, 100));
+        assertSame(StatementCursor.START, PaymentRules.statementPosition(null));
+    }
+
+    @Test
+    void testStatementPage_ExtraRowGivesNextCursor() {
+        // Set up
+        LocalDateTime time = LocalDateTime.of(2024, 1, 1, 12, 0);
+        List<TransactionSummary> rows = List.of(summary(3L, time), summary(2L, time), summary(1L, time));
+
+        // Act
+        StatementPage page = PaymentRules.statementPage(rows, 2);
+        StatementPage last = PaymentRules.statementPage(rows.subList(2, 3), 2);
+
+        // Assert
+        assertEquals(2, page.getTransactions().size());
+        assertEquals(new StatementCursor(time, 2L), StatementCursor.decode(page.getNextCursor()));
+        assertEquals(1, last.getTransactions().size());
+        assertNull(last.getNextCursor());
+    }
+
+    private static TransactionSummary summary(Long id, LocalDateTime time) {
+        return new TransactionSummary(id, 123456L, 654321L, time, 100L, TransactionStatus.SUCCESS, null);
+    }
+}
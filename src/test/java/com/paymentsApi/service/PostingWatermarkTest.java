@@ -0,0 +1,66 @@
+package com.paymentsApi.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+class PostingWatermarkTest {
+
+    private final PostingWatermark postingWatermark = new PostingWatermark();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /*
+     * A held time keeps the watermark from passing it until the hold is released.
+     */
+    @Test
+    void testCommittedBefore_StopsAtOldestHold() throws InterruptedException {
+        // Set up
+        PostingWatermark.Hold oldest = postingWatermark.hold();
+        Thread.sleep(5);
+        PostingWatermark.Hold newest = postingWatermark.hold();
+        Thread.sleep(5);
+
+        // Act & Assert
+        assertEquals(oldest.time(), postingWatermark.committedBefore());
+
+        oldest.release();
+        assertEquals(newest.time(), postingWatermark.committedBefore());
+
+        newest.release();
+        assertFalse(postingWatermark.committedBefore().isBefore(newest.time().plusNanos(5000000)));
+    }
+
+    /*
+     * A time stamped by a transaction is held until the transaction completes, committed or rolled back.
+     */
+    @Test
+    void testStamp_HeldUntilTransactionCompletes() throws InterruptedException {
+        // Set up
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        LocalDateTime stamped = postingWatermark.stamp();
+        Thread.sleep(5);
+
+        // Assert
+        assertEquals(stamped, postingWatermark.committedBefore());
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        assertFalse(postingWatermark.committedBefore().isBefore(stamped.plusNanos(5000000)));
+    }
+}
@@ -0,0 +1,297 @@
+package com.paymentsApi.service;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.enums.LockingMode;
+import com.paymentsApi.enums.TransactionStatus;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Stress test for transfer locking: many threads send symmetric A->B and B->A transfers at the same time, and every mode
+ * must keep the balances consistent. The throughput of the modes is compared by HotAccountBenchmarkTest.
+ *
+ * It runs on its own in-memory database and without the transactionControllerTest profile, so transfers are not
+ * slowed down and no data leaks into the other integration tests.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:contention-db")
+@ActiveProfiles("contentionTest")
+class TransactionServiceContentionTest {
+
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 50;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        // Client A
+        Client clientA = new Client();
+        clientA.setName("Felipe Matos");
+        clientA.setAccountBalance(10000000L);
+        clientA.setAccountNumber(111111L);
+        clientRepository.save(clientA);
+
+        // Client B
+        Client clientB = new Client();
+        clientB.setName("Gisele Almeida");
+        clientB.setAccountBalance(10000000L);
+        clientB.setAccountNumber(222222L);
+        clientRepository.save(clientB);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        setLockingMode(LockingMode.PESSIMISTIC);
+        TransactionService target = AopTestUtils.getTargetObject(transactionService);
+        target.balanceSlots = null;
+        if (target.laneDispatcher != null) {
+            target.laneDispatcher.shutdown();
+            target.laneDispatcher = null;
+        }
+        transactionRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    @Test
+    void givenSymmetricTransfers_whenLockingModeIsOrdered_thenNoTransferFails() throws Exception {
+        // Set up
+        setLockingMode(LockingMode.ORDERED);
+
+        // Act
+        int failures = runSymmetricTransfers();
+
+        // Assert
+        assertEquals(0, failures);
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, transactionRepository.count());
+        assertEquals(20000000L, balanceOf(111111L) + balanceOf(222222L));
+        transactionRepository.findAll().forEach(transaction -> assertEquals(TransactionStatus.SUCCESS, transaction.getStatus()));
+    }
+
+    /*
+     * The lock-per-account mode can deadlock on opposite transfers. The database aborts one of the transactions, which
+     * must roll back without a trace.
+     */
+    @Test
+    void givenSymmetricTransfers_whenLockingModeIsPessimistic_thenBalancesStayConsistent() throws Exception {
+        // Set up
+        setLockingMode(LockingMode.PESSIMISTIC);
+
+        // Act
+        int failures = runSymmetricTransfers();
+
+        // Assert
+        assertEquals(THREADS * TRANSFERS_PER_THREAD - failures, transactionRepository.count());
+        assertEquals(20000000L, balanceOf(111111L) + balanceOf(222222L));
+    }
+
+    /*
+     * The optimistic mode never waits on a row lock; conflicting transfers are retried. Transfers that still conflict
+     * after the last attempt fail without a trace.
+     */
+    @Test
+    void givenSymmetricTransfers_whenLockingModeIsOptimistic_thenBalancesStayConsistent() throws Exception {
+        // Set up
+        setLockingMode(LockingMode.OPTIMISTIC);
+
+        // Act
+        int failures = runSymmetricTransfers();
+
+        // Assert
+        assertEquals(THREADS * TRANSFERS_PER_THREAD - failures, transactionRepository.count());
+        assertEquals(20000000L, balanceOf(111111L) + balanceOf(222222L));
+    }
+
+    /*
+     * The two accounts belong to different lanes: each transfer debits on the lane of its sender and hands the credit to
+     * the lane of the receiver, so no transfer waits on a row lock or on the other lane.
+     */
+    @Test
+    void givenSymmetricTransfers_whenLockingModeIsLanes_thenNoTransferFails() throws Exception {
+        // Set up
+        setLockingMode(LockingMode.LANES);
+        TransactionService target = AopTestUtils.getTargetObject(transactionService);
+        target.laneDispatcher = new AccountLaneDispatcher(4, false);
+
+        // Act
+        int failures = runSymmetricTransfers();
+
+        // Assert
+        assertEquals(0, failures);
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, transactionRepository.count());
+        assertEquals(20000000L, balanceOf(111111L) + balanceOf(222222L));
+        assertTrue(clientRepository.findPendingCredits().isEmpty());
+    }
+
+    /*
+     * A credit still pending when the service stopped is applied once by the next start, however often it is recovered.
+     */
+    @Test
+    void givenPendingCredit_whenRecovered_thenReceiverIsCreditedOnce() throws Exception {
+        // Set up
+        setLockingMode(LockingMode.LANES);
+        TransactionService target = AopTestUtils.getTargetObject(transactionService);
+        target.laneDispatcher = new AccountLaneDispatcher(4, false);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            clientRepository.debit(111111L, 500L);
+            Transaction transaction = new Transaction();
+            transaction.setSender(clientRepository.readByAccountNumber(111111L).orElseThrow());
+            transaction.setReceiver(clientRepository.readByAccountNumber(222222L).orElseThrow());
+            transaction.setAmount(500L);
+            transaction.setStatus(TransactionStatus.SUCCESS);
+            transaction.setTransactionTime(LocalDateTime.now());
+            clientRepository.addPendingCredit(transactionRepository.save(transaction).getId());
+        });
+
+        // Act
+        target.recoverPendingCredits();
+        target.recoverPendingCredits();
+
+        // Assert
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!clientRepository.findPendingCredits().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        target.laneDispatcher.shutdown();
+        assertTrue(clientRepository.findPendingCredits().isEmpty());
+        assertEquals(10000500L, balanceOf(222222L));
+        assertEquals(20000000L, balanceOf(111111L) + balanceOf(222222L));
+    }
+
+    /*
+     * Many senders credit one receiver. With a split balance the credits spread over its slots instead of queueing on
+     * its Client row, and none of them is lost. The slots are folded in when the receiver spends them.
+     */
+    @Test
+    void givenFanInTransfers_whenReceiverHasSplitBalance_thenCreditsAreKept() throws Exception {
+        // Set up
+        List<Long> senders = new ArrayList<>();
+        for (long i = 1; i <= THREADS; i++) {
+            Client sender = new Client();
+            sender.setName("Sender " + i);
+            sender.setAccountBalance(10000000L);
+            sender.setAccountNumber(300000L + i);
+            clientRepository.save(sender);
+            senders.add(sender.getAccountNumber());
+        }
+        TransactionService target = AopTestUtils.getTargetObject(transactionService);
+        target.balanceSlots = new BalanceSlots(clientRepository, transactionManager, Set.of(222222L), 8, false);
+
+        // Act
+        int failures = runFanInTransfers(senders, 222222L);
+
+        // Assert
+        assertEquals(0, failures);
+        // Only the folded balance covers this debit
+        Transaction spend = transactionService.processTransaction(222222L, 111111L, 10000000L + THREADS * TRANSFERS_PER_THREAD * 100L);
+        assertEquals(TransactionStatus.SUCCESS, spend.getStatus());
+        assertEquals(0L, balanceOf(222222L));
+        assertEquals(20000000L + THREADS * 10000000L, clientRepository.findAll().stream().mapToLong(Client::getAccountBalance).sum());
+    }
+
+    private int runFanInTransfers(List<Long> senders, Long receiverAccountNumber) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (Long sender : senders) {
+            futures.add(executorService.submit(() -> {
+                start.await();
+                for (int j = 0; j < TRANSFERS_PER_THREAD; j++) {
+                    try {
+                        if (transactionService.processTransaction(sender, receiverAccountNumber, 100L).getStatus() != TransactionStatus.SUCCESS) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (RuntimeException ex) {
+                        failures.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        return failures.get();
+    }
+
+    private int runSymmetricTransfers() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            boolean forward = i % 2 == 0;
+            futures.add(executorService.submit(() -> {
+                start.await();
+                for (int j = 0; j < TRANSFERS_PER_THREAD; j++) {
+                    try {
+                        Transaction transaction = forward ? transactionService.processTransaction(111111L, 222222L, 100L) : transactionService.processTransaction(222222L, 111111L, 100L);
+                        if (transaction.getStatus() != TransactionStatus.SUCCESS) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (RuntimeException ex) {
+                        failures.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        return failures.get();
+    }
+
+    private void setLockingMode(LockingMode lockingMode) {
+        TransactionService target = AopTestUtils.getTargetObject(transactionService);
+        ReflectionTestUtils.setField(target, "lockingMode", lockingMode);
+    }
+
+    private long balanceOf(Long accountNumber) {
+        return clientRepository.readByAccountNumber(accountNumber).orElseThrow().getAccountBalance();
+    }
+}
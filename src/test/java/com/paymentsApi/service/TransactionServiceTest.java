@@ -1,24 +1,50 @@
 package com.paymentsApi.service;
 
+import com.paymentsApi.dto.BatchPaymentResult;
+import com.paymentsApi.dto.StatementCursor;
+import com.paymentsApi.dto.StatementPage;
+import com.paymentsApi.dto.TransactionRequest;
+import com.paymentsApi.dto.TransactionSummary;
 import com.paymentsApi.entity.Client;
+import com.paymentsApi.entity.IdempotencyKey;
+import com.paymentsApi.entity.Posting;
 import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.enums.ExportFormat;
+import com.paymentsApi.enums.TransactionReason;
 import com.paymentsApi.enums.TransactionStatus;
+import com.paymentsApi.exception.IdempotencyKeyReuseException;
 import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.IdempotencyKeyRepository;
+import com.paymentsApi.repository.PostingRepository;
 import com.paymentsApi.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 /* Test classes have package scope as default, so "public" access modifier is not needed. */
@@ -30,6 +56,27 @@ public class TransactionServiceTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private PostingRepository postingRepository;
+
+    @Spy
+    private ClientCache clientCache = new ClientCache(new SimpleMeterRegistry(), 100);
+
+    @Spy
+    private TransferMetrics transferMetrics = new TransferMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private IdempotencyCache idempotencyCache = new IdempotencyCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+
+    @Spy
+    private PostingWatermark postingWatermark = new PostingWatermark();
+
     @InjectMocks
     private TransactionService transactionService;
 
@@ -56,12 +103,12 @@ public class TransactionServiceTest {
         // Create Client sender
         sender = new Client();
         sender.setAccountNumber(123456L);
-        sender.setAccountBalance(2000.00);
+        sender.setAccountBalance(200000L);
 
         // Create Client receiver
         receiver = new Client();
         receiver.setAccountNumber(654321L);
-        receiver.setAccountBalance(1000.00);
+        receiver.setAccountBalance(100000L);
     }
 
     @Test
@@ -82,19 +129,98 @@ public class TransactionServiceTest {
     @Test
     void testGetTransactionsByAccountNumber() {
         // Set up
-        when(clientRepository.findByAccountNumber(1L)).thenReturn(Optional.of(sender));
-        when(transactionRepository.findBySender(sender)).thenReturn(Collections.singletonList(transaction));
-        when(transactionRepository.findByReceiver(sender)).thenReturn(Collections.singletonList(transaction2));
-        List<Transaction> expectedTransactions = Stream.of(transaction, transaction2).sorted(Comparator.comparing(Transaction::getTransactionTime).reversed()).toList();
+        ReflectionTestUtils.setField(sender, "id", 1L);
+        List<TransactionSummary> expectedTransactions = Arrays.asList(summary(2L, transaction2), summary(1L, transaction));
+        when(clientRepository.readByAccountNumber(123456L)).thenReturn(Optional.of(sender));
+        when(transactionRepository.findHistory(1L)).thenReturn(expectedTransactions);
 
         // Act
-        List<Transaction> actualTransactions = transactionService.getTransactionsByAccountNumber(1L);
+        List<TransactionSummary> actualTransactions = transactionService.getTransactionsByAccountNumber(123456L);
 
         // Assert
         assertEquals(expectedTransactions, actualTransactions);
-        verify(clientRepository, times(1)).findByAccountNumber(1L);
-        verify(transactionRepository, times(1)).findBySender(sender);
-        verify(transactionRepository, times(1)).findByReceiver(sender);
+        verify(clientRepository, times(1)).readByAccountNumber(123456L);
+        verify(transactionRepository, times(1)).findHistory(1L);
+    }
+
+    /*
+     * The repository is asked for one row more than the page size; that extra row only tells the service that a next page
+     * exists, and the cursor points at the last Transaction returned.
+     */
+    @Test
+    void testGetStatement_FirstPage() {
+        // Set up
+        ReflectionTestUtils.setField(transactionService, "statementMaxPageSize", 100);
+        TransactionSummary newest = summary(2L, transaction);
+        TransactionSummary oldest = summary(1L, transaction2);
+        when(clientRepository.readByAccountNumber(1L)).thenReturn(Optional.of(sender));
+        when(transactionRepository.findStatement(sender.getId(), StatementCursor.START.transactionTime(), Long.MAX_VALUE, 2)).thenReturn(Arrays.asList(newest, oldest));
+
+        // Act
+        StatementPage page = transactionService.getStatement(1L, null, 1);
+
+        // Assert
+        assertEquals(List.of(newest), page.getTransactions());
+        assertEquals(new StatementCursor(transaction.getTransactionTime(), 2L).encode(), page.getNextCursor());
+    }
+
+    @Test
+    void testGetStatement_LastPage() {
+        // Set up
+        ReflectionTestUtils.setField(transactionService, "statementMaxPageSize", 100);
+        TransactionSummary oldest = summary(1L, transaction2);
+        StatementCursor cursor = new StatementCursor(transaction.getTransactionTime(), 2L);
+        when(clientRepository.readByAccountNumber(1L)).thenReturn(Optional.of(sender));
+        when(transactionRepository.findStatement(sender.getId(), cursor.transactionTime(), 2L, 2)).thenReturn(List.of(oldest));
+
+        // Act
+        StatementPage page = transactionService.getStatement(1L, cursor.encode(), 1);
+
+        // Assert
+        assertEquals(List.of(oldest), page.getTransactions());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testGetStatement_InvalidCursor() {
+        // Set up
+        ReflectionTestUtils.setField(transactionService, "statementMaxPageSize", 100);
+        when(clientRepository.readByAccountNumber(1L)).thenReturn(Optional.of(sender));
+
+        // Act and Assert
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getStatement(1L, "not-a-cursor", 10));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void testExportTransactions_Csv() throws IOException {
+        // Set up
+        ReflectionTestUtils.setField(sender, "id", 1L);
+        LocalDateTime transactionTime = LocalDateTime.of(2024, 1, 1, 10, 30);
+        when(clientRepository.readByAccountNumber(123456L)).thenReturn(Optional.of(sender));
+        when(transactionRepository.streamHistory(1L)).thenReturn(Stream.of(
+                new TransactionSummary(7L, 123456L, 654321L, transactionTime, 100050L, TransactionStatus.SUCCESS, null),
+                new TransactionSummary(8L, 654321L, 123456L, transactionTime, 500000L, TransactionStatus.FAIL, TransactionReason.INSUFFICIENT_FUNDS)));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // Act
+        transactionService.exportTransactions(123456L, ExportFormat.CSV).writeTo(outputStream);
+
+        // Assert
+        String expectedCsv = "id,senderAccountNumber,receiverAccountNumber,transactionTime,amount,status,reason\n"
+                + "7,123456,654321,2024-01-01T10:30,1000.50,SUCCESS,\n"
+                + "8,654321,123456,2024-01-01T10:30,5000.00,FAIL,INSUFFICIENT_FUNDS\n";
+        assertEquals(expectedCsv, outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testExportTransactions_InvalidAccountNumber() {
+        // Set up
+        when(clientRepository.readByAccountNumber(1L)).thenReturn(Optional.empty());
+
+        // Act and Assert
+        assertThrows(IllegalArgumentException.class, () -> transactionService.exportTransactions(1L, ExportFormat.NDJSON));
+        verifyNoInteractions(transactionRepository);
     }
 
     /*
@@ -112,7 +238,7 @@ public class TransactionServiceTest {
         when(clientRepository.findByAccountNumber(654321L)).thenReturn(Optional.of(receiver));
 
         // Act
-        transactionService.processTransaction(123456L, 654321L, 1000.00);
+        transactionService.processTransaction(123456L, 654321L, 100000L);
 
         // Capture and verify the Transaction object
         ArgumentCaptor<Transaction> transactionCaptor = ArgumentCaptor.forClass(Transaction.class);
@@ -122,7 +248,9 @@ public class TransactionServiceTest {
         assertNotNull(capturedTransaction);
         assertEquals(sender, capturedTransaction.getSender());
         assertEquals(receiver, capturedTransaction.getReceiver());
-        assertEquals(TransactionStatus.SUCCESS.getMessage(), capturedTransaction.getStatus());
+        assertEquals(100000L, capturedTransaction.getAmount());
+        assertEquals(TransactionStatus.SUCCESS, capturedTransaction.getStatus());
+        assertNull(capturedTransaction.getReason());
 
         // Capture and verify if Client objects were updated properly
         ArgumentCaptor<Client> clientCaptor = ArgumentCaptor.forClass(Client.class);
@@ -130,8 +258,20 @@ public class TransactionServiceTest {
         Client updatedSender = clientCaptor.getAllValues().get(0);
         Client updatedReceiver = clientCaptor.getAllValues().get(1);
 
-        assertEquals(1000.00, updatedSender.getAccountBalance());
-        assertEquals(2000.00, updatedReceiver.getAccountBalance());
+        assertEquals(100000L, updatedSender.getAccountBalance());
+        assertEquals(200000L, updatedReceiver.getAccountBalance());
+
+        // Capture and verify the debit and credit postings
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Posting>> postingsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(postingRepository, times(1)).saveAll(postingsCaptor.capture());
+        List<Posting> postings = postingsCaptor.getValue();
+
+        assertEquals(2, postings.size());
+        assertEquals(sender, postings.get(0).getClient());
+        assertEquals(-100000L, postings.get(0).getAmount());
+        assertEquals(receiver, postings.get(1).getClient());
+        assertEquals(100000L, postings.get(1).getAmount());
     }
 
     /*
@@ -149,7 +289,7 @@ public class TransactionServiceTest {
         when(clientRepository.findByAccountNumber(654321L)).thenReturn(Optional.of(receiver));
 
         // Act
-        transactionService.processTransaction(123456L, 654321L, 2001.00);
+        transactionService.processTransaction(123456L, 654321L, 200100L);
 
         // Capture and verify the Transaction object
         ArgumentCaptor<Transaction> transactionCaptor = ArgumentCaptor.forClass(Transaction.class);
@@ -159,10 +299,167 @@ public class TransactionServiceTest {
         assertNotNull(capturedTransaction);
         assertEquals(sender, capturedTransaction.getSender());
         assertEquals(receiver, capturedTransaction.getReceiver());
-        assertEquals(TransactionStatus.FAIL.getMessage(), capturedTransaction.getStatus());
+        assertEquals(200100L, capturedTransaction.getAmount());
+        assertEquals(TransactionStatus.FAIL, capturedTransaction.getStatus());
+        assertEquals(TransactionReason.INSUFFICIENT_FUNDS, capturedTransaction.getReason());
 
         // Check if Client objects were not updated
         verify(clientRepository, never()).save(sender);
         verify(clientRepository, never()).save(receiver);
     }
+
+    /*
+     * A transfer that throws, like one to an unknown account, is counted as a processing error.
+     */
+    @Test
+    void testProcessTransaction_InvalidReceiverIsCountedAsProcessingError() {
+        // Set up
+        when(clientRepository.findByAccountNumber(123456L)).thenReturn(Optional.of(sender));
+        when(clientRepository.findByAccountNumber(111111L)).thenReturn(Optional.empty());
+
+        // Act and Assert
+        assertThrows(IllegalArgumentException.class, () -> transactionService.processTransaction(123456L, 111111L, 100L));
+        verify(transferMetrics, times(1)).failed(1);
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void testProcessTransaction_NonPositiveAmount() {
+        // Act and Assert
+        assertThrows(IllegalArgumentException.class, () -> transactionService.processTransaction(123456L, 654321L, 0L));
+        assertThrows(IllegalArgumentException.class, () -> transactionService.processTransaction(123456L, 654321L, -100L));
+        assertThrows(IllegalArgumentException.class, () -> transactionService.processTransaction(123456L, 654321L, 0L, "order-1"));
+        verifyNoInteractions(idempotencyKeyRepository);
+        verify(clientRepository, never()).findByAccountNumber(anyLong());
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void testProcessTransaction_NewIdempotencyKeyIsStoredWithTransaction() {
+        // Set up
+        when(idempotencyKeyRepository.findById("order-1")).thenReturn(Optional.empty());
+        when(clientRepository.findByAccountNumber(123456L)).thenReturn(Optional.of(sender));
+        when(clientRepository.findByAccountNumber(654321L)).thenReturn(Optional.of(receiver));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        Transaction first = transactionService.processTransaction(123456L, 654321L, 100000L, "order-1");
+        Transaction replay = transactionService.processTransaction(123456L, 654321L, 100000L, "order-1");
+
+        // Assert
+        assertEquals(first, replay);
+        assertEquals(100000L, sender.getAccountBalance());
+        ArgumentCaptor<IdempotencyKey> keyCaptor = ArgumentCaptor.forClass(IdempotencyKey.class);
+        verify(idempotencyKeyRepository, times(1)).saveAndFlush(keyCaptor.capture());
+        assertEquals("order-1", keyCaptor.getValue().getId());
+        assertEquals(first, keyCaptor.getValue().getTransaction());
+        verify(transactionRepository, times(1)).save(any(Transaction.class));
+    }
+
+    /*
+     * A key that is no longer cached is answered from the idempotency_key table without locking any account.
+     */
+    @Test
+    void testProcessTransaction_StoredIdempotencyKeyIsReplayed() {
+        // Set up
+        ReflectionTestUtils.setField(transaction, "id", 1L);
+        when(idempotencyKeyRepository.findById("order-1")).thenReturn(Optional.of(new IdempotencyKey("order-1", transaction, 123456L, 654321L, 100000L)));
+        when(transactionRepository.findWithClientsById(1L)).thenReturn(Optional.of(transaction));
+
+        // Act
+        Transaction replay = transactionService.processTransaction(123456L, 654321L, 100000L, "order-1");
+
+        // Assert
+        assertEquals(transaction, replay);
+        verify(clientRepository, never()).findByAccountNumber(anyLong());
+        verify(transactionRepository, never()).save(any(Transaction.class));
+        assertThrows(IdempotencyKeyReuseException.class, () -> transactionService.processTransaction(123456L, 654321L, 200000L, "order-1"));
+    }
+
+    /*
+     * A batch locks its distinct accounts once, in accountNumber order, and reports every request separately.
+     */
+    @Test
+    void testProcessBatch() {
+        // Set up
+        ReflectionTestUtils.setField(transactionService, "batchChunkSize", 500);
+        ReflectionTestUtils.setField(transactionService, "batchMaxSize", 10000);
+        when(clientRepository.findByAccountNumber(123456L)).thenReturn(Optional.of(sender));
+        when(clientRepository.findByAccountNumber(654321L)).thenReturn(Optional.of(receiver));
+        when(clientRepository.findByAccountNumber(111111L)).thenReturn(Optional.empty());
+        List<TransactionRequest> requests = List.of(request(123456L, 654321L, 150000L), request(123456L, 654321L, 100000L), request(123456L, 111111L, 100L), request(654321L, 123456L, 0L));
+
+        // Act
+        List<BatchPaymentResult> results = transactionService.processBatch(requests);
+
+        // Assert
+        assertEquals(4, results.size());
+        assertEquals(TransactionStatus.SUCCESS.getMessage(), results.get(0).getStatus());
+        assertEquals(TransactionStatus.FAIL.getMessage(), results.get(1).getStatus());
+        assertEquals("Invalid receiver Account Number", results.get(2).getStatus());
+        assertEquals("Invalid amount, it must be greater than zero", results.get(3).getStatus());
+        assertEquals(50000L, sender.getAccountBalance());
+        assertEquals(250000L, receiver.getAccountBalance());
+
+        // Every account is locked once, in accountNumber order, and only valid requests are saved, all in one call
+        InOrder locks = inOrder(clientRepository);
+        locks.verify(clientRepository).findByAccountNumber(111111L);
+        locks.verify(clientRepository).findByAccountNumber(123456L);
+        locks.verify(clientRepository).findByAccountNumber(654321L);
+        verify(clientRepository, times(3)).findByAccountNumber(anyLong());
+        verify(transactionRepository, times(1)).saveAll(argThat(transactions -> ((List<Transaction>) transactions).size() == 2));
+
+        // Outcomes of the chunk are counted together, rejected requests as processing errors
+        verify(transferMetrics, times(1)).saved(anyLong(), argThat(transactions -> transactions.size() == 2), eq(2));
+    }
+
+    /*
+     * A chunk that fails is rolled back and returned as errors, without failing the chunks before and after it.
+     */
+    @Test
+    void testProcessBatch_FailedChunkIsReturnedAsErrors() {
+        // Set up
+        ReflectionTestUtils.setField(transactionService, "batchChunkSize", 1);
+        ReflectionTestUtils.setField(transactionService, "batchMaxSize", 10000);
+        when(clientRepository.findByAccountNumber(123456L)).thenReturn(Optional.of(sender));
+        when(clientRepository.findByAccountNumber(654321L)).thenReturn(Optional.of(receiver));
+        when(transactionRepository.saveAll(anyList())).thenReturn(List.of()).thenThrow(new CannotAcquireLockException("Deadlock detected")).thenReturn(List.of());
+        List<TransactionRequest> requests = List.of(request(123456L, 654321L, 100L), request(123456L, 654321L, 100L), request(123456L, 654321L, 100L));
+
+        // Act
+        List<BatchPaymentResult> results = transactionService.processBatch(requests);
+
+        // Assert
+        assertEquals(3, results.size());
+        assertEquals(TransactionStatus.SUCCESS.getMessage(), results.get(0).getStatus());
+        assertFalse(results.get(0).isError());
+        assertNull(results.get(1).getTransactionId());
+        assertTrue(results.get(1).isError());
+        assertEquals(TransactionStatus.SUCCESS.getMessage(), results.get(2).getStatus());
+        assertFalse(results.get(2).isError());
+        verify(transferMetrics, times(1)).failed(1);
+    }
+
+    @Test
+    void testProcessBatch_TooManyRequests() {
+        // Set up
+        ReflectionTestUtils.setField(transactionService, "batchMaxSize", 1);
+        List<TransactionRequest> requests = List.of(request(123456L, 654321L, 100L), request(123456L, 654321L, 100L));
+
+        // Act and Assert
+        assertThrows(IllegalArgumentException.class, () -> transactionService.processBatch(requests));
+        verify(transactionRepository, never()).saveAll(anyList());
+    }
+
+    private static TransactionRequest request(Long senderAccountNumber, Long receiverAccountNumber, long amount) {
+        TransactionRequest request = new TransactionRequest();
+        request.setSenderAccountNumber(senderAccountNumber);
+        request.setReceiverAccountNumber(receiverAccountNumber);
+        request.setAmount(amount);
+        return request;
+    }
+
+    private static TransactionSummary summary(Long id, Transaction transaction) {
+        return new TransactionSummary(id, 123456L, 654321L, transaction.getTransactionTime(), 100000L, TransactionStatus.SUCCESS, null);
+    }
 }
@@ -0,0 +1,126 @@
+package com.paymentsApi.service;
+
+import com.paymentsApi.entity.Transaction;
+import com.paymentsApi.enums.TransactionReason;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+class TransferMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransferMetrics transferMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        transferMetrics = new TransferMetrics(meterRegistry);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    /*
+     * Locks count as waiting until they are acquired and as held until the transaction completes; the commit phase and
+     * the outcome are only recorded when it commits.
+     */
+    @Test
+    void testPhases_RecordedUntilCommit() {
+        // Act
+        long started = transferMetrics.lockStarted();
+        assertEquals(1.0, meterRegistry.get("payments.transfer.lock.waiting").gauge().value());
+        long locked = transferMetrics.locked(started);
+        transferMetrics.saved(transferMetrics.executed(locked), transaction(null));
+
+        // Assert
+        assertEquals(0.0, meterRegistry.get("payments.transfer.lock.waiting").gauge().value());
+        assertEquals(1.0, meterRegistry.get("payments.transfer.lock.held").gauge().value());
+        assertEquals(1, meterRegistry.get("payments.transfer.phase").tag("phase", "lock").timer().count());
+        assertEquals(1, meterRegistry.get("payments.transfer.phase").tag("phase", "execute").timer().count());
+        assertEquals(1, meterRegistry.get("payments.transfer.phase").tag("phase", "save").timer().count());
+        assertEquals(0, meterRegistry.get("payments.transfer.phase").tag("phase", "commit").timer().count());
+        assertEquals(0.0, meterRegistry.get("payments.transfer.outcomes").tag("outcome", "success").counter().count());
+
+        // Act
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Assert
+        assertEquals(0.0, meterRegistry.get("payments.transfer.lock.held").gauge().value());
+        assertEquals(1, meterRegistry.get("payments.transfer.phase").tag("phase", "commit").timer().count());
+        assertEquals(1.0, meterRegistry.get("payments.transfer.outcomes").tag("outcome", "success").counter().count());
+    }
+
+    /*
+     * A rolled back attempt, like an optimistic retry, releases its locks without counting an outcome.
+     */
+    @Test
+    void testSaved_RolledBackAttemptIsNotCounted() {
+        // Act
+        long locked = transferMetrics.locked(transferMetrics.lockStarted());
+        transferMetrics.saved(transferMetrics.executed(locked), transaction(TransactionReason.INSUFFICIENT_FUNDS));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        assertEquals(0.0, meterRegistry.get("payments.transfer.lock.held").gauge().value());
+        assertEquals(0, meterRegistry.get("payments.transfer.phase").tag("phase", "commit").timer().count());
+        assertEquals(0.0, meterRegistry.get("payments.transfer.outcomes").tag("outcome", "insufficient_funds").counter().count());
+    }
+
+    /*
+     * Optimistic reads are timed as the lock phase but never count as waiting on or holding a lock.
+     */
+    @Test
+    void testRead_NotCountedByLockGauges() {
+        // Act
+        long started = transferMetrics.readStarted();
+        assertEquals(0.0, meterRegistry.get("payments.transfer.lock.waiting").gauge().value());
+        transferMetrics.read(started);
+
+        // Assert
+        assertEquals(0.0, meterRegistry.get("payments.transfer.lock.held").gauge().value());
+        assertEquals(1, meterRegistry.get("payments.transfer.phase").tag("phase", "lock").timer().count());
+    }
+
+    /*
+     * A committed chunk counts the outcome of each of its Transactions and a processing error per rejected request.
+     */
+    @Test
+    void testSaved_ChunkCountsEveryRequest() {
+        // Act
+        long locked = transferMetrics.locked(transferMetrics.lockStarted());
+        transferMetrics.saved(transferMetrics.executed(locked), List.of(transaction(null), transaction(TransactionReason.INSUFFICIENT_FUNDS)), 2);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Assert
+        assertEquals(1, meterRegistry.get("payments.transfer.phase").tag("phase", "commit").timer().count());
+        assertEquals(1.0, meterRegistry.get("payments.transfer.outcomes").tag("outcome", "success").counter().count());
+        assertEquals(1.0, meterRegistry.get("payments.transfer.outcomes").tag("outcome", "insufficient_funds").counter().count());
+        assertEquals(2.0, meterRegistry.get("payments.transfer.outcomes").tag("outcome", "processing_error").counter().count());
+    }
+
+    private static void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private static Transaction transaction(TransactionReason reason) {
+        Transaction transaction = new Transaction();
+        transaction.setReason(reason);
+        return transaction;
+    }
+}
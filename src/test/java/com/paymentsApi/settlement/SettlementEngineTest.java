@@ -0,0 +1,211 @@
+package com.paymentsApi.settlement;
+
+import com.paymentsApi.dto.BatchPaymentResult;
+import com.paymentsApi.dto.PaymentTicketStatus;
+import com.paymentsApi.dto.TransactionRequest;
+import com.paymentsApi.entity.PaymentTicket;
+import com.paymentsApi.enums.TicketState;
+import com.paymentsApi.enums.TransactionStatus;
+import com.paymentsApi.exception.IdempotencyKeyReuseException;
+import com.paymentsApi.repository.PaymentTicketRepository;
+import com.paymentsApi.service.ClientService;
+import com.paymentsApi.service.TransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLTransientConnectionException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+@ExtendWith(MockitoExtension.class) // Mockito will handle injection
+class SettlementEngineTest {
+
+    private static final int MAX_ATTEMPTS = 2;
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private ClientService clientService;
+
+    @Mock
+    private PaymentTicketRepository paymentTicketRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path directory;
+
+    private SettlementEngine settlementEngine;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (settlementEngine != null) {
+            settlementEngine.shutdown();
+        }
+    }
+
+    /*
+     * After a crash, payments already settled in the database and a torn last line must not be settled again.
+     */
+    @Test
+    void testRecover_SettlesOnlyUnsettledPayments() throws Exception {
+        // Set up
+        Path queueFile = directory.resolve("queue.log");
+        Files.writeString(queueFile, "settled\t123456\t654321\t1000\t2024-01-01T10:00\n"
+                + "pending\t123456\t654321\t2500\t2024-01-01T10:01\n"
+                + "torn\t1234", StandardCharsets.UTF_8);
+        when(paymentTicketRepository.findSettledIds(List.of("settled", "pending"))).thenReturn(List.of("settled"));
+        when(paymentTicketRepository.findSettledIds(List.of("pending"))).thenReturn(List.of());
+        when(transactionService.processBatch(anyList())).thenReturn(List.of(new BatchPaymentResult(0, 7L, TransactionStatus.SUCCESS.getMessage())));
+
+        // Act
+        settlementEngine = engine(queueFile);
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TransactionRequest>> requestsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(transactionService, timeout(2000)).processBatch(requestsCaptor.capture());
+        assertEquals(1, requestsCaptor.getValue().size());
+        assertEquals(2500L, requestsCaptor.getValue().get(0).getAmount());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PaymentTicket>> ticketsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(paymentTicketRepository, timeout(2000)).saveAll(ticketsCaptor.capture());
+        assertEquals("pending", ticketsCaptor.getValue().get(0).getId());
+        assertEquals(7L, ticketsCaptor.getValue().get(0).getTransactionId());
+        // The queue file is emptied once everything in it is settled
+        verify(transactionService, after(200).times(1)).processBatch(anyList());
+        assertEquals(0, Files.size(queueFile));
+    }
+
+    @Test
+    void testAccept_WithIdempotencyKeyQueuesOnce() throws Exception {
+        // Set up
+        Path queueFile = directory.resolve("queue.log");
+        when(paymentTicketRepository.findById("key-1")).thenReturn(Optional.empty());
+        // The worker must not settle while the replays are checked
+        when(transactionService.processBatch(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(500);
+            return List.of(new BatchPaymentResult(0, 7L, TransactionStatus.SUCCESS.getMessage()));
+        });
+        settlementEngine = engine(queueFile);
+
+        // Act
+        PaymentTicketStatus first = settlementEngine.accept(123456L, 654321L, 1000L, "key-1");
+        PaymentTicketStatus replay = settlementEngine.accept(123456L, 654321L, 1000L, "key-1");
+
+        // Assert
+        assertEquals("key-1", first.getTicketId());
+        assertEquals(TicketState.PENDING, first.getState());
+        assertEquals("key-1", replay.getTicketId());
+        assertEquals(1, Files.readAllLines(queueFile).size());
+        assertThrows(IdempotencyKeyReuseException.class, () -> settlementEngine.accept(123456L, 654321L, 2000L, "key-1"));
+    }
+
+    @Test
+    void testAccept_InvalidAmount() throws Exception {
+        // Set up
+        settlementEngine = engine(directory.resolve("queue.log"));
+
+        // Act and Assert
+        assertThrows(IllegalArgumentException.class, () -> settlementEngine.accept(123456L, 654321L, 0L, null));
+        verifyNoInteractions(clientService);
+    }
+
+    /*
+     * A payment that fails every attempt is given up with a FAILED ticket instead of blocking its lane forever.
+     */
+    @Test
+    void testDrain_FailingPaymentIsMarkedFailed() throws Exception {
+        // Set up
+        when(transactionService.processBatch(anyList())).thenThrow(new IllegalStateException("Corrupt payment"));
+        when(paymentTicketRepository.findById("key-1")).thenReturn(Optional.empty());
+        settlementEngine = engine(directory.resolve("queue.log"));
+
+        // Act
+        settlementEngine.accept(123456L, 654321L, 1000L, "key-1");
+
+        // Assert
+        ArgumentCaptor<PaymentTicket> ticketCaptor = ArgumentCaptor.forClass(PaymentTicket.class);
+        verify(paymentTicketRepository, timeout(2000)).save(ticketCaptor.capture());
+        assertEquals("key-1", ticketCaptor.getValue().getId());
+        assertTrue(ticketCaptor.getValue().isFailed());
+        assertNull(ticketCaptor.getValue().getTransactionId());
+        verify(transactionService, times(MAX_ATTEMPTS)).processBatch(anyList());
+
+        when(paymentTicketRepository.findById("key-1")).thenReturn(Optional.of(ticketCaptor.getValue()));
+        assertEquals(TicketState.FAILED, settlementEngine.getStatus("key-1").orElseThrow().getState());
+    }
+
+    /*
+     * A database outage longer than every attempt allows delays the payments of the lane, it does not fail them.
+     */
+    @Test
+    void testDrain_TransientFailuresAreRetriedUntilSettled() throws Exception {
+        // Set up
+        when(transactionService.processBatch(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("Connection lost"))
+                .thenThrow(new CannotCreateTransactionException("Connection pool exhausted"))
+                .thenThrow(new CannotAcquireLockException("Lock timeout"))
+                .thenThrow(new DataAccessResourceFailureException("Connection lost"))
+                .thenReturn(List.of(new BatchPaymentResult(0, 7L, TransactionStatus.SUCCESS.getMessage())));
+        when(paymentTicketRepository.findById("key-1")).thenReturn(Optional.empty());
+        settlementEngine = engine(directory.resolve("queue.log"));
+
+        // Act
+        settlementEngine.accept(123456L, 654321L, 1000L, "key-1");
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PaymentTicket>> ticketsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(paymentTicketRepository, timeout(2000)).saveAll(ticketsCaptor.capture());
+        assertEquals("key-1", ticketsCaptor.getValue().get(0).getId());
+        assertEquals(7L, ticketsCaptor.getValue().get(0).getTransactionId());
+        assertFalse(ticketsCaptor.getValue().get(0).isFailed());
+        verify(transactionService, times(5)).processBatch(anyList());
+        verify(paymentTicketRepository, never()).save(any());
+    }
+
+    @Test
+    void testIsTransient() {
+        assertTrue(SettlementEngine.isTransient(new DataAccessResourceFailureException("Connection lost")));
+        assertTrue(SettlementEngine.isTransient(new IllegalStateException(new SQLTransientConnectionException("Connection is not available"))));
+        assertFalse(SettlementEngine.isTransient(new IllegalStateException("Corrupt payment")));
+    }
+
+    @Test
+    void testGetStatus_UnknownTicketIsEmpty() throws Exception {
+        // Set up
+        settlementEngine = engine(directory.resolve("queue.log"));
+
+        // Act and Assert
+        assertTrue(settlementEngine.getStatus("unknown").isEmpty());
+    }
+
+    private SettlementEngine engine(Path queueFile) {
+        return new SettlementEngine(transactionService, clientService, paymentTicketRepository, transactionManager, queueFile.toString(), 2, 100, MAX_ATTEMPTS, 10, 40, false);
+    }
+}
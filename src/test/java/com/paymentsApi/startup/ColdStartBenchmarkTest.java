@@ -0,0 +1,168 @@
+package com.paymentsApi.startup;
+
+import com.paymentsApi.PaymentsApiApplication;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Time to first request and time to a steady p99 of a freshly started service, with and without the startup warm-up.
+ *
+ * Every run starts the application in a new JVM, so the JIT starts cold, on a file database seeded with CLIENTS
+ * Clients. Readiness is polled from the moment the JVM is launched; once ready, one client sends transfers between
+ * random accounts alternating with Client reads, in windows of WINDOW requests. The steady p99 is the median p99 of the
+ * last windows, and latency counts as steady from the end of the first window whose p99 is within 20% of it.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=ColdStartBenchmarkTest
+ */
+@Tag("benchmark")
+class ColdStartBenchmarkTest {
+
+    private static final int CLIENTS = 10000;
+    private static final int WINDOW = 200;
+    private static final int WINDOWS = 20;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void benchmarkColdStart() throws Exception {
+        // Set up
+        String url = "jdbc:h2:file:" + directory.resolve("payments").toAbsolutePath();
+        seed(url);
+
+        // Act
+        Result cold = run(url, false);
+        Result warm = run(url, true);
+
+        // Assert
+        System.out.printf("%-8s %10s %14s %16s %18s %14s %14s %18s%n", "Warm-up", "Ready ms", "First pay ms", "Steady p99 ms", "Steady after ready", "Window 1 p99", "Steady p99",
+                "Server steady ms");
+        print("off", cold);
+        print("on", warm);
+        assertEquals(0, cold.errors());
+        assertEquals(0, warm.errors());
+        assertTrue(warm.readyMs() > 0 && cold.readyMs() > 0);
+    }
+
+    private static void seed(String url) throws Exception {
+        Flyway.configure().dataSource(url, "admin", "admin").load().migrate();
+        try (Connection connection = DriverManager.getConnection(url, "admin", "admin");
+             PreparedStatement statement = connection.prepareStatement("INSERT INTO client (id, name, account_balance, account_number, version) "
+                     + "SELECT X, CONCAT('Client ', X), 100000000, X, 0 FROM SYSTEM_RANGE(1, ?)")) {
+            statement.setInt(1, CLIENTS);
+            statement.executeUpdate();
+        }
+    }
+
+    private Result run(String url, boolean warmup) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        String classpath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        Path log = directory.resolve("warmup-" + warmup + ".log");
+        long launched = System.nanoTime();
+        Process process = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(), "-cp", classpath,
+                PaymentsApiApplication.class.getName(), "--server.port=" + port, "--spring.profiles.active=coldStart",
+                "--spring.datasource.url=" + url, "--payments.warmup.enabled=" + warmup)
+                .redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            String baseUrl = "http://localhost:" + port;
+            double readyMs = awaitReady(httpClient, baseUrl, launched, process, log);
+
+            Random random = new Random(42);
+            long[] windowP99 = new long[WINDOWS];
+            long[] windowEnd = new long[WINDOWS];
+            double firstPayMs = 0;
+            int errors = 0;
+            for (int window = 0; window < WINDOWS; window++) {
+                long[] latencies = new long[WINDOW];
+                for (int i = 0; i < WINDOW; i++) {
+                    HttpRequest request;
+                    if (i % 2 == 0) {
+                        int sender = random.nextInt(CLIENTS) + 1;
+                        int receiver = sender % CLIENTS + 1;
+                        String body = "{\"senderAccountNumber\": " + sender + ", \"receiverAccountNumber\": " + receiver + ", \"amount\": 0.01}";
+                        request = HttpRequest.newBuilder(URI.create(baseUrl + "/v1/transactions/pay")).header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+                    } else {
+                        request = HttpRequest.newBuilder(URI.create(baseUrl + "/v1/clients/" + (random.nextInt(CLIENTS) + 1))).GET().build();
+                    }
+                    long requestStart = System.nanoTime();
+                    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                    latencies[i] = System.nanoTime() - requestStart;
+                    if (response.statusCode() != 200) {
+                        errors++;
+                    }
+                    if (window == 0 && i == 0) {
+                        firstPayMs = (System.nanoTime() - launched) / 1_000_000.0;
+                    }
+                }
+                Arrays.sort(latencies);
+                windowP99[window] = latencies[(int) Math.ceil(WINDOW * 0.99) - 1];
+                windowEnd[window] = System.nanoTime();
+            }
+
+            long[] last = Arrays.copyOfRange(windowP99, WINDOWS - 5, WINDOWS);
+            Arrays.sort(last);
+            long steadyP99 = last[last.length / 2];
+            double steadyMs = 0;
+            for (int window = 0; window < WINDOWS; window++) {
+                if (windowP99[window] <= steadyP99 * 1.2) {
+                    steadyMs = (windowEnd[window] - launched) / 1_000_000.0;
+                    break;
+                }
+            }
+            // The gauge is reported in seconds, NaN when the server never saw a steady p99
+            double serverSteadyMs = 1000 * Double.parseDouble(httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/metrics/payments.startup.steady.p99")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString()).body().replaceAll(".*\"value\":([^}]*)}.*", "$1"));
+            return new Result(readyMs, firstPayMs, steadyMs, windowP99[0] / 1_000_000.0, steadyP99 / 1_000_000.0, serverSteadyMs, errors);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static double awaitReady(HttpClient httpClient, String baseUrl, long launched, Process process, Path log) throws Exception {
+        HttpRequest readiness = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health/readiness")).GET().build();
+        while (process.isAlive()) {
+            try {
+                if (httpClient.send(readiness, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return (System.nanoTime() - launched) / 1_000_000.0;
+                }
+            } catch (IOException ex) {
+                // Not listening yet
+            }
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException("Application exited before it was ready:\n" + Files.readString(log));
+    }
+
+    private static void print(String warmup, Result result) {
+        System.out.printf("%-8s %10.0f %14.0f %16.0f %18.0f %14.1f %14.1f %18.0f%n", warmup, result.readyMs(), result.firstPayMs(), result.steadyMs(), result.steadyMs() - result.readyMs(),
+                result.firstWindowP99Ms(), result.steadyP99Ms(), result.serverSteadyMs());
+    }
+
+    private record Result(double readyMs, double firstPayMs, double steadyMs, double firstWindowP99Ms, double steadyP99Ms, double serverSteadyMs, int errors) {
+    }
+}
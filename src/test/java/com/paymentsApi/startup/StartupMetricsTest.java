@@ -0,0 +1,39 @@
+package com.paymentsApi.startup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed. */
+class StartupMetricsTest {
+
+    /*
+     * Latency is only steady once the p99 of a window stays close to the p99 of the window before it.
+     */
+    @Test
+    void testRecord_SteadyOnceWindowP99Settles() {
+        // Set up
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        StartupMetrics startupMetrics = new StartupMetrics(meterRegistry, 10);
+
+        // Act and Assert
+        recordWindow(startupMetrics, 200);
+        assertFalse(Double.isNaN(startupMetrics.getFirstRequestMs()));
+        recordWindow(startupMetrics, 50);
+        assertTrue(Double.isNaN(startupMetrics.getSteadyP99Ms()));
+        recordWindow(startupMetrics, 54);
+        assertFalse(Double.isNaN(startupMetrics.getSteadyP99Ms()));
+        assertEquals(startupMetrics.getSteadyP99Ms(), meterRegistry.get("payments.startup.steady.p99").timeGauge().value(TimeUnit.MILLISECONDS));
+    }
+
+    private static void recordWindow(StartupMetrics startupMetrics, long latencyMs) {
+        for (int i = 0; i < 10; i++) {
+            startupMetrics.record(latencyMs);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.paymentsApi.startup;
+
+import com.paymentsApi.entity.Client;
+import com.paymentsApi.repository.ClientRepository;
+import com.paymentsApi.repository.TransactionRepository;
+import com.paymentsApi.service.ClientCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/* Test classes have package scope as default, so "public" access modifier is not needed.
+ * The warm-up already ran on the empty database when the context started, so the tests run it again on their data.
+ * They run without the transactionControllerTest profile, so transfers are not delayed.
+ */
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:warmup-test", "payments.warmup.enabled=true", "payments.warmup.iterations=50"})
+@ActiveProfiles("warmupTest")
+class StartupWarmupIntegrationTest {
+    @Autowired
+    private StartupWarmup startupWarmup;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ClientCache clientCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        clientRepository.save(client("Felipe Matos", 123456L, 100000L));
+        clientRepository.save(client("Gisele Almeida", 654321L, 300000L));
+        clientRepository.save(client("Alicia Jones", 111111L, 50000L));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        clientCache.invalidateAll();
+        transactionRepository.deleteAll();
+        clientRepository.deleteAll();
+    }
+
+    /*
+     * Synthetic transfers are rolled back, so balances and history are untouched, and every Client ends up cached.
+     */
+    @Test
+    void testRun_WarmsUpWithoutChangingData() throws Exception {
+        // Act
+        startupWarmup.run(null);
+
+        // Assert
+        assertEquals(100000L, clientRepository.readByAccountNumber(123456L).orElseThrow().getAccountBalance());
+        assertEquals(300000L, clientRepository.readByAccountNumber(654321L).orElseThrow().getAccountBalance());
+        assertEquals(0, transactionRepository.count());
+        assertEquals(3.0, meterRegistry.get("cache.size").tag("cache", "payments.clients").gauge().value());
+    }
+
+    private static Client client(String name, Long accountNumber, long accountBalance) {
+        Client client = new Client();
+        client.setName(name);
+        client.setAccountNumber(accountNumber);
+        client.setAccountBalance(accountBalance);
+        return client;
+    }
+}